@@ -1,6 +1,6 @@
 #!/bin/bash
 # StarMade Dedicated Server Launch Script for Linux
-# This script launches the StarMade JAR in server mode
+# This script starts the launcher in server mode, which keeps the server running and restarts it after a crash
 
 # Get the directory where this script is located
 SCRIPT_DIR="$(cd "$(dirname "${BASH_SOURCE[0]}")" && pwd)"
@@ -43,78 +43,52 @@ if [ ! -f "StarMade-Launcher.jar" ]; then
     exit 1
 fi
 
-# Check if Java 8 exists
-JAVA8_PATH="$SCRIPT_DIR/jre8/bin/java"
-if [ ! -f "$JAVA8_PATH" ]; then
-    write_log "Java 8 runtime not found at $JAVA8_PATH"
-    write_log "Please run the StarMade Launcher first to install the required Java runtime."
-    wait_for_exit
-    exit 1
+# Find the Java runtime the launcher runs on
+JAVA_PATH="$SCRIPT_DIR/jre25/bin/java"
+if [ ! -f "$JAVA_PATH" ]; then
+    # Newer launchers keep their runtimes in a cache shared by all installs
+    for CACHED_JAVA in "$HOME"/.StarMade/runtimes/*-25*-linux-*/bin/java; do
+        [ -f "$CACHED_JAVA" ] && JAVA_PATH="$CACHED_JAVA"
+    done
+fi
+if [ ! -f "$JAVA_PATH" ]; then
+    # The launcher needs Java 25, an older java on the PATH cannot load it
+    JAVA_MAJOR=0
+    if command -v java > /dev/null 2>&1; then
+        JAVA_MAJOR=$(java -version 2>&1 | head -n 1 | sed -E 's/.*version "([0-9]+).*/\1/')
+    fi
+    if [ "$JAVA_MAJOR" -ge 25 ] 2>/dev/null; then
+        JAVA_PATH="java"
+    else
+        write_log "Java 25 runtime not found at $JAVA_PATH"
+        write_log "Please run the StarMade Launcher first to install the required Java runtime."
+        wait_for_exit
+        exit 1
+    fi
 fi
 
-# Check if Java 23 exists
-JAVA23_PATH="$SCRIPT_DIR/jre23/bin/java"
-if [ ! -f "$JAVA23_PATH" ]; then
-    write_log "Java 23 runtime not found at $JAVA23_PATH"
-    write_log "Please run the StarMade Launcher first to install the required Java runtime."
-    wait_for_exit
-    exit 1
+# The bundled runtime keeps a class cache of the launcher, created on the first start and whenever the runtime changes
+# It is kept with the launcher's other caches, one per launcher folder since each folder may hold a different launcher
+CDS_ARGS=()
+if [ "$JAVA_PATH" != "java" ]; then
+    CDS_DIR="$HOME/.StarMade/runtimes/aot-cache"
+    mkdir -p "$CDS_DIR"
+    CDS_KEY=$(printf '%s' "$SCRIPT_DIR" | cksum | cut -d ' ' -f 1)
+    CDS_ARGS=(-XX:+AutoCreateSharedArchive "-XX:SharedArchiveFile=$CDS_DIR/launcher-$CDS_KEY.jsa")
 fi
 
-# Determine port (default 4242)
+# Determine port (default 4242), any further arguments are passed to the launcher
 PORT=4242
 if [ $# -gt 0 ]; then
     PORT="$1"
+    shift
 fi
 
-JAVA_PATH=""
-
 write_log "Starting StarMade Server on port $PORT..."
 
-# Check version.txt for game version, if version starts with "0.1" or "0.2", use Java 8, otherwise use Java 23
-VERSION_FILE="$SCRIPT_DIR/StarMade/version.txt"
-if [ -f "$VERSION_FILE" ]; then
-    VERSION=$(head -n 1 "$VERSION_FILE")
-    if [[ "$VERSION" =~ ^0\.[12] ]]; then
-        JAVA_PATH="$JAVA8_PATH"
-        write_log "Using Java 8 for version $VERSION"
-    else
-        JAVA_PATH="$JAVA23_PATH"
-        write_log "Using Java 23 for version $VERSION"
-    fi
-else
-    write_log "version.txt not found, defaulting to Java 23."
-    JAVA_PATH="$JAVA23_PATH"
-fi
-
-# Open up launch-settings.json to find the installation path
-LAUNCH_SETTINGS="$SCRIPT_DIR/launch-settings.json"
-if [ ! -f "$LAUNCH_SETTINGS" ]; then
-    write_log "launch-settings.json not found."
-    write_log "Please run the StarMade Launcher first to create the necessary files."
-    wait_for_exit
-    exit 1
-fi
-
-# Extract the installation path from launch-settings.json using grep and sed
-INSTALLATION_PATH=$(grep -o '"installDir":[[:space:]]*"[^"]*"' "$LAUNCH_SETTINGS" | sed 's/"installDir":[[:space:]]*"//; s/"//')
-
-if [ -z "$INSTALLATION_PATH" ]; then
-    write_log "Installation path not found in launch-settings.json."
-    write_log "Please run the StarMade Launcher first to create the necessary files."
-    wait_for_exit
-    exit 1
-fi
-
-# Change to the StarMade installation directory
-if ! cd "$INSTALLATION_PATH" 2>/dev/null; then
-    write_log "Failed to change directory to StarMade installation path: $INSTALLATION_PATH"
-    wait_for_exit
-    exit 1
-fi
-
-# Launch StarMade server (using Linux native library path)
-"$JAVA_PATH" "-Djava.library.path=lib:native/linux" -jar StarMade.jar -server "-port:$PORT"
+# The launcher picks the game's Java version, memory and arguments from launch-settings.json
+# The game is updated from the launcher, so a server start never waits for a download or the EULA prompt
+"$JAVA_PATH" "${CDS_ARGS[@]}" -jar StarMade-Launcher.jar -server -port: "$PORT" -no_update "$@"
 
 write_log "Server has stopped."
 wait_for_exit
@@ -1,5 +1,5 @@
 # StarMade Dedicated Server Launch Script for Windows PowerShell
-# This script launches the StarMade JAR in server mode
+# This script starts the launcher in server mode, which keeps the server running and restarts it after a crash
 
 # Get the directory where this script is located
 $ScriptDir = Split-Path -Parent $MyInvocation.MyCommand.Path
@@ -38,88 +38,62 @@ if (!(Test-Path "StarMade-Launcher.jar")) {
     exit 1
 }
 
-# Check if Java 8 exists
-$Java8Path = Join-Path $ScriptDir "jre8\bin\java.exe"
-if (!(Test-Path $Java8Path)) {
-    Write-Log "Java 8 runtime not found at $Java8Path"
-    Write-Log "Please run the StarMade Launcher first to install the required Java runtime."
-    Write-Host "Press enter to exit..."
-    Read-Host
-    exit 1
+# Find the Java runtime the launcher runs on
+$JavaPath = Join-Path $ScriptDir "jre25\bin\java.exe"
+if (!(Test-Path $JavaPath) -and $env:APPDATA) {
+    # Newer launchers keep their runtimes in a cache shared by all installs
+    $RuntimeCache = Join-Path $env:APPDATA ".StarMade\runtimes"
+    $CachedRuntime = Get-ChildItem -Path $RuntimeCache -Directory -Filter "*-25*-windows-*" -ErrorAction SilentlyContinue | Sort-Object Name | Select-Object -Last 1
+    if ($CachedRuntime -and (Test-Path (Join-Path $CachedRuntime.FullName "bin\java.exe"))) {
+        $JavaPath = Join-Path $CachedRuntime.FullName "bin\java.exe"
+    }
+}
+if (!(Test-Path $JavaPath)) {
+    # The launcher needs Java 25, an older java on the PATH cannot load it
+    $JavaMajor = 0
+    if (Get-Command java -ErrorAction SilentlyContinue) {
+        $JavaVersion = (& java -version 2>&1 | Select-Object -First 1).ToString()
+        if ($JavaVersion -match 'version "(\d+)') {
+            $JavaMajor = [int]$Matches[1]
+        }
+    }
+    if ($JavaMajor -ge 25) {
+        $JavaPath = "java"
+    } else {
+        Write-Log "Java 25 runtime not found at $JavaPath"
+        Write-Log "Please run the StarMade Launcher first to install the required Java runtime."
+        Write-Host "Press enter to exit..."
+        Read-Host
+        exit 1
+    }
 }
 
-# Check if Java 23 exists
-$Java23Path = Join-Path $ScriptDir "jre23\bin\java.exe"
-if (!(Test-Path $Java23Path)) {
-    Write-Log "Java 23 runtime not found at $Java23Path"
-    Write-Log "Please run the StarMade Launcher first to install the required Java runtime."
-    Write-Host "Press enter to exit..."
-    Read-Host
-    exit 1
+# The bundled runtime keeps a class cache of the launcher, created on the first start and whenever the runtime changes
+# It is kept with the launcher's other caches, one per launcher folder since each folder may hold a different launcher
+$CdsArgs = @()
+if ($JavaPath -ne "java") {
+    $AppDir = if ($env:APPDATA) { Join-Path $env:APPDATA ".StarMade" } else { Join-Path $HOME ".StarMade" }
+    $CdsDir = Join-Path $AppDir "runtimes\aot-cache"
+    New-Item -ItemType Directory -Force -Path $CdsDir | Out-Null
+    $CdsKey = (Get-FileHash -Algorithm SHA256 -InputStream ([IO.MemoryStream]::new([Text.Encoding]::UTF8.GetBytes($ScriptDir)))).Hash.Substring(0, 8)
+    $CdsArgs = @("-XX:+AutoCreateSharedArchive", "-XX:SharedArchiveFile=$(Join-Path $CdsDir "launcher-$CdsKey.jsa")")
 }
 
-# Determine port (default 4242)
+# Determine port (default 4242), any further arguments are passed to the launcher
 $Port = 4242
+$ExtraArgs = @()
 if ($args.Length -gt 0) {
     $Port = $args[0]
 }
-
-$JavaPath = ""
-
-Write-Log "Starting StarMade Server on port $Port..."
-
-# Check version.txt for game version, if version starts with "0.1" or "0.2", use Java 8, otherwise use Java 23
-$VersionFile = Join-Path $ScriptDir "StarMade\version.txt"
-if (Test-Path $VersionFile) {
-    $Version = Get-Content $VersionFile -First 1
-    if ($Version -match "^0\.[12]") {
-        $JavaPath = $Java8Path
-        Write-Log "Using Java 8 for version $Version"
-    } else {
-        $JavaPath = $Java23Path
-        Write-Log "Using Java 23 for version $Version"
-    }
-} else {
-    Write-Log "version.txt not found, defaulting to Java 23."
-    $JavaPath = $Java23Path
-}
-
-# Open up launch-settings.json to find the installation path
-$LaunchSettings = Join-Path $ScriptDir "launch-settings.json"
-if (!(Test-Path $LaunchSettings)) {
-    Write-Log "launch-settings.json not found."
-    Write-Log "Please run the StarMade Launcher first to create the necessary files."
-    Write-Host "Press enter to exit..."
-    Read-Host
-    exit 1
-}
-
-# Extract the installation path from launch-settings.json
-$LaunchSettingsContent = Get-Content $LaunchSettings -Raw
-if ($LaunchSettingsContent -match '"installDir":\s*"([^"]*)"') {
-    $InstallationPath = $Matches[1]
-    # Replace forward slashes with backslashes for Windows paths
-    $InstallationPath = $InstallationPath -replace '/', '\'
-} else {
-    Write-Log "Installation path not found in launch-settings.json."
-    Write-Log "Please run the StarMade Launcher first to create the necessary files."
-    Write-Host "Press enter to exit..."
-    Read-Host
-    exit 1
+if ($args.Length -gt 1) {
+    $ExtraArgs = $args[1..($args.Length - 1)]
 }
 
-# Change to the StarMade installation directory
-try {
-    Set-Location $InstallationPath
-} catch {
-    Write-Log "Failed to change directory to StarMade installation path: $InstallationPath"
-    Write-Host "Press enter to exit..."
-    Read-Host
-    exit 1
-}
+Write-Log "Starting StarMade Server on port $Port..."
 
-# Launch StarMade server
-& "$JavaPath" "-Djava.library.path=lib;native/windows" -jar StarMade.jar -server "-port:$Port"
+# The launcher picks the game's Java version, memory and arguments from launch-settings.json
+# The game is updated from the launcher, so a server start never waits for a download or the EULA prompt
+& "$JavaPath" @CdsArgs -jar StarMade-Launcher.jar -server -port: "$Port" -no_update @ExtraArgs
 
 Write-Log "Server has stopped."
 Write-Host "Press enter to exit..."
@@ -1,31 +1,38 @@
 package smlauncher;
 
-import org.apache.commons.io.FileUtils;
-import org.codehaus.plexus.archiver.UnArchiver;
-import org.codehaus.plexus.archiver.tar.TarGZipUnArchiver;
-import org.codehaus.plexus.archiver.zip.ZipUnArchiver;
+import smlauncher.metrics.Counter;
+import smlauncher.metrics.LauncherMetrics;
 import smlauncher.util.OperatingSystem;
 
 import javax.swing.*;
-import java.io.File;
-import java.io.FileOutputStream;
-import java.io.IOException;
+import java.io.*;
+import java.net.HttpURLConnection;
 import java.net.URL;
-import java.nio.channels.Channels;
-import java.nio.channels.ReadableByteChannel;
-import java.util.Locale;
-import java.util.Objects;
+import java.net.URLConnection;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.HexFormat;
 
 /**
  * Downloads a JDK from the web and unzips it.
+ * <p>The archive is extracted while it downloads and never written to disk. Its SHA-256 is computed in the same pass
+ * and checked against the checksum Adoptium publishes next to it. The runtime is extracted into a temporary folder that
+ * is only added to the {@link JreManager} cache once it is complete and verified, so an interrupted download is never
+ * mistaken for an installed runtime. Without the published checksum nothing is installed, unless unverified runtimes
+ * are allowed in the launch settings.</p>
  *
  * @author SlavSquatSuperstar
  */
 public class JavaDownloader {
 
+	private static final int CONNECT_TIMEOUT_MILLIS = 15000;
+	private static final int READ_TIMEOUT_MILLIS = 30000;
 	private final OperatingSystem currentOS;
 	private final JavaVersion version;
 	private Thread downloadThread;
+	private ProgressListener progressListener;
 
 	public JavaDownloader(JavaVersion version) {
 		this(OperatingSystem.getCurrent(), version);
@@ -39,18 +46,15 @@ public class JavaDownloader {
 
 	public void downloadAndUnzip(JDialog dialog) throws IOException {
 		// Don't unzip if the folder already exists
-		if(doesJreFolderExist()) return;
+		if(JreManager.find(version) != null) return;
 		(downloadThread = new Thread(() -> {
 			try {
-				download();
-				unzip();
-				//If on Linux or Mac, mark the Java executable as executable
-				if(currentOS == OperatingSystem.LINUX || currentOS == OperatingSystem.MAC) (new File(getJreFolderName() + "/bin/java")).setExecutable(true);
-				else if(currentOS == OperatingSystem.WINDOWS) (new File(getJreFolderName() + "/bin/java.exe")).setExecutable(true);
-				else throw new IOException("Downloaded Java, but failed to mark it as executable due to unknown OS: " + currentOS);
+				install();
 				dialog.setVisible(false);
 			} catch(IOException exception) {
 				LogManager.logException("Failed to download or unzip Java", exception);
+				dialog.setVisible(false);
+				JOptionPane.showMessageDialog(null, "Failed to install Java " + version.number + ":\n" + exception.getMessage(), "Java Installation", JOptionPane.ERROR_MESSAGE);
 			}
 		})).start();
 		dialog.setVisible(true);
@@ -63,91 +67,129 @@ public class JavaDownloader {
 		}
 	}
 
-	public void download() throws IOException {
-		String url = getJavaURL();
-
-		URL website = new URL(url);
-		ReadableByteChannel rbc = Channels.newChannel(website.openStream());
-
-		String destination = getZipFilename();
-		FileOutputStream fos = new FileOutputStream(destination);
-		fos.getChannel().transferFrom(rbc, 0, Long.MAX_VALUE);
-		fos.close();
-		System.out.println("Downloaded " + destination);
+	/**
+	 * @param progressListener called from the download thread as the archive arrives
+	 */
+	public void setProgressListener(ProgressListener progressListener) {
+		this.progressListener = progressListener;
 	}
 
-	public void unzip() throws IOException {
-		String zipFilename = getZipFilename();
-		File zipFile = new File(zipFilename);
-
-		// Extract the file
-		UnArchiver unzipper;
-		if("zip".equals(currentOS.zipExtension)) {
-			unzipper = new ZipUnArchiver(zipFile);
-		} else {
-			unzipper = new TarGZipUnArchiver(zipFile);
+	/**
+	 * Downloads and extracts the runtime into the {@link JreManager} cache in one pass.
+	 * <p>If another launcher is installing Java at the same time, this waits for it and skips the download when it
+	 * installed the same runtime.</p>
+	 */
+	public void install() throws IOException {
+		try(FileChannel ignored = JreManager.lock()) {
+			if(JreManager.find(version) != null) return;
+			String url = getJavaURL();
+			String expectedChecksum = getPublishedChecksum(url);
+			if(expectedChecksum == null) {
+				if(!LaunchSettings.isUnverifiedJavaAllowed()) throw new IOException("The checksum of " + url + " could not be fetched, so the download cannot be verified. Try again later, or set \"allowUnverifiedJava\" to true in launch-settings.json to install it anyway");
+				LogManager.logWarning("Installing Java from " + url + " without verifying it, unverified runtimes are allowed in the launch settings");
+			}
+			File partFolder = JreManager.createPartFolder();
+			HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+			connection.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+			connection.setReadTimeout(READ_TIMEOUT_MILLIS);
+			long requestTime = System.nanoTime();
+			MessageDigest digest = JreManager.createDigest();
+			long total = connection.getContentLengthLong();
+			Counter downloadedBytes = LauncherMetrics.getDownloadedBytes(url);
+			try(ProgressInputStream progress = new ProgressInputStream(connection.getInputStream(), total, downloadedBytes);
+				DigestInputStream raw = new DigestInputStream(progress, digest)) {
+				LauncherMetrics.DOWNLOAD_LATENCY.observe((System.nanoTime() - requestTime) / 1e9);
+				JreManager.extract(raw, "zip".equals(currentOS.zipExtension), partFolder.toPath());
+			} catch(IOException exception) {
+				JreManager.cleanup(partFolder);
+				throw exception;
+			}
+			JreManager.add(partFolder, url, HexFormat.of().formatHex(digest.digest()), expectedChecksum);
+			LauncherMetrics.getDownloadedFiles(url).inc();
 		}
-		unzipper.setDestDirectory(new File("./"));
-		unzipper.extract();
-
-		cleanupZip(); // Delete the zip file
-		moveExtractedFolder();
-		System.out.println("Unzipped " + zipFilename);
 	}
 
-	private void moveExtractedFolder() throws IOException {
-		File jreFolder = new File(getJreFolderName());
-		File extractedFolder = null;
-
-		// Find the extracted folder
-		for(File file : Objects.requireNonNull(new File("./").listFiles())) {
-			if(file.getName().startsWith(version.fileStart)) {
-				extractedFolder = file;
-				break;
-			}
+	/**
+	 * @return the SHA-256 Adoptium publishes next to the archive, or null if it could not be fetched
+	 */
+	private static String getPublishedChecksum(String url) {
+		try {
+			URLConnection connection = new URL(url + ".sha256.txt").openConnection();
+			connection.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+			connection.setReadTimeout(READ_TIMEOUT_MILLIS);
+			return readChecksum(url, connection);
+		} catch(IOException exception) {
+			LogManager.logWarning("Failed to fetch the checksum of " + url, exception);
+			return null;
 		}
-		if(extractedFolder == null) throw new IOException("Could not find extracted folder");
+	}
 
-		// Rename the extracted folder to jre<#>/
-		FileUtils.moveDirectory(extractedFolder, jreFolder);
+	private static String readChecksum(String url, URLConnection connection) throws IOException {
+		try(InputStream input = connection.getInputStream()) {
+			String text = new String(input.readAllBytes(), StandardCharsets.UTF_8).trim();
+			String checksum = text.split("\\s+")[0];
+			if(checksum.matches("[0-9a-fA-F]{64}")) return checksum;
+			LogManager.logWarning("Unexpected checksum file for " + url + ": " + text);
+			return null;
+		}
 	}
 
 	// Helper Methods
 
-	private boolean doesJreFolderExist() {
-		File jreFolder = new File(getJreFolderName());
-		return jreFolder.isDirectory();
-	}
-
 	private String getJavaURL() {
-		return String.format(version.fmtURL, currentOS.toString().toLowerCase(Locale.ENGLISH), currentOS.zipExtension).replace('|', '%');
+		return version.getURL(currentOS, version.getArch(currentOS, JreManager.getHostArch()));
 	}
 
-	private String getZipFilename() {
-		return String.format("jre%d.%s", version.number, currentOS.zipExtension);
+	public void forceStopThread() {
+		if(downloadThread != null) downloadThread.interrupt();
 	}
 
-	private String getJreFolderName() {
-		return "jre" + version.number;
+	@FunctionalInterface
+	public interface ProgressListener {
+		/**
+		 * @param total the archive size, or -1 if the server did not send it
+		 */
+		void update(long downloaded, long total);
 	}
 
-	void cleanupZip() {
-		File zipFile = new File(getZipFilename());
-		if(zipFile.exists()) zipFile.delete();
-	}
+	/**
+	 * Counts the downloaded bytes for the metrics and the progress listener.
+	 */
+	private class ProgressInputStream extends FilterInputStream {
+		private final long total;
+		private final Counter counter;
+		private long downloaded;
+		private long lastUpdate;
+
+		ProgressInputStream(InputStream input, long total, Counter counter) {
+			super(input);
+			this.total = total;
+			this.counter = counter;
+		}
 
-	void cleanupFolder() {
-		File jreFolder = new File(getJreFolderName());
-		try {
-			if(jreFolder.exists()) {
-				FileUtils.cleanDirectory(jreFolder);
-				FileUtils.deleteDirectory(jreFolder);
-			}
-		} catch(IOException ignored) {
+		@Override
+		public int read() throws IOException {
+			int read = super.read();
+			if(read != -1) count(1);
+			return read;
 		}
-	}
 
-	public void forceStopThread() {
-		if(downloadThread != null) downloadThread.interrupt();
+		@Override
+		public int read(byte[] buffer, int offset, int length) throws IOException {
+			int read = super.read(buffer, offset, length);
+			if(read > 0) count(read);
+			return read;
+		}
+
+		private void count(int bytes) {
+			downloaded += bytes;
+			counter.add(bytes);
+			long now = System.currentTimeMillis();
+			// Updating a dialog for every packet would flood the event queue
+			if(progressListener != null && (now - lastUpdate >= 100 || downloaded == total)) {
+				lastUpdate = now;
+				progressListener.update(downloaded, total);
+			}
+		}
 	}
-}
\ No newline at end of file
+}
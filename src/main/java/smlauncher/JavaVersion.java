@@ -1,5 +1,9 @@
 package smlauncher;
 
+import smlauncher.util.OperatingSystem;
+
+import java.util.Locale;
+
 /**
  * A version of the Java Runtime Environment (JRE).
  *
@@ -7,21 +11,43 @@ package smlauncher;
  */
 public enum JavaVersion {
 
-	JAVA_8(8, "jdk8", "https://github.com/adoptium/temurin8-binaries/releases/download/jdk8u392-b08/OpenJDK8U-jre_x64_%s_hotspot_8u392b08.%s"),
-	JAVA_25(25, "jdk-25", "https://github.com/adoptium/temurin25-binaries/releases/download/jdk-25.0.2|2B7/OpenJDK25U-jdk_x64_%s_hotspot_25.0.2_10.%s");
+	JAVA_8(8, "jdk8", "temurin", "1.8.0_392", "https://github.com/adoptium/temurin8-binaries/releases/download/jdk8u392-b08/OpenJDK8U-jre_%3$s_%1$s_hotspot_8u392b08.%2$s"),
+	JAVA_25(25, "jdk-25", "temurin", "25.0.2", "https://github.com/adoptium/temurin25-binaries/releases/download/jdk-25.0.2|2B7/OpenJDK25U-jdk_%3$s_%1$s_hotspot_25.0.2_10.%2$s");
 
 	public final int number; // Version number
 	public final String fileStart; // JDK folder header
+	public final String vendor; // Vendor of the pinned build
+	public final String release; // Full version of the pinned build, as in its release file
 	public final String fmtURL; // Base download URL
 
-	JavaVersion(int number, String fileStart, String fmtURL) {
+	JavaVersion(int number, String fileStart, String vendor, String release, String fmtURL) {
 		this.number = number;
 		this.fileStart = fileStart;
+		this.vendor = vendor;
+		this.release = release;
 		this.fmtURL = fmtURL;
 	}
 
+	/**
+	 * @return the download URL of the pinned build for the given OS and architecture
+	 */
+	public String getURL(OperatingSystem os, String arch) {
+		return String.format(fmtURL, os.toString().toLowerCase(Locale.ENGLISH), os.zipExtension, arch).replace('|', '%');
+	}
+
+	/**
+	 * Get the architecture of the runtime to use on the given OS, which is the host's unless no build exists for it.
+	 *
+	 * @param hostArch the host architecture, as returned by {@link JreManager#getHostArch()}
+	 */
+	public String getArch(OperatingSystem os, String hostArch) {
+		// Java 8 has ARM builds only for Linux, macOS and Windows run the x64 one emulated
+		if(this == JAVA_8 && os != OperatingSystem.LINUX) return "x64";
+		return hostArch;
+	}
+
 	@Override
 	public String toString() {
 		return "Java " + number;
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,407 @@
+package smlauncher;
+
+import org.apache.commons.compress.archivers.ArchiveEntry;
+import org.apache.commons.compress.archivers.ArchiveInputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveInputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+import org.apache.commons.io.FileUtils;
+import org.json.JSONException;
+import org.json.JSONObject;
+import smlauncher.fileio.TextFileUtil;
+import smlauncher.util.OperatingSystem;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Keeps Java runtimes in a cache in the launcher's app folder, shared by every launcher copy and working directory.
+ * <p>Each runtime has its own folder named by vendor, version, OS and architecture, for example
+ * "temurin-25.0.2-linux-x64". The name is read from the runtime's release file rather than from where it came from, so
+ * a downloaded and an imported copy of the same build are the same entry. A runtime is only added once its archive
+ * matches its SHA-256, and installs are serialized by a lock file, so launchers starting at the same time fetch each
+ * runtime once.</p>
+ * <p>Runtimes can also be imported from a local archive, which provisions machines without internet access.</p>
+ */
+public final class JreManager {
+
+	private static final String INFO_FILE = "runtime.json";
+	private static final int BUFFER_SIZE = 1024 * 64;
+
+	private JreManager() {
+	}
+
+	public static File getCacheFolder() throws IOException {
+		return new File(OperatingSystem.getAppDir(), "runtimes");
+	}
+
+	/**
+	 * Finds an installed runtime for a Java version on this host.
+	 * <p>The pinned build is preferred, otherwise the newest installed build of the same major version is used, such as
+	 * a newer one an administrator imported.</p>
+	 *
+	 * @return the runtime, or null if none is installed
+	 */
+	public static Runtime find(JavaVersion version) {
+		OperatingSystem os = OperatingSystem.getCurrent();
+		String osName = os.toString().toLowerCase(Locale.ENGLISH);
+		String arch = version.getArch(os, getHostArch());
+		Runtime best = null;
+		for(Runtime runtime : list()) {
+			if(runtime.getMajorVersion() != version.number || !runtime.os().equals(osName) || !runtime.arch().equals(arch)) continue;
+			if(!runtime.getJavaExecutable().isFile()) continue;
+			if(runtime.vendor().equals(version.vendor) && runtime.version().equals(version.release)) return runtime;
+			if(best == null || compareVersions(runtime.version(), best.version()) > 0) best = runtime;
+		}
+		return best;
+	}
+
+	/**
+	 * Get the java executable for a Java version.
+	 * <p>Runtimes from the cache are preferred. A jre&lt;#&gt; folder an older launcher installed in the working
+	 * directory is still used, so existing installs do not download Java again.</p>
+	 *
+	 * @return the executable, which does not exist if the runtime still has to be installed
+	 */
+	public static File getJavaExecutable(JavaVersion version) {
+		Runtime runtime = find(version);
+		if(runtime != null) return runtime.getJavaExecutable();
+		OperatingSystem os = OperatingSystem.getCurrent();
+		File legacy = new File(String.format(os.javaPath, version.number)).getAbsoluteFile();
+		if(legacy.isFile()) return legacy;
+		try {
+			String arch = version.getArch(os, getHostArch());
+			return new File(new File(getCacheFolder(), getKey(version.vendor, version.release, os.toString().toLowerCase(Locale.ENGLISH), arch)), getExecutablePath());
+		} catch(IOException exception) {
+			LogManager.logWarning("Failed to open the Java runtime cache", exception);
+			return legacy;
+		}
+	}
+
+	/**
+	 * @return all runtimes in the cache, including ones for other systems
+	 */
+	public static List<Runtime> list() {
+		List<Runtime> runtimes = new ArrayList<>();
+		File[] folders;
+		try {
+			folders = getCacheFolder().listFiles(File::isDirectory);
+		} catch(IOException exception) {
+			LogManager.logWarning("Failed to open the Java runtime cache", exception);
+			return runtimes;
+		}
+		if(folders == null) return runtimes;
+		for(File folder : folders) {
+			File info = new File(folder, INFO_FILE);
+			// Folders without the info file are partial installs
+			if(!info.isFile()) continue;
+			try {
+				JSONObject json = new JSONObject(TextFileUtil.readText(info));
+				runtimes.add(new Runtime(json.getString("vendor"), json.getString("version"), json.getString("os"), json.getString("arch"), json.optString("sha256", ""), folder));
+			} catch(IOException | JSONException exception) {
+				LogManager.logWarning("Failed to read Java runtime " + folder.getName(), exception);
+			}
+		}
+		return runtimes;
+	}
+
+	/**
+	 * Adds a runtime from a local .zip or .tar.gz archive, as downloaded from the vendor.
+	 *
+	 * @param expectedChecksum the SHA-256 of the archive, or null to read it from a .sha256.txt file next to it
+	 * @return the imported runtime
+	 * @throws IOException if the archive cannot be read, does not match its checksum or is not a Java runtime
+	 */
+	public static Runtime importArchive(File archive, String expectedChecksum) throws IOException {
+		if(!archive.isFile()) throw new FileNotFoundException("Archive " + archive.getAbsolutePath() + " does not exist");
+		if(expectedChecksum == null) {
+			File checksumFile = new File(archive.getPath() + ".sha256.txt");
+			if(checksumFile.isFile()) expectedChecksum = TextFileUtil.readText(checksumFile).trim().split("\\s+")[0];
+			else LogManager.logWarning("No checksum given for " + archive.getName() + ", importing it without verifying it");
+		}
+		try(FileChannel ignored = lock()) {
+			File partFolder = createPartFolder();
+			MessageDigest digest = createDigest();
+			try(InputStream raw = new DigestInputStream(new FileInputStream(archive), digest)) {
+				extract(raw, archive.getName().toLowerCase(Locale.ENGLISH).endsWith(".zip"), partFolder.toPath());
+			} catch(IOException exception) {
+				cleanup(partFolder);
+				throw exception;
+			}
+			return add(partFolder, archive.getAbsolutePath(), HexFormat.of().formatHex(digest.digest()), expectedChecksum);
+		}
+	}
+
+	/**
+	 * Serializes installs between launchers, the cache is unlocked when the returned channel is closed.
+	 * <p>Only one thread of a launcher may hold the lock at a time.</p>
+	 */
+	static FileChannel lock() throws IOException {
+		File folder = getCacheFolder();
+		if(!folder.isDirectory() && !folder.mkdirs()) throw new IOException("Failed to create " + folder.getAbsolutePath());
+		FileChannel channel = FileChannel.open(new File(folder, ".lock").toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+		try {
+			channel.lock();
+		} catch(IOException exception) {
+			channel.close();
+			throw exception;
+		}
+		// No other install runs now, so any install folders are left from one that was killed
+		File[] parts = folder.listFiles((dir, name) -> name.startsWith("install-"));
+		if(parts != null) for(File part : parts) cleanup(part);
+		return channel;
+	}
+
+	static File createPartFolder() throws IOException {
+		return Files.createTempDirectory(getCacheFolder().toPath(), "install-").toFile();
+	}
+
+	static MessageDigest createDigest() throws IOException {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch(NoSuchAlgorithmException exception) {
+			throw new IOException("SHA-256 is not available", exception);
+		}
+	}
+
+	/**
+	 * Verifies an extracted runtime and gives it its final name in the cache. Must be called while the cache is locked.
+	 *
+	 * @param checksum         the SHA-256 of the archive the runtime was extracted from
+	 * @param expectedChecksum the checksum the archive should have, or null if it is unknown
+	 */
+	static Runtime add(File partFolder, String source, String checksum, String expectedChecksum) throws IOException {
+		try {
+			if(expectedChecksum != null && !expectedChecksum.equalsIgnoreCase(checksum)) throw new IOException("Checksum of " + source + " is " + checksum + ", expected " + expectedChecksum);
+			Runtime runtime = readRelease(partFolder);
+			if(!runtime.getJavaExecutable().isFile()) throw new IOException(source + " does not contain " + getExecutablePath());
+			File folder = new File(getCacheFolder(), runtime.getKey());
+			if(new File(folder, INFO_FILE).isFile()) {
+				System.out.println("Java runtime " + runtime.getKey() + " is already installed");
+				cleanup(partFolder);
+				return runtime.withFolder(folder);
+			}
+			// A folder without the info file is left from an install that failed while moving
+			cleanup(folder);
+			JSONObject json = new JSONObject();
+			json.put("vendor", runtime.vendor());
+			json.put("version", runtime.version());
+			json.put("os", runtime.os());
+			json.put("arch", runtime.arch());
+			json.put("sha256", checksum);
+			json.put("source", source);
+			json.put("installed", System.currentTimeMillis());
+			TextFileUtil.writeText(new File(partFolder, INFO_FILE), json.toString(4));
+			Files.move(partFolder.toPath(), folder.toPath(), StandardCopyOption.ATOMIC_MOVE);
+			System.out.println("Installed Java runtime " + runtime.getKey() + " from " + source);
+			return new Runtime(runtime.vendor(), runtime.version(), runtime.os(), runtime.arch(), checksum, folder);
+		} catch(IOException exception) {
+			cleanup(partFolder);
+			throw exception;
+		}
+	}
+
+	/**
+	 * Extracts a runtime archive, dropping its top folder so the runtime ends up directly in the target.
+	 * <p>The stream is read to its end, so a digest over it covers the whole archive.</p>
+	 *
+	 * @param zip whether the archive is a .zip rather than a .tar.gz
+	 */
+	static void extract(InputStream raw, boolean zip, Path target) throws IOException {
+		// The archive streams are not closed here, the caller closes the raw stream
+		ArchiveInputStream<?> archive;
+		if(zip) archive = new ZipArchiveInputStream(new BufferedInputStream(raw, BUFFER_SIZE));
+		else archive = new TarArchiveInputStream(new GzipCompressorInputStream(new BufferedInputStream(raw, BUFFER_SIZE)));
+		Files.createDirectories(target);
+		Path root = target.toAbsolutePath().normalize();
+		byte[] buffer = new byte[BUFFER_SIZE];
+		ArchiveEntry entry;
+		while((entry = archive.getNextEntry()) != null) {
+			if(Thread.currentThread().isInterrupted()) throw new InterruptedIOException("Java install was cancelled");
+			String name = entry.getName();
+			int slash = name.indexOf('/');
+			if(slash < 0 || slash == name.length() - 1) continue;
+			Path path = root.resolve(name.substring(slash + 1)).normalize();
+			if(!path.startsWith(root)) throw new IOException("Archive entry " + name + " is outside the target folder");
+			if(entry.isDirectory()) {
+				Files.createDirectories(path);
+				continue;
+			}
+			Files.createDirectories(path.getParent());
+			if(entry instanceof TarArchiveEntry tarEntry && tarEntry.isSymbolicLink()) {
+				// The runtime links between its own files, for example legal/java.xml to legal/java.base
+				Path link = Path.of(tarEntry.getLinkName());
+				if(link.isAbsolute() || link.getRoot() != null || !path.getParent().resolve(link).normalize().startsWith(root)) throw new IOException("Archive entry " + name + " links outside the target folder: " + tarEntry.getLinkName());
+				Files.deleteIfExists(path);
+				Files.createSymbolicLink(path, link);
+				continue;
+			}
+			try(OutputStream output = Files.newOutputStream(path)) {
+				int read;
+				while((read = archive.read(buffer)) != -1) output.write(buffer, 0, read);
+			}
+			if(isExecutable(entry) || path.getParent().getFileName().toString().equals("bin")) path.toFile().setExecutable(true);
+		}
+		// The archive may end before the stream does, the rest still counts for the checksum
+		while(raw.read(buffer) != -1) {
+			if(Thread.currentThread().isInterrupted()) throw new InterruptedIOException("Java install was cancelled");
+		}
+	}
+
+	private static boolean isExecutable(ArchiveEntry entry) {
+		if(entry instanceof TarArchiveEntry tarEntry) return (tarEntry.getMode() & 0100) != 0;
+		if(entry instanceof ZipArchiveEntry zipEntry) return (zipEntry.getUnixMode() & 0100) != 0;
+		return false;
+	}
+
+	/**
+	 * Reads vendor, version, OS and architecture from the release file every JDK and JRE build contains.
+	 */
+	private static Runtime readRelease(File folder) throws IOException {
+		File release = new File(folder, "release");
+		// macOS builds are bundles with the runtime in Contents/Home
+		if(!release.isFile()) release = new File(folder, "Contents/Home/release");
+		if(!release.isFile()) throw new IOException("The archive is not a Java runtime, it has no release file");
+		String vendor = null;
+		String version = null;
+		String os = null;
+		String arch = null;
+		for(String line : Files.readAllLines(release.toPath(), StandardCharsets.UTF_8)) {
+			int equals = line.indexOf('=');
+			if(equals < 0) continue;
+			String value = line.substring(equals + 1).trim().replace("\"", "");
+			switch(line.substring(0, equals).trim()) {
+				case "IMPLEMENTOR" -> vendor = normalizeVendor(value);
+				case "JAVA_VERSION" -> version = value;
+				case "OS_NAME" -> os = normalizeOs(value);
+				case "OS_ARCH" -> arch = normalizeArch(value);
+				default -> {
+				}
+			}
+		}
+		if(version == null || os == null || arch == null) throw new IOException("The release file of the runtime is missing its version, OS or architecture");
+		return new Runtime(vendor == null ? "unknown" : vendor, version, os, arch, "", folder);
+	}
+
+	/**
+	 * @return the host architecture in the naming Adoptium uses, such as "x64" or "aarch64"
+	 */
+	public static String getHostArch() {
+		return normalizeArch(System.getProperty("os.arch", ""));
+	}
+
+	static String getKey(String vendor, String version, String os, String arch) {
+		return (vendor + "-" + version + "-" + os + "-" + arch).replaceAll("[^A-Za-z0-9._+-]", "_");
+	}
+
+	/**
+	 * @return the path of the java executable inside a runtime folder on this OS
+	 */
+	private static String getExecutablePath() {
+		String javaPath = OperatingSystem.getCurrent().javaPath;
+		return javaPath.substring(javaPath.indexOf("jre%d/") + "jre%d/".length());
+	}
+
+	private static String normalizeVendor(String implementor) {
+		String vendor = implementor.toLowerCase(Locale.ENGLISH);
+		if(vendor.contains("adoptium") || vendor.contains("temurin")) return "temurin";
+		return vendor.split("\\s+")[0];
+	}
+
+	private static String normalizeOs(String osName) {
+		String os = osName.toLowerCase(Locale.ENGLISH);
+		if(os.contains("darwin") || os.contains("mac")) return "mac";
+		if(os.contains("win")) return "windows";
+		if(os.contains("sunos") || os.contains("solaris")) return "solaris";
+		return os;
+	}
+
+	private static String normalizeArch(String osArch) {
+		String arch = osArch.toLowerCase(Locale.ENGLISH);
+		return switch(arch) {
+			case "amd64", "x86_64", "x64" -> "x64";
+			case "aarch64", "arm64" -> "aarch64";
+			case "x86", "i386", "i586", "i686" -> "x86-32";
+			default -> arch;
+		};
+	}
+
+	/**
+	 * Compares versions such as "25.0.2" or "1.8.0_392" number by number.
+	 */
+	static int compareVersions(String a, String b) {
+		String[] partsA = a.split("[._+-]");
+		String[] partsB = b.split("[._+-]");
+		for(int i = 0; i < Math.max(partsA.length, partsB.length); i++) {
+			int partA = i < partsA.length ? parseNumber(partsA[i]) : 0;
+			int partB = i < partsB.length ? parseNumber(partsB[i]) : 0;
+			if(partA != partB) return Integer.compare(partA, partB);
+		}
+		return 0;
+	}
+
+	private static int parseNumber(String part) {
+		try {
+			return Integer.parseInt(part);
+		} catch(NumberFormatException exception) {
+			return 0;
+		}
+	}
+
+	static void cleanup(File folder) {
+		try {
+			if(folder.exists()) FileUtils.deleteDirectory(folder);
+		} catch(IOException exception) {
+			LogManager.logWarning("Failed to delete " + folder.getAbsolutePath(), exception);
+		}
+	}
+
+	/**
+	 * A runtime in the cache.
+	 *
+	 * @param vendor  the vendor, such as "temurin"
+	 * @param version the full version from the release file, such as "25.0.2"
+	 * @param os      the OS the runtime is built for
+	 * @param arch    the architecture the runtime is built for
+	 * @param sha256  the checksum of the archive the runtime came from
+	 * @param folder  the runtime folder
+	 */
+	public record Runtime(String vendor, String version, String os, String arch, String sha256, File folder) {
+
+		public String getKey() {
+			return JreManager.getKey(vendor, version, os, arch);
+		}
+
+		/**
+		 * @return the major version, such as 8 for "1.8.0_392"
+		 */
+		public int getMajorVersion() {
+			String[] parts = version.split("[._+-]");
+			int major = parseNumber(parts[0]);
+			if(major == 1 && parts.length > 1) major = parseNumber(parts[1]);
+			return major;
+		}
+
+		public File getJavaExecutable() {
+			return new File(folder, getExecutablePath());
+		}
+
+		Runtime withFolder(File folder) {
+			return new Runtime(vendor, version, os, arch, sha256, folder);
+		}
+	}
+}
@@ -2,6 +2,7 @@ package smlauncher;
 
 import org.apache.commons.io.FileUtils;
 import org.json.JSONObject;
+import smlauncher.starmade.BackupFormat;
 
 import java.io.File;
 import java.io.IOException;
@@ -13,6 +14,7 @@ import java.io.IOException;
  */
 public final class LaunchSettings {
 
+	private static final int DEFAULT_MEMORY = 8192;
 	private static JSONObject launchSettings;
 
 	// Settings File Methods
@@ -56,7 +58,25 @@ public final class LaunchSettings {
 		settings.put("lastUsedBranch", 0); // Release
 		settings.put("lastUsedVersion", "NONE");
 		settings.put("launchArgs", "");
-		settings.put("memory", 8192);
+		settings.put("memory", DEFAULT_MEMORY);
+		settings.put("jvmTuning", true);
+		settings.put("aotCache", false);
+		settings.put("jlinkRuntime", false);
+		settings.put("serverWarmStandby", false);
+		settings.put("serverRestartInterval", 0);
+		settings.put("updatePrefetch", false);
+		settings.put("prefetchBandwidth", 1024);
+		settings.put("downloadBandwidth", 0);
+		settings.put("downloadBandwidthWhilePlayingOnly", true);
+		settings.put("backupFormat", BackupFormat.ZIP.name());
+		settings.put("backupLevelDatabase", -1);
+		settings.put("backupLevelFull", -1);
+		settings.put("gameLogMaxSize", 10);
+		settings.put("gameLogFiles", 5);
+		settings.put("gameLogCompress", true);
+		settings.put("metricsPort", 0);
+		settings.put("metricsDump", false);
+		settings.put("allowUnverifiedJava", false);
 		return settings;
 	}
 
@@ -108,4 +128,185 @@ public final class LaunchSettings {
 	public static void setMemory(int memory) {
 		launchSettings.put("memory", memory);
 	}
+
+	/**
+	 * @return whether the heap, garbage collector and processor count are picked from the host instead of the memory
+	 * setting
+	 */
+	public static boolean isJvmTuningEnabled() {
+		// Settings files from before the tuner only get it if the user never changed the memory setting
+		return launchSettings.optBoolean("jvmTuning", launchSettings.optInt("memory", DEFAULT_MEMORY) == DEFAULT_MEMORY);
+	}
+
+	public static void setJvmTuningEnabled(boolean jvmTuning) {
+		launchSettings.put("jvmTuning", jvmTuning);
+	}
+
+	/**
+	 * @return whether the game is started with an ahead-of-time class cache on Java 25
+	 */
+	public static boolean isAotCacheEnabled() {
+		return launchSettings.optBoolean("aotCache", false);
+	}
+
+	public static void setAotCacheEnabled(boolean aotCache) {
+		launchSettings.put("aotCache", aotCache);
+	}
+
+	/**
+	 * @return whether the game runs on a runtime trimmed to the modules it uses on Java 25
+	 */
+	public static boolean isJlinkRuntimeEnabled() {
+		return launchSettings.optBoolean("jlinkRuntime", false);
+	}
+
+	public static void setJlinkRuntimeEnabled(boolean jlinkRuntime) {
+		launchSettings.put("jlinkRuntime", jlinkRuntime);
+	}
+
+	/**
+	 * @return whether the files of a newer build are downloaded in the background while the game runs
+	 */
+	public static boolean isUpdatePrefetchEnabled() {
+		return launchSettings.optBoolean("updatePrefetch", false);
+	}
+
+	public static void setUpdatePrefetchEnabled(boolean updatePrefetch) {
+		launchSettings.put("updatePrefetch", updatePrefetch);
+	}
+
+	/**
+	 * @return the bandwidth the background download of a newer build may use in KB/s, or 0 for no limit
+	 */
+	public static int getPrefetchBandwidth() {
+		return launchSettings.optInt("prefetchBandwidth", 1024);
+	}
+
+	public static void setPrefetchBandwidth(int prefetchBandwidth) {
+		launchSettings.put("prefetchBandwidth", prefetchBandwidth);
+	}
+
+	/**
+	 * @return the bandwidth all game downloads share in KB/s, or 0 for no limit
+	 */
+	public static int getDownloadBandwidth() {
+		return launchSettings.optInt("downloadBandwidth", 0);
+	}
+
+	public static void setDownloadBandwidth(int downloadBandwidth) {
+		launchSettings.put("downloadBandwidth", downloadBandwidth);
+	}
+
+	/**
+	 * @return whether the download bandwidth is only limited while a game or server process runs on this host
+	 */
+	public static boolean isDownloadBandwidthWhilePlayingOnly() {
+		return launchSettings.optBoolean("downloadBandwidthWhilePlayingOnly", true);
+	}
+
+	public static void setDownloadBandwidthWhilePlayingOnly(boolean whilePlayingOnly) {
+		launchSettings.put("downloadBandwidthWhilePlayingOnly", whilePlayingOnly);
+	}
+
+	/**
+	 * @return whether a supervised server keeps a second JVM ready to take over on restarts
+	 */
+	public static boolean isServerWarmStandbyEnabled() {
+		return launchSettings.optBoolean("serverWarmStandby", false);
+	}
+
+	public static void setServerWarmStandbyEnabled(boolean serverWarmStandby) {
+		launchSettings.put("serverWarmStandby", serverWarmStandby);
+	}
+
+	/**
+	 * @return the minutes a supervised server runs before it is restarted, or 0 to never restart it on a schedule
+	 */
+	public static int getServerRestartInterval() {
+		return launchSettings.optInt("serverRestartInterval", 0);
+	}
+
+	public static void setServerRestartInterval(int serverRestartInterval) {
+		launchSettings.put("serverRestartInterval", serverRestartInterval);
+	}
+
+	public static BackupFormat getBackupFormat() {
+		return BackupFormat.parse(launchSettings.optString("backupFormat", BackupFormat.ZIP.name()));
+	}
+
+	public static void setBackupFormat(BackupFormat backupFormat) {
+		launchSettings.put("backupFormat", backupFormat.name());
+	}
+
+	/**
+	 * @param databaseOnly whether the level is for database backups or backups of the whole install
+	 * @return the compression level, or -1 for the format's default
+	 */
+	public static int getBackupLevel(boolean databaseOnly) {
+		return launchSettings.optInt(databaseOnly ? "backupLevelDatabase" : "backupLevelFull", -1);
+	}
+
+	public static void setBackupLevel(boolean databaseOnly, int level) {
+		launchSettings.put(databaseOnly ? "backupLevelDatabase" : "backupLevelFull", level);
+	}
+
+	/**
+	 * @return the size in MB at which game and server logs are rotated
+	 */
+	public static int getGameLogMaxSize() {
+		return launchSettings.optInt("gameLogMaxSize", 10);
+	}
+
+	public static void setGameLogMaxSize(int gameLogMaxSize) {
+		launchSettings.put("gameLogMaxSize", gameLogMaxSize);
+	}
+
+	public static int getGameLogFiles() {
+		return launchSettings.optInt("gameLogFiles", 5);
+	}
+
+	public static void setGameLogFiles(int gameLogFiles) {
+		launchSettings.put("gameLogFiles", gameLogFiles);
+	}
+
+	public static boolean isGameLogCompressed() {
+		return launchSettings.optBoolean("gameLogCompress", true);
+	}
+
+	public static void setGameLogCompressed(boolean gameLogCompress) {
+		launchSettings.put("gameLogCompress", gameLogCompress);
+	}
+
+	/**
+	 * @return the local port to serve metrics on, or 0 if the metrics server is disabled
+	 */
+	public static int getMetricsPort() {
+		return launchSettings.optInt("metricsPort", 0);
+	}
+
+	public static void setMetricsPort(int metricsPort) {
+		launchSettings.put("metricsPort", metricsPort);
+	}
+
+	/**
+	 * @return whether the metrics are written to logs/metrics.json when the launcher exits
+	 */
+	public static boolean isMetricsDumpEnabled() {
+		return launchSettings.optBoolean("metricsDump", false);
+	}
+
+	public static void setMetricsDumpEnabled(boolean metricsDump) {
+		launchSettings.put("metricsDump", metricsDump);
+	}
+
+	/**
+	 * @return whether a Java runtime is installed even if the checksum published next to it could not be fetched
+	 */
+	public static boolean isUnverifiedJavaAllowed() {
+		return launchSettings.optBoolean("allowUnverifiedJava", false);
+	}
+
+	public static void setUnverifiedJavaAllowed(boolean allowUnverifiedJava) {
+		launchSettings.put("allowUnverifiedJava", allowUnverifiedJava);
+	}
 }
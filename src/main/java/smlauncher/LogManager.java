@@ -5,185 +5,474 @@ import org.slf4j.LoggerFactory;
 import smlauncher.starmade.ErrorDialog;
 import smlauncher.starmade.GameBranch;
 
-import java.io.File;
-import java.io.FileWriter;
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 /**
- * [Description]
+ * Writes the launcher log.
+ * <p>Logging calls only put a record on a queue and return. A background thread takes the records in batches, writes
+ * them to the log file and to the console through slf4j. The file is flushed within a second, or right away for
+ * warnings and errors, and the thread sleeps while nothing is logged. Fatal errors wait until they have been written. If the writer falls behind, info messages are dropped
+ * and counted instead of blocking the caller.</p>
  *
  * @author TheDerpGamer
  */
 public class LogManager {
 
 	private static final int STACKTRACE_LIMIT = 10;
+	/**
+	 * The number of launcher logs to keep, including the current one.
+	 */
+	public static final int MAX_LOG_FILES = 20;
+	/**
+	 * The total size of the launcher logs to keep.
+	 */
+	public static final long MAX_LOG_BYTES = 1024L * 1024 * 100;
+	/**
+	 * Logs written to more recently than this may belong to another running launcher, even without a lock file.
+	 */
+	private static final long LIVE_LOG_MILLIS = TimeUnit.MINUTES.toMillis(10);
+	private static final DateTimeFormatter LOG_NAME_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+	private static final int MAX_QUEUED = 1024 * 64;
+	private static final int BATCH_SIZE = 256;
+	private static final long FLUSH_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
 	private static final Logger log = LoggerFactory.getLogger(LogManager.class);
+	private static final LinkedBlockingQueue<Message> queue = new LinkedBlockingQueue<>();
+	private static final AtomicInteger queued = new AtomicInteger();
+	private static final AtomicLong dropped = new AtomicLong();
+	private static final AtomicLong totalDropped = new AtomicLong();
+	private static final Object fileLock = new Object();
+	private static final Thread writerThread;
 	public static File logFile;
-	private static FileWriter logWriter;
+	private static Writer logWriter;
+	private static FileChannel logLockChannel;
 
+	static {
+		writerThread = new Thread(LogManager::drain, "Launcher-Log-Writer");
+		writerThread.setDaemon(true);
+		writerThread.start();
+		Runtime.getRuntime().addShutdownHook(new Thread(LogManager::shutdown, "Launcher-Log-Shutdown"));
+	}
+
+	/**
+	 * Opens a new log named after the current time. Older logs are compressed and trimmed to {@link #MAX_LOG_FILES} and
+	 * {@link #MAX_LOG_BYTES} on a background thread, so a folder full of old logs does not slow down startup. Only the
+	 * first call opens a log, the settings call this too when they are created on the first start.
+	 * <p>Several launchers can share the logs folder, for example one per server. Each one holds a lock on a lock file
+	 * next to its log while it runs, and logs that are locked or were written to recently are never compressed or
+	 * deleted.</p>
+	 */
 	public static void initialize() {
+		if(logFile != null) return;
 		try {
 			File logsFolder = new File(LaunchSettings.getInstallDir() + "/logs");
 			if(!logsFolder.exists()) logsFolder.mkdirs();
-			File[] logFiles = logsFolder.listFiles();
-			List<File> logFilesReverse = new ArrayList<>();
-			if(logFiles != null) {
-				for(File logFile : logFiles) {
-					try {
-						String fileName = logFile.getName();
-						if(fileName.startsWith("launcher.") && fileName.endsWith(".log")) logFilesReverse.add(logFile);
-					} catch(Exception exception) {
-						exception.printStackTrace();
-					}
-				}
+			String time = LocalDateTime.now().format(LOG_NAME_FORMAT);
+			File file = new File(logsFolder, "launcher-" + time + ".log");
+			for(int i = 1; file.exists(); i++) file = new File(logsFolder, "launcher-" + time + "-" + i + ".log");
+			synchronized(fileLock) {
+				closeWriter();
+				logFile = file;
+				logWriter = new BufferedWriter(new FileWriter(logFile, StandardCharsets.UTF_8), 1024 * 64);
 			}
-			for(int i = logFilesReverse.size() - 1; i >= 0; i--) {
-				File logFile = logFilesReverse.get(i);
-				String fileName = logFile.getName();
-				String[] split = fileName.split("\\.");
-				int logNumber = Integer.parseInt(split[1]);
-				File newLogFile = new File(LaunchSettings.getInstallDir() + "/logs/launcher." + (logNumber + 1) + ".log");
-				logFile.renameTo(newLogFile);
-			}
-			logFile = new File(LaunchSettings.getInstallDir() + "/logs/launcher.0.log");
-			if(logFile.exists()) logFile.delete();
-			logFile.createNewFile();
-			logWriter = new FileWriter(logFile, StandardCharsets.UTF_8);
+			lockLog(file);
+			File current = file;
+			Thread cleanup = new Thread(() -> cleanUp(logsFolder, current), "Launcher-Log-Cleanup");
+			cleanup.setDaemon(true);
+			cleanup.setPriority(Thread.MIN_PRIORITY);
+			cleanup.start();
 		} catch(Exception exception) {
 			exception.printStackTrace();
 		}
 	}
 
 	public static void logInfo(String message) {
-		System.out.println("[INFO]: " + message);
+		enqueue(Level.INFO, message, null);
+	}
+
+	public static void logWarning(String message) {
+		enqueue(Level.WARNING, message, null);
+	}
+
+	public static void logWarning(String message, Exception exception) {
+		enqueue(Level.WARNING, message, exception);
+	}
+
+	public static void logException(String message, Exception exception) {
+		enqueue(Level.ERROR, message, exception);
+//		(new ErrorDialog("Error", message, exception, false)).setVisible(true);
+	}
+
+	public static void logFatal(String message, Throwable exception) {
+		enqueue(Level.FATAL, message, exception);
+		// The launcher usually exits after a fatal error, so wait until it is in the log
+		flush(5000);
+//		(new ErrorDialog("Fatal Error", message, exception, true)).setVisible(true);
+	}
+
+	/**
+	 * Waits until everything logged so far has been written and flushed.
+	 *
+	 * @param timeoutMillis how long to wait at most
+	 * @return false if the timeout passed first
+	 */
+	public static boolean flush(long timeoutMillis) {
+		if(Thread.currentThread() == writerThread) return false;
+		CountDownLatch latch = new CountDownLatch(1);
+		queue.add(new Message(Level.INFO, null, null, latch));
 		try {
-			logWriter.append("[INFO]: ").append(message).append("\n");
-			logWriter.flush();
-		} catch(Exception exception) {
-			exception.printStackTrace();
+			return latch.await(timeoutMillis, TimeUnit.MILLISECONDS);
+		} catch(InterruptedException exception) {
+			Thread.currentThread().interrupt();
+			return false;
 		}
 	}
 
-	public static void logWarning(String message) {
-		System.out.println("[WARNING]: " + message);
+	/**
+	 * @return the number of messages that were dropped because the log could not keep up
+	 */
+	public static long getDroppedCount() {
+		return totalDropped.get();
+	}
+
+	private static void enqueue(Level level, String message, Throwable throwable) {
+		// Warnings and worse are never dropped, they are rare and the ones worth keeping
+		int size = queued.incrementAndGet();
+		if(size > MAX_QUEUED && level == Level.INFO) {
+			queued.decrementAndGet();
+			dropped.incrementAndGet();
+			totalDropped.incrementAndGet();
+			return;
+		}
+		queue.add(new Message(level, message, throwable, null));
+	}
+
+	private static void drain() {
+		List<Message> batch = new ArrayList<>(BATCH_SIZE);
+		long lastFlush = System.nanoTime();
+		boolean dirty = false;
+		while(true) {
+			try {
+				// An idle writer blocks until the next message, it only wakes on time to flush what it has written
+				Message first = dirty ? queue.poll(Math.max(0, FLUSH_INTERVAL_NANOS - (System.nanoTime() - lastFlush)), TimeUnit.NANOSECONDS) : queue.take();
+				if(first == null) {
+					flushWriter();
+					lastFlush = System.nanoTime();
+					dirty = false;
+					continue;
+				}
+				batch.add(first);
+				queue.drainTo(batch, BATCH_SIZE - 1);
+				boolean urgent = write(batch);
+				dirty = true;
+				if(urgent || System.nanoTime() - lastFlush >= FLUSH_INTERVAL_NANOS) {
+					flushWriter();
+					lastFlush = System.nanoTime();
+					dirty = false;
+				}
+			} catch(Throwable throwable) {
+				// Never let a bad message kill the writer
+				throwable.printStackTrace();
+			} finally {
+				// The whole batch leaves the queue, also when writing it failed partway
+				for(Message done : batch) {
+					if(done.flushed != null) done.flushed.countDown();
+					else queued.decrementAndGet();
+				}
+				batch.clear();
+			}
+		}
+	}
+
+	/**
+	 * @return whether the batch has to be flushed right away
+	 */
+	private static boolean write(List<Message> batch) {
+		StringBuilder text = new StringBuilder();
+		boolean urgent = false;
+		long lost = dropped.getAndSet(0);
+		if(lost > 0) {
+			log.warn("{} log messages were dropped because the log could not keep up", lost);
+			text.append("[WARNING]: ").append(lost).append(" log messages were dropped because the log could not keep up\n");
+		}
+		for(Message record : batch) {
+			if(record.flushed != null) {
+				urgent = true;
+				continue;
+			}
+			if(record.level != Level.INFO) urgent = true;
+			switch(record.level) {
+				case INFO -> log.info(record.message);
+				case WARNING -> log.warn(record.message, record.throwable);
+				default -> log.error("[" + record.level.name() + "] " + record.message, record.throwable);
+			}
+			text.append("[").append(record.level.name()).append("]: ").append(record.message).append("\n");
+			if(record.throwable != null) appendStackTrace(text, record.throwable);
+		}
+		synchronized(fileLock) {
+			if(logWriter != null && !text.isEmpty()) {
+				try {
+					logWriter.append(text);
+				} catch(IOException exception) {
+					exception.printStackTrace();
+				}
+			}
+		}
+		return urgent;
+	}
+
+	private static void appendStackTrace(StringBuilder text, Throwable throwable) {
+		text.append(throwable.getMessage()).append("\n");
+		text.append("Stack Trace:\n");
+		int i = 0;
+		for(StackTraceElement element : throwable.getStackTrace()) {
+			if(i > STACKTRACE_LIMIT) {
+				text.append("\t...").append("\n");
+				break;
+			}
+			text.append("\t").append(element.toString()).append("\n");
+			i++;
+		}
+	}
+
+	private static void flushWriter() {
+		synchronized(fileLock) {
+			if(logWriter == null) return;
+			try {
+				logWriter.flush();
+			} catch(IOException exception) {
+				exception.printStackTrace();
+			}
+		}
+	}
+
+	private static void closeWriter() {
+		if(logWriter == null) return;
 		try {
-			logWriter.append("[WARNING]: ").append(message).append("\n");
-			logWriter.flush();
-		} catch(Exception exception) {
+			logWriter.close();
+		} catch(IOException exception) {
 			exception.printStackTrace();
 		}
+		logWriter = null;
 	}
 
-	public static void logWarning(String message, Exception exception) {
-		exception.printStackTrace();
-		System.out.println("[WARNING]: " + message);
-		try {
-			logWriter.append("[WARNING]: ").append(message).append("\n");
-			logWriter.append(exception.getMessage()).append("\n");
-			logWriter.append("Stack Trace:\n");
-			int i = 0;
-			for(StackTraceElement element : exception.getStackTrace()) {
-				if(i > STACKTRACE_LIMIT) {
-					logWriter.append("\t...").append("\n");
-					break;
+	/**
+	 * @return the launcher logs in the folder, newest first, including the numbered logs of older launcher versions
+	 */
+	private static List<File> getLogFiles(File logsFolder) {
+		File[] files = logsFolder.listFiles((dir, name) -> (name.startsWith("launcher-") || name.startsWith("launcher.")) && (name.endsWith(".log") || name.endsWith(".log.gz")));
+		if(files == null) return new ArrayList<>();
+		List<File> logs = new ArrayList<>(List.of(files));
+		logs.sort(Comparator.comparingLong(File::lastModified).reversed());
+		return logs;
+	}
+
+	private static void cleanUp(File logsFolder, File current) {
+		List<File> logs = getLogFiles(logsFolder);
+		logs.remove(current);
+		int count = 1;
+		// The current log and the logs of other running launchers count towards the limits, but are never touched
+		long totalBytes = current.length();
+		for(File file : logs) {
+			count++;
+			boolean live = file.getName().endsWith(".log") && isLive(file);
+			if(!live && count <= MAX_LOG_FILES && file.getName().endsWith(".log")) file = compress(file);
+			totalBytes += file.length();
+			if(!live && (count > MAX_LOG_FILES || totalBytes > MAX_LOG_BYTES)) {
+				try {
+					Files.deleteIfExists(file.toPath());
+				} catch(IOException exception) {
+					logWarning("Failed to delete old log " + file.getName(), exception);
 				}
-				logWriter.append("\t").append(element.toString()).append("\n");
-				i++;
 			}
-			logWriter.flush();
-		} catch(Exception e) {
-			e.printStackTrace();
 		}
 	}
 
-	public static void logException(String message, Exception exception) {
-		exception.printStackTrace();
-		System.out.println("[ERROR]: " + message);
+	/**
+	 * Locks the lock file of the log until the launcher exits. The operating system releases the lock when the
+	 * process ends, so a launcher that crashed does not keep its log from being cleaned up.
+	 */
+	private static void lockLog(File log) {
 		try {
-			logWriter.append("[ERROR]: ").append(message).append("\n");
-			logWriter.append(exception.getMessage()).append("\n");
-			logWriter.append("Stack Trace:\n");
-			int i = 0;
-			for(StackTraceElement element : exception.getStackTrace()) {
-				if(i > STACKTRACE_LIMIT) {
-					logWriter.append("\t...").append("\n");
-					break;
-				}
-				logWriter.append("\t").append(element.toString()).append("\n");
-				i++;
+			logLockChannel = FileChannel.open(getLockFile(log).toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+			if(logLockChannel.tryLock() == null) logWarning("Failed to lock " + log.getName() + ", other launchers may clean it up");
+		} catch(IOException exception) {
+			logWarning("Failed to lock " + log.getName() + ", other launchers may clean it up", exception);
+		}
+	}
+
+	/**
+	 * @return whether another launcher may still be writing the log
+	 */
+	private static boolean isLive(File log) {
+		if(System.currentTimeMillis() - log.lastModified() < LIVE_LOG_MILLIS) return true;
+		File lockFile = getLockFile(log);
+		if(!lockFile.exists()) return false;
+		try(FileChannel channel = FileChannel.open(lockFile.toPath(), StandardOpenOption.WRITE)) {
+			FileLock lock = channel.tryLock();
+			if(lock == null) return true;
+			lock.release();
+		} catch(OverlappingFileLockException exception) {
+			return true;
+		} catch(IOException exception) {
+			// A lock file that cannot be opened is most likely held open by its launcher
+			return true;
+		}
+		// Left behind by a launcher that did not exit cleanly
+		lockFile.delete();
+		return false;
+	}
+
+	private static File getLockFile(File log) {
+		return new File(log.getParentFile(), log.getName() + ".lock");
+	}
+
+	/**
+	 * @return the compressed log, or the original if it could not be compressed
+	 */
+	private static File compress(File file) {
+		File compressed = new File(file.getParentFile(), file.getName() + ".gz");
+		File temp = new File(file.getParentFile(), file.getName() + ".gz.tmp");
+		try {
+			try(InputStream in = new FileInputStream(file); OutputStream out = new GZIPOutputStream(new FileOutputStream(temp), 1024 * 64)) {
+				in.transferTo(out);
 			}
-			logWriter.flush();
-//			(new ErrorDialog("Error", message, exception, false)).setVisible(true);
-		} catch(Exception e) {
-			e.printStackTrace();
+			// Keep the age of the log, it decides the order logs are trimmed in
+			temp.setLastModified(file.lastModified());
+			Files.move(temp.toPath(), compressed.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			Files.delete(file.toPath());
+			return compressed;
+		} catch(IOException exception) {
+			logWarning("Failed to compress old log " + file.getName(), exception);
+			temp.delete();
+			return file;
 		}
 	}
 
-	public static void logFatal(String message, Throwable exception) {
-		exception.printStackTrace();
-		System.out.println("[FATAL]: " + message);
+	private static void shutdown() {
+		flush(2000);
+		synchronized(fileLock) {
+			closeWriter();
+		}
+		if(logLockChannel != null) {
+			try {
+				logLockChannel.close();
+			} catch(IOException exception) {
+				exception.printStackTrace();
+			}
+			getLockFile(logFile).delete();
+		}
+	}
+
+	public static File createErrorReport(String error, String description, Throwable exception) {
 		try {
-			logWriter.append("[FATAL]: ").append(message).append("\n");
-			logWriter.append(exception.getMessage()).append("\n");
-			logWriter.append("Stack Trace:\n");
-			int i = 0;
-			for(StackTraceElement element : exception.getStackTrace()) {
-				if(i > STACKTRACE_LIMIT) {
-					logWriter.append("\t...").append("\n");
-					break;
-				}
-				logWriter.append("\t").append(element.toString()).append("\n");
-				i++;
+			String date = (new Date()).toString().replace(" ", "_").replace(":", "-");
+			File errorReport = new File("error_report_" + date + ".txt");
+			try(Writer writer = new FileWriter(errorReport, StandardCharsets.UTF_8)) {
+				writeErrorReport(writer, date, error, description, exception);
 			}
-			logWriter.flush();
-//			(new ErrorDialog("Fatal Error", message, exception, true)).setVisible(true);
+			return errorReport;
 		} catch(Exception e) {
 			e.printStackTrace();
+			return null;
 		}
 	}
 
-	public static File createErrorReport(String error, String description, Throwable exception) {
+	/**
+	 * Creates a zip with the error report and the most recent launcher logs, ready to attach to a bug report.
+	 *
+	 * @param logCount the number of logs to include, newest first
+	 * @return the zip file, or null if it could not be created
+	 */
+	public static File createErrorReport(String error, String description, Throwable exception, int logCount) {
 		try {
 			String date = (new Date()).toString().replace(" ", "_").replace(":", "-");
-			File errorReport = new File("error_report_" + date + ".txt");
-			FileWriter writer = new FileWriter(errorReport, StandardCharsets.UTF_8);
-			writer.append("StarMade Launcher Error Report [").append(date).append("]:\n\n");
-
-			writer.append("System Information:\n");
-			writer.append("\tOS: ").append(System.getProperty("os.name")).append("\n");
-			writer.append("\tOS Version: ").append(System.getProperty("os.version")).append("\n");
-			writer.append("\tJava Version: ").append(System.getProperty("java.version")).append("\n");
-			writer.append("\tJava Vendor: ").append(System.getProperty("java.vendor")).append("\n");
-			writer.append("\tJava Home: ").append(System.getProperty("java.home")).append("\n");
-			writer.append("\tCurrent Directory: ").append(System.getProperty("user.dir")).append("\n\n");
-
-			writer.append("Launcher State Information:\n");
-			writer.append("\tInstall Directory: ").append(LaunchSettings.getInstallDir()).append("\n");
-			writer.append("\tLast Used Branch: ").append(GameBranch.values()[LaunchSettings.getLastUsedBranch()].name).append("\n");
-			writer.append("\tLast Used Version: ").append(LaunchSettings.getLastUsedVersion()).append("\n");
-			writer.append("\tLaunch Arguments: ").append(LaunchSettings.getLaunchArgs()).append("\n");
-			writer.append("\tMemory: ").append(String.valueOf(LaunchSettings.getMemory())).append("\n");
-			writer.append("\tJVM Arguments: ").append(LaunchSettings.getJvmArgs()).append("\n");
-			writer.append("\tStarMade.jar Exists: ").append(String.valueOf(new File(LaunchSettings.getInstallDir() + "/StarMade.jar").exists())).append("\n\n");
-			writer.append("\tJava 8 Folder Exists: ").append(String.valueOf(new File("jre8").exists())).append("\n");
-			writer.append("\tJava 25 Folder Exists: ").append(String.valueOf(new File("jre25").exists())).append("\n");
-			writer.append("\tData Folder Exists: ").append(String.valueOf(new File(LaunchSettings.getInstallDir() + "/data").exists())).append("\n\n");
-
-			writer.append("Error Details:\n");
-			writer.append("\tError: ").append(error).append("\n");
-			writer.append("\tDescription: ").append(description).append("\n");
-			writer.append("\tException: ").append(exception.getMessage()).append("\n");
-			writer.append("\tStack Trace:\n");
-			for(StackTraceElement element : exception.getStackTrace()) writer.append("\t\t").append(element.toString()).append("\n");
-			writer.flush();
-			writer.close();
+			File errorReport = new File("error_report_" + date + ".zip");
+			flush(2000);
+			try(ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(errorReport))) {
+				zip.putNextEntry(new ZipEntry("error_report.txt"));
+				Writer writer = new OutputStreamWriter(zip, StandardCharsets.UTF_8);
+				writeErrorReport(writer, date, error, description, exception);
+				writer.flush();
+				zip.closeEntry();
+				List<File> logs = getLogFiles(new File(LaunchSettings.getInstallDir() + "/logs"));
+				for(File file : logs.subList(0, Math.min(logCount, logs.size()))) {
+					try(InputStream in = new FileInputStream(file)) {
+						zip.putNextEntry(new ZipEntry("logs/" + file.getName()));
+						in.transferTo(zip);
+						zip.closeEntry();
+					} catch(IOException e) {
+						// The cleanup thread may have just compressed it
+						e.printStackTrace();
+					}
+				}
+			}
 			return errorReport;
 		} catch(Exception e) {
 			e.printStackTrace();
 			return null;
 		}
 	}
+
+	private static void writeErrorReport(Writer writer, String date, String error, String description, Throwable exception) throws IOException {
+		writer.append("StarMade Launcher Error Report [").append(date).append("]:\n\n");
+
+		writer.append("System Information:\n");
+		writer.append("\tOS: ").append(System.getProperty("os.name")).append("\n");
+		writer.append("\tOS Version: ").append(System.getProperty("os.version")).append("\n");
+		writer.append("\tJava Version: ").append(System.getProperty("java.version")).append("\n");
+		writer.append("\tJava Vendor: ").append(System.getProperty("java.vendor")).append("\n");
+		writer.append("\tJava Home: ").append(System.getProperty("java.home")).append("\n");
+		writer.append("\tCurrent Directory: ").append(System.getProperty("user.dir")).append("\n\n");
+
+		writer.append("Launcher State Information:\n");
+		writer.append("\tInstall Directory: ").append(LaunchSettings.getInstallDir()).append("\n");
+		writer.append("\tLast Used Branch: ").append(GameBranch.values()[LaunchSettings.getLastUsedBranch()].name).append("\n");
+		writer.append("\tLast Used Version: ").append(LaunchSettings.getLastUsedVersion()).append("\n");
+		writer.append("\tLaunch Arguments: ").append(LaunchSettings.getLaunchArgs()).append("\n");
+		writer.append("\tMemory: ").append(String.valueOf(LaunchSettings.getMemory())).append("\n");
+		writer.append("\tAutomatic JVM Tuning: ").append(String.valueOf(LaunchSettings.isJvmTuningEnabled())).append("\n");
+		writer.append("\tJVM Arguments: ").append(LaunchSettings.getJvmArgs()).append("\n");
+		writer.append("\tStarMade.jar Exists: ").append(String.valueOf(new File(LaunchSettings.getInstallDir() + "/StarMade.jar").exists())).append("\n\n");
+		writer.append("\tJava 8 Folder Exists: ").append(String.valueOf(new File("jre8").exists())).append("\n");
+		writer.append("\tJava 25 Folder Exists: ").append(String.valueOf(new File("jre25").exists())).append("\n");
+		writer.append("\tData Folder Exists: ").append(String.valueOf(new File(LaunchSettings.getInstallDir() + "/data").exists())).append("\n\n");
+
+		writer.append("Error Details:\n");
+		writer.append("\tError: ").append(error).append("\n");
+		writer.append("\tDescription: ").append(description).append("\n");
+		writer.append("\tException: ").append(exception.getMessage()).append("\n");
+		writer.append("\tStack Trace:\n");
+		for(StackTraceElement element : exception.getStackTrace()) writer.append("\t\t").append(element.toString()).append("\n");
+	}
+
+	private enum Level {
+		INFO, WARNING, ERROR, FATAL
+	}
+
+	/**
+	 * A queued log message, or a flush request if {@code flushed} is set.
+	 */
+	private record Message(Level level, String message, Throwable throwable, CountDownLatch flushed) {
+	}
 }
@@ -4,19 +4,35 @@ import com.formdev.flatlaf.FlatDarkLaf;
 import oshi.SystemInfo;
 import oshi.hardware.HardwareAbstractionLayer;
 import smlauncher.community.LauncherCommunityPanel;
+import smlauncher.event.CoalescingListener;
+import smlauncher.event.ConsoleProgressRenderer;
+import smlauncher.event.DownloadProgress;
+import smlauncher.event.ProgressBus;
+import smlauncher.event.ProgressEvent;
 import smlauncher.fileio.TextFileUtil;
+import smlauncher.metrics.Metrics;
+import smlauncher.metrics.MetricsServer;
 import smlauncher.news.LauncherNewsPanel;
-import smlauncher.starmade.GameBranch;
-import smlauncher.starmade.GameUpdater;
-import smlauncher.starmade.IndexFileEntry;
-import smlauncher.starmade.StarMadeCredentials;
+import smlauncher.process.AotCache;
+import smlauncher.process.JlinkRuntime;
+import smlauncher.process.JvmTuner;
+import smlauncher.process.LogPump;
+import smlauncher.process.ResourceMonitor;
+import smlauncher.process.RotatingLogFile;
+import smlauncher.server.InstanceManager;
+import smlauncher.server.ServerInstance;
+import smlauncher.server.ServerSupervisor;
+import smlauncher.starmade.*;
 import smlauncher.ui.LauncherFooterPanel;
 import smlauncher.ui.LauncherHeaderPanel;
+import smlauncher.ui.ImageCache;
 import smlauncher.ui.LauncherNavigationPanel;
+import smlauncher.ui.OverlayRepainter;
+import smlauncher.ui.ResourceGraph;
+import smlauncher.ui.RestoreBackupDialog;
 import smlauncher.util.OperatingSystem;
 import smlauncher.util.Palette;
 
-import javax.imageio.ImageIO;
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 import javax.swing.plaf.basic.BasicComboBoxUI;
@@ -36,6 +52,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Main class for the StarMade Launcher.
@@ -48,17 +65,21 @@ public class StarMadeLauncher extends JFrame {
 	public static final String LAUNCHER_VERSION = "3.4.0";
 	public static final String BUG_REPORT_URL = "https://github.com/StarMade-Community/StarMade-Launcher/issues";
 	private static final String J25ARGS = "--add-opens=java.base/jdk.internal.misc=ALL-UNNAMED";
+	private static final int UPDATE_EVENTS_PER_SECOND = 10;
 	private static IndexFileEntry gameVersion;
 	private static GameBranch lastUsedBranch = GameBranch.RELEASE;
 	private static boolean debugMode;
 	private static String selectedVersion;
 	private static boolean serverMode;
 	private static int port;
+	private static boolean warmStandby;
+	private static boolean instancesMode;
+	private static int restartInterval;
 	private static OperatingSystem currentOS;
 	private static JTextField portField;
 	private static UpdaterThread updaterThread;
 	private final VersionRegistry versionRegistry;
-	private final DownloadStatus dlStatus = new DownloadStatus();
+	private String updateStatus = "Updating...";
 	private JButton updateButton;
 	private JPanel mainPanel;
 	private JPanel centerPanel;
@@ -67,6 +88,11 @@ public class StarMadeLauncher extends JFrame {
 	private JPanel playPanel;
 	private JPanel serverPanel;
 	private JPanel playPanelButtons;
+	/**
+	 * The server started from the launcher window, and its resource monitor. Null while no server runs.
+	 */
+	private volatile Process serverProcess;
+	private ResourceMonitor serverMonitor;
 	private JScrollPane centerScrollPane;
 	private LauncherNewsPanel newsPanel;
 	private LauncherCommunityPanel communityPanel;
@@ -151,12 +177,35 @@ public class StarMadeLauncher extends JFrame {
 
 		System.setProperty("sun.java2d.uiScale.enabled", "true");
 
-		if(args == null || args.length == 0) startup();
-		else {
+		if(args == null || args.length == 0) {
+			LaunchSettings.readSettings();
+			startMetrics(LaunchSettings.getMetricsPort());
+			configureDownloadThrottle(List.of());
+			startup();
+		} else {
 			GameBranch buildBranch = GameBranch.RELEASE;
 			List<String> argList = new ArrayList<>(Arrays.asList(args));
 			if(argList.contains("-debug_mode")) debugMode = true;
 			if(argList.contains("-no_update")) autoUpdate = false;
+			if(argList.contains("-list_backups")) {
+				LaunchSettings.readSettings();
+				listBackupsHeadless(argList);
+				return;
+			} else if(argList.contains("-restore:")) {
+				LaunchSettings.readSettings();
+				restoreBackupHeadless(argList);
+				return;
+			} else if(argList.contains("-verify_backup:")) {
+				LaunchSettings.readSettings();
+				verifyBackupHeadless(argList);
+				return;
+			} else if(argList.contains("-benchmark_backup")) {
+				benchmarkBackupHeadless(argList);
+				return;
+			} else if(argList.contains("-import_java:")) {
+				importJavaHeadless(argList);
+				return;
+			}
 			if(argList.contains("-version")) {
 				selectVersion = true;
 				if(argList.contains("-dev")) buildBranch = GameBranch.DEV;
@@ -174,6 +223,10 @@ public class StarMadeLauncher extends JFrame {
 				return;
 			} else if(argList.contains("-headless")) {
 				headless = true;
+			} else if(argList.contains("-instances")) {
+				headless = true;
+				serverMode = true;
+				instancesMode = true;
 			} else if(argList.contains("-server")) {
 				boolean hasPort = false;
 				if(argList.contains("-port:")) {
@@ -192,26 +245,72 @@ public class StarMadeLauncher extends JFrame {
 				serverMode = true;
 			}
 			LaunchSettings.readSettings();
+			int metricsPort = LaunchSettings.getMetricsPort();
+			if(argList.contains("-metrics:")) {
+				try {
+					metricsPort = Integer.parseInt(argList.get(argList.indexOf("-metrics:") + 1).trim());
+				} catch(NumberFormatException | IndexOutOfBoundsException exception) {
+					System.out.println("Invalid metrics port, expected -metrics: <port>");
+				}
+			}
+			startMetrics(metricsPort);
+			configureDownloadThrottle(argList);
+			warmStandby = LaunchSettings.isServerWarmStandbyEnabled() || argList.contains("-warm_standby");
+			restartInterval = LaunchSettings.getServerRestartInterval();
+			if(argList.contains("-restart_every:")) {
+				try {
+					restartInterval = Integer.parseInt(argList.get(argList.indexOf("-restart_every:") + 1).trim());
+				} catch(NumberFormatException | IndexOutOfBoundsException exception) {
+					System.out.println("Invalid restart interval, expected -restart_every: <minutes>");
+				}
+			}
+			List<ServerInstance> instances = List.of();
+			if(instancesMode) {
+				try {
+					instances = ServerInstance.readAll();
+				} catch(IOException exception) {
+					System.out.println(exception.getMessage());
+					return;
+				}
+				if(instances.isEmpty()) {
+					System.out.println("No server instances found, add a JSON profile per server to " + ServerInstance.FOLDER.getAbsolutePath());
+					return;
+				}
+				try {
+					// Instances on the same build download each file once
+					DownloadCache.enable(new File(OperatingSystem.getAppDir(), "download-cache"), true);
+				} catch(IOException exception) {
+					LogManager.logWarning("Failed to enable the shared download cache", exception);
+				}
+			}
 			if(autoUpdate) {
-				if(headless) GameUpdater.withoutGUI(true, LaunchSettings.getInstallDir(), buildBranch, backupMode, selectVersion);
+				if(instancesMode) {
+					// One at a time, so instances on the same build share the cached downloads and the EULA is asked once
+					for(ServerInstance instance : instances) {
+						System.out.println("Updating server " + instance.name() + " in " + instance.installDir().getAbsolutePath());
+						if(!GameUpdater.withoutGUI(true, instance.installDir().getAbsolutePath(), buildBranch, backupMode, false)) {
+							System.out.println("Failed to update server " + instance.name() + ", no servers were started. Use -no_update to start them without updating");
+							return;
+						}
+					}
+				} else if(headless) {
+					boolean updated = GameUpdater.withoutGUI(true, LaunchSettings.getInstallDir(), buildBranch, backupMode, selectVersion);
+					// A failed update can leave a mix of old and new files, the supervisor would keep restarting it
+					if(!updated && serverMode) {
+						System.out.println("Failed to update the game, the server was not started. Use -no_update to start it without updating");
+						return;
+					}
+				}
 			}
 
 			if(headless) {
 				System.out.println("Running in headless mode");
-				gameVersion = new VersionRegistry().getLatestVersion(buildBranch);
-				if(gameVersion == null) {
-					System.err.println("Could not get latest game version, defaulting to Java 8");
-					//Get last used version from config
-					try {
-						gameVersion = new VersionRegistry().getLatestVersion(GameBranch.values()[LaunchSettings.getLastUsedBranch()]);
-					} catch(Exception exception) {
-						LogManager.logException("Failed to get last used game version", exception);
-						gameVersion = new VersionRegistry().getLatestVersion(GameBranch.RELEASE);
-					}
-					setGameVersion(gameVersion);
-				}
+				// The installed build is what runs, so it picks the Java version, also when it was not updated
+				gameVersion = getInstalledVersionEntry(new File(LaunchSettings.getInstallDir()), buildBranch);
+				System.out.println("Using game version " + gameVersion.version() + " from " + LaunchSettings.getInstallDir());
 				setGameVersion(gameVersion);
-				if(serverMode) startServerHeadless();
+				if(instancesMode) startInstancesHeadless(instances);
+				else if(serverMode) startServerHeadless();
 				else startGameHeadless();
 			} else startup();
 		}
@@ -225,30 +324,190 @@ public class StarMadeLauncher extends JFrame {
 		ArrayList<String> commandComponents = getCommandComponents(false);
 		ProcessBuilder process = new ProcessBuilder(commandComponents);
 		process.directory(new File(LaunchSettings.getInstallDir()));
-		process.redirectOutput(ProcessBuilder.Redirect.INHERIT);
-		process.redirectError(ProcessBuilder.Redirect.INHERIT);
+		process.redirectErrorStream(true);
+		RotatingLogFile logFile = createGameLog("game");
 		try {
-			process.start();
+			Process game = process.start();
+			ResourceMonitor.start(game, "game", JvmTuner.getMaxHeapMegabytes(commandComponents));
+			LogPump pump = LogPump.attach(game, logFile, null, true, "Game");
+			game.waitFor();
+			pump.await(5000);
+		} catch(InterruptedException exception) {
+			Thread.currentThread().interrupt();
 		} catch(Exception exception) {
 			LogManager.logFatal("Failed to start game in headless mode", exception);
+		} finally {
+			try {
+				logFile.close();
+			} catch(IOException exception) {
+				LogManager.logWarning("Failed to close game log", exception);
+			}
 		}
 	}
 
+	/**
+	 * Starts the metrics server if a port is set, and writes the metrics to the logs folder on exit if enabled.
+	 */
+	private static void startMetrics(int port) {
+		if(port > 0) MetricsServer.start(port);
+		if(LaunchSettings.isMetricsDumpEnabled()) Metrics.dumpOnExit(new File(LaunchSettings.getInstallDir(), "logs/metrics.json"));
+	}
+
+	/**
+	 * Applies the download bandwidth limit of the launch settings, or the one given with -bandwidth: and
+	 * -bandwidth_always. Only called from main, so the launcher window keeps the limit given on the command line.
+	 */
+	private static void configureDownloadThrottle(List<String> argList) {
+		int bandwidth = LaunchSettings.getDownloadBandwidth();
+		if(argList.contains("-bandwidth:")) {
+			try {
+				bandwidth = Integer.parseInt(argList.get(argList.indexOf("-bandwidth:") + 1).trim());
+			} catch(NumberFormatException | IndexOutOfBoundsException exception) {
+				System.out.println("Invalid bandwidth, expected -bandwidth: <KB/s>");
+			}
+		}
+		DownloadThrottle.configure(bandwidth, LaunchSettings.isDownloadBandwidthWhilePlayingOnly() && !argList.contains("-bandwidth_always"));
+	}
+
+	/**
+	 * Creates a rotating log for game output in the logs folder, next to the launcher logs.
+	 */
+	public static RotatingLogFile createGameLog(String name) {
+		return new RotatingLogFile(new File(LaunchSettings.getInstallDir(), "logs"), name, LaunchSettings.getGameLogMaxSize() * 1024L * 1024L, LaunchSettings.getGameLogFiles(), LaunchSettings.isGameLogCompressed());
+	}
+
 	private static void startServerHeadless() {
-		/*ArrayList<String> commandComponents = getCommandComponents(true);
-		ProcessBuilder process = new ProcessBuilder(commandComponents);
-		process.directory(new File(LaunchSettings.getInstallDir()));
-		process.redirectOutput(ProcessBuilder.Redirect.INHERIT);
-		process.redirectError(ProcessBuilder.Redirect.INHERIT);
+		// The command is rebuilt before every restart, so changes to the settings apply on the next start
+		ServerSupervisor supervisor = new ServerSupervisor(() -> getCommandComponents(true), new File(LaunchSettings.getInstallDir()), port);
+		supervisor.setLogFile(createGameLog("server"));
+		// The standby runs a class of the launcher, which Java 8 cannot load
+		supervisor.setWarmStandby(warmStandby && !usingOldVersion());
+		if(warmStandby && usingOldVersion()) System.out.println("Warm standby needs Java 25, it is not used for version " + gameVersion.version());
+		supervisor.setRestartInterval(TimeUnit.MINUTES.toMillis(restartInterval));
+		UpdatePrefetcher.start(LaunchSettings.getInstallDir(), gameVersion.branch());
+		supervisor.run();
+		System.out.println("Server supervisor stopped after " + supervisor.getRestartCount() + " restarts");
+		for(ServerSupervisor.ExitRecord record : supervisor.getExitHistory()) {
+			System.out.println("  exit code " + record.exitCode() + " after " + (record.endTime() - record.startTime()) / 1000 + "s: " + record.reason());
+		}
+	}
+
+	private static void startInstancesHeadless(List<ServerInstance> instances) {
+		// Every instance runs the build in its own folder, which may need a different Java version than the others
+		InstanceManager manager = new InstanceManager(instances, installDir -> !isOldVersion(getInstalledVersion(installDir)), (installDir, port, tuning, userArguments) -> getCommandComponents(true, installDir, getInstalledVersion(installDir), port, tuning, userArguments));
+		manager.run();
+		for(ServerSupervisor supervisor : manager.getSupervisors()) {
+			System.out.println("Server on port " + supervisor.getPort() + " stopped after " + supervisor.getRestartCount() + " restarts");
+		}
+	}
+
+	private static void importJavaHeadless(List<String> argList) {
+		int index = argList.indexOf("-import_java:");
+		if(index + 1 >= argList.size()) {
+			displayHelp();
+			System.out.println("Please specify the Java archive to import");
+			return;
+		}
+		String checksum = index + 2 < argList.size() && !argList.get(index + 2).startsWith("-") ? argList.get(index + 2).trim() : null;
 		try {
-			System.out.println("Command: " + String.join(" ", commandComponents));
-			process.start();
-		} catch(Exception exception) {
-			LogManager.logFatal("Failed to start server in headless mode", exception);
-		}*/
+			JreManager.Runtime runtime = JreManager.importArchive(new File(argList.get(index + 1)), checksum);
+			System.out.println("Java " + runtime.getMajorVersion() + " is available at " + runtime.getJavaExecutable().getAbsolutePath());
+		} catch(IOException exception) {
+			LogManager.logException("Failed to import Java from " + argList.get(index + 1), exception);
+		}
+	}
+
+	private static void listBackupsHeadless(List<String> argList) {
+		List<File> backups = StarMadeRestoreTool.listBackups(LaunchSettings.getInstallDir());
+		int index = argList.indexOf("-list_backups");
+		if(index + 1 < argList.size() && !argList.get(index + 1).startsWith("-")) {
+			File backup = findBackup(backups, argList.get(index + 1));
+			if(backup == null) return;
+			try {
+				for(StarMadeRestoreTool.Entry entry : StarMadeRestoreTool.listContents(backup)) System.out.println(entry.path() + " (" + entry.size() + " bytes)");
+			} catch(IOException exception) {
+				LogManager.logException("Failed to read backup " + backup.getName(), exception);
+			}
+			return;
+		}
+		if(backups.isEmpty()) System.out.println("No backups found in " + LaunchSettings.getInstallDir());
+		for(int i = 0; i < backups.size(); i++) System.out.println("[" + i + "] " + backups.get(i).getName() + " (" + backups.get(i).length() / (1024 * 1024) + " MB)");
+	}
+
+	private static void restoreBackupHeadless(List<String> argList) {
+		int index = argList.indexOf("-restore:");
+		if(index + 1 >= argList.size()) {
+			displayHelp();
+			System.out.println("Please specify the backup to restore");
+			return;
+		}
+		File backup = findBackup(StarMadeRestoreTool.listBackups(LaunchSettings.getInstallDir()), argList.get(index + 1));
+		if(backup == null) return;
+		List<String> paths = new ArrayList<>();
+		for(int i = index + 2; i < argList.size() && !argList.get(i).startsWith("-"); i++) paths.add(argList.get(i));
+		System.out.println("Restoring " + (paths.isEmpty() ? "everything" : String.join(", ", paths)) + " from " + backup.getName());
+		ProgressBus events = new ProgressBus();
+		ConsoleProgressRenderer.attach(events);
+		int[] checked = {0};
+		try {
+			StarMadeRestoreTool.Result result = StarMadeRestoreTool.restore(backup, LaunchSettings.getInstallDir(), paths.isEmpty() ? null : paths, f -> events.publish(new ProgressEvent.Extract(++checked[0], 0, f.getName())));
+			events.publish(new ProgressEvent.Finished(ProgressEvent.Stage.EXTRACT, true, result.toString()));
+			for(BackupManifest.Skipped skipped : result.incomplete()) System.out.println("Not restored, incomplete in the backup: " + skipped.path() + " (" + skipped.reason() + ")");
+		} catch(IOException exception) {
+			events.publish(new ProgressEvent.Finished(ProgressEvent.Stage.EXTRACT, false, String.valueOf(exception.getMessage())));
+			LogManager.logException("Failed to restore backup " + backup.getName(), exception);
+		}
+	}
+
+	private static void verifyBackupHeadless(List<String> argList) {
+		int index = argList.indexOf("-verify_backup:");
+		if(index + 1 >= argList.size()) {
+			displayHelp();
+			System.out.println("Please specify the backup to verify");
+			return;
+		}
+		File backup = findBackup(StarMadeRestoreTool.listBackups(LaunchSettings.getInstallDir()), argList.get(index + 1));
+		if(backup == null) return;
+		System.out.println("Verifying " + backup.getName());
+		try {
+			BackupVerifier.Result result = BackupVerifier.verify(backup, null);
+			for(String path : result.corrupt()) System.out.println("Corrupt: " + path);
+			for(String path : result.missing()) System.out.println("Missing: " + path);
+			for(String path : result.unexpected()) System.out.println("Not in manifest: " + path);
+			for(BackupManifest.Skipped skipped : result.skipped()) System.out.println("Skipped during backup: " + skipped.path() + " (" + skipped.reason() + ")");
+			System.out.println("Verify finished: " + result);
+		} catch(IOException exception) {
+			LogManager.logException("Failed to verify backup " + backup.getName(), exception);
+		}
+	}
+
+	private static void benchmarkBackupHeadless(List<String> argList) {
+		int index = argList.indexOf("-benchmark_backup");
+		String arg = index + 1 < argList.size() ? argList.get(index + 1) : "";
+		try {
+			if(new File(arg).isDirectory()) BackupBenchmark.run(new File(arg), 0, System.out);
+			else BackupBenchmark.run(null, arg.matches("\\d+") ? Integer.parseInt(arg) : 256, System.out);
+		} catch(IOException exception) {
+			LogManager.logException("Backup benchmark failed", exception);
+		}
+	}
+
+	private static File findBackup(List<File> backups, String name) {
+		try {
+			int index = Integer.parseInt(name);
+			if(index >= 0 && index < backups.size()) return backups.get(index);
+		} catch(NumberFormatException ignored) {
+		}
+		File backup = new File(name);
+		if(!backup.exists()) backup = new File(LaunchSettings.getInstallDir(), name);
+		if(backup.exists()) return backup;
+		System.out.println("Backup not found: " + name + " (use -list_backups to see available backups)");
+		return null;
 	}
 
 	private static void startup() {
+		// Decodes the sprites while the look and feel is set up
+		ImageCache.preload();
 		EventQueue.invokeLater(() -> {
 			try {
 				FlatDarkLaf.setup();
@@ -261,39 +520,22 @@ public class StarMadeLauncher extends JFrame {
 
 	private static void startLauncherFrame() {
 		JFrame frame = new StarMadeLauncher();
-		(new Thread(() -> {
-			//For steam: keep it repainting so the damn overlays go away
-			try {
-				Thread.sleep(1200);
-			} catch(InterruptedException e) {
-				LogManager.logWarning("Failed to sleep thread", e);
-			}
-			while(frame.isVisible()) {
-				try {
-					Thread.sleep(500);
-				} catch(InterruptedException exception) {
-					LogManager.logException("Failed to sleep thread", exception);
-				}
-				EventQueue.invokeLater(frame::repaint);
-			}
-		})).start();
+		// Swing repaints on every change by itself, only the Steam overlay needs a periodic refresh
+		OverlayRepainter.install(frame);
 	}
 
+	/**
+	 * @return the cached icon, see {@link ImageCache}
+	 */
 	public static ImageIcon getIcon(String s) {
-		try {
-			return new ImageIcon(ImageIO.read(Objects.requireNonNull(StarMadeLauncher.class.getResource("/" + s))));
-		} catch(IOException exception) {
-			return new ImageIcon();
-		}
+		return ImageCache.getIcon(s);
 	}
 
+	/**
+	 * @return the cached icon scaled to the size, see {@link ImageCache}
+	 */
 	public static ImageIcon getIcon(String s, int width, int height) {
-		try {
-			return new ImageIcon(ImageIO.read(Objects.requireNonNull(StarMadeLauncher.class.getResource("/" + s))).getScaledInstance(width, height, Image.SCALE_SMOOTH));
-		} catch(IOException exception) {
-			LogManager.logException("Failed to get icon", exception);
-			return new ImageIcon();
-		}
+		return ImageCache.getIcon(s, width, height);
 	}
 
 	public static void displayHelp() {
@@ -305,6 +547,18 @@ public class StarMadeLauncher extends JFrame {
 		System.out.println("-pre : Use pre branch (default is release)");
 		System.out.println("-dev : Use dev branch (default is release)");
 		System.out.println("-server -port: <port> : Start in server mode");
+		System.out.println("-no_update : Start without checking for game updates");
+		System.out.println("-metrics: <port> : Serve launcher metrics for Prometheus on http://127.0.0.1:<port>/metrics");
+		System.out.println("-instances : Start every server profile in the instances folder, sharing this host between them");
+		System.out.println("-warm_standby : Keep a second server JVM ready so restarts only have to load the world");
+		System.out.println("-restart_every: <minutes> : Restart the server on a schedule");
+		System.out.println("-bandwidth: <KB/s> : Limit game downloads while a game or server runs on this host, 0 for no limit");
+		System.out.println("-bandwidth_always : Limit game downloads even when no game or server is running");
+		System.out.println("-list_backups [backup] : List backups, or the files in a backup");
+		System.out.println("-restore: <backup> [paths...] : Restore a backup, or only the given files and folders from it");
+		System.out.println("-verify_backup: <backup> : Check every file in a backup against its manifest");
+		System.out.println("-benchmark_backup [size MB | folder] : Compare backup formats on a synthetic server database or an existing folder");
+		System.out.println("-import_java: <archive> [sha256] : Add a Java runtime from a local .zip or .tar.gz to the shared runtime cache");
 	}
 
 	private static String getCurrentUser() {
@@ -341,7 +595,53 @@ public class StarMadeLauncher extends JFrame {
 	}
 
 	private static boolean usingOldVersion() {
-		return gameVersion.version().startsWith("0.2") || gameVersion.version().startsWith("0.1");
+		return isOldVersion(gameVersion.version());
+	}
+
+	private static boolean isOldVersion(String version) {
+		return version.startsWith("0.2") || version.startsWith("0.1");
+	}
+
+	/**
+	 * @return the game version in the install folder's version.txt, or the selected version if none is installed there
+	 */
+	private static String getInstalledVersion(File installDir) {
+		String[] installed = readVersionFile(installDir);
+		return installed != null ? installed[0] : gameVersion.version();
+	}
+
+	/**
+	 * Finds the version of the build in the install folder without asking the version registry, so the headless modes
+	 * also start offline. Without a version.txt the last used version is taken, and only if there is none either the
+	 * latest version of the branch.
+	 */
+	private static IndexFileEntry getInstalledVersionEntry(File installDir, GameBranch branch) {
+		String[] installed = readVersionFile(installDir);
+		if(installed != null) return new IndexFileEntry(installed[0], installed[1], branch, "Unknown");
+		String lastUsedVersion = LaunchSettings.getLastUsedVersion();
+		if(lastUsedVersion != null && !lastUsedVersion.isBlank() && !lastUsedVersion.equals("NONE")) {
+			return new IndexFileEntry(lastUsedVersion.split("#")[0].trim(), "", branch, "Unknown");
+		}
+		IndexFileEntry latest = new VersionRegistry().getLatestVersion(branch);
+		if(latest != null) return latest;
+		LogManager.logWarning("No installed game version found in " + installDir.getAbsolutePath() + " and no update info available, assuming a current build");
+		return new IndexFileEntry("", "", branch, "Unknown");
+	}
+
+	/**
+	 * @return the version and build in the install folder's version.txt, or null if there is none
+	 */
+	private static String[] readVersionFile(File installDir) {
+		File versionFile = new File(installDir, "version.txt");
+		if(versionFile.isFile()) {
+			try {
+				String[] versionAndBuild = TextFileUtil.readText(versionFile).trim().split("#", 2);
+				if(!versionAndBuild[0].isBlank()) return new String[]{versionAndBuild[0].trim(), versionAndBuild.length == 2 ? versionAndBuild[1].trim() : ""};
+			} catch(IOException exception) {
+				LogManager.logWarning("Failed to read " + versionFile.getAbsolutePath(), exception);
+			}
+		}
+		return null;
 	}
 
 	private static void clearPanel(JPanel panel) {
@@ -434,15 +734,15 @@ public class StarMadeLauncher extends JFrame {
 	}
 
 	private static String getJavaPath() {
-		if(gameVersion.version().startsWith("0.2") || gameVersion.version().startsWith("0.1")) {
-			return (new File(String.format(currentOS.javaPath, 8))).getAbsolutePath();
-		} else {
-			return (new File(String.format(currentOS.javaPath, 25))).getAbsolutePath();
-		}
+		return JreManager.getJavaExecutable(getJavaVersion()).getAbsolutePath();
 	}
 
 	private static JavaVersion getJavaVersion() {
-		if(gameVersion.version().startsWith("0.2") || gameVersion.version().startsWith("0.1")) {
+		return getJavaVersion(gameVersion.version());
+	}
+
+	private static JavaVersion getJavaVersion(String version) {
+		if(isOldVersion(version)) {
 			return JavaVersion.JAVA_8;
 		} else {
 			return JavaVersion.JAVA_25;
@@ -468,9 +768,31 @@ public class StarMadeLauncher extends JFrame {
 	}
 
 	public static ArrayList<String> getCommandComponents(boolean server) {
+		if(portField != null) port = Integer.parseInt(portField.getText());
+		File installDir = new File(LaunchSettings.getInstallDir());
+		JvmTuner.Tuning tuning;
+		if(LaunchSettings.isJvmTuningEnabled()) {
+			long database = server ? JvmTuner.getFolderSize(new File(installDir, "server-database")) : 0;
+			tuning = JvmTuner.tune(JvmTuner.readHost(), server, !usingOldVersion(), database);
+		} else tuning = JvmTuner.manual(LaunchSettings.getMemory());
+		return getCommandComponents(server, installDir, gameVersion.version(), port, tuning, JvmTuner.splitArguments(LaunchSettings.getLaunchArgs()));
+	}
+
+	/**
+	 * @param version       the game version installed in the folder, which picks the Java runtime and its arguments
+	 * @param userArguments the JVM arguments the user entered, which override the tuned ones
+	 */
+	public static ArrayList<String> getCommandComponents(boolean server, File installDir, String version, int port, JvmTuner.Tuning tuning, List<String> userArguments) {
 		ArrayList<String> commandComponents = new ArrayList<>();
-		commandComponents.add(getJavaPath());
-		if(!gameVersion.version().startsWith("0.2") && !gameVersion.version().startsWith("0.1")) {
+		boolean oldVersion = isOldVersion(version);
+		JavaVersion javaVersion = getJavaVersion(version);
+		String javaPath = JreManager.getJavaExecutable(javaVersion).getAbsolutePath();
+		if(LaunchSettings.isJlinkRuntimeEnabled() && !oldVersion) {
+			File trimmedJava = JlinkRuntime.getJavaExecutable(installDir, JreManager.find(javaVersion));
+			if(trimmedJava != null) javaPath = trimmedJava.getAbsolutePath();
+		}
+		commandComponents.add(javaPath);
+		if(!oldVersion) {
 			commandComponents.add(J25ARGS);
 		}
 
@@ -490,23 +812,20 @@ public class StarMadeLauncher extends JFrame {
 			commandComponents.add("-DGDK_BACKEND=x11");
 		}
 
+		// Memory, GC and user arguments, which the JVM only reads before "-jar"
+		List<String> tunedArguments = tuning.getArguments(userArguments);
+		LogManager.logInfo("JVM arguments for the " + (server ? "server in " + installDir.getName() : "game") + ": " + String.join(" ", tunedArguments) + (userArguments.isEmpty() ? "" : " " + String.join(" ", userArguments)) + " (" + tuning.reason() + ")");
+		commandComponents.addAll(tunedArguments);
+		if(LaunchSettings.isAotCacheEnabled() && !oldVersion) {
+			commandComponents.addAll(AotCache.getArguments(installDir, new File(javaPath), server));
+		}
+		commandComponents.addAll(userArguments);
+
 		commandComponents.add("-jar");
 		commandComponents.add("StarMade.jar");
 
-		// Memory Arguments
-		if(!LaunchSettings.getJvmArgs().isEmpty()) {
-			String[] launchArgs = LaunchSettings.getLaunchArgs().split(" ");
-			for(String arg : launchArgs) {
-				if(arg.startsWith("-Xms") || arg.startsWith("-Xmx")) continue;
-				commandComponents.add(arg.trim());
-			}
-		}
-		commandComponents.add("-Xms1024m");
-		commandComponents.add("-Xmx" + LaunchSettings.getMemory() + "m");
-
 		// Game arguments
 		commandComponents.add("-force");
-		if(portField != null) port = Integer.parseInt(portField.getText());
 		if(server) {
 			commandComponents.add("-server");
 			commandComponents.add("-port:" + port);
@@ -539,6 +858,19 @@ public class StarMadeLauncher extends JFrame {
 		downloadLabel.setHorizontalAlignment(SwingConstants.CENTER);
 		dialogPanel.add(downloadLabel, BorderLayout.CENTER);
 
+		JProgressBar progressBar = new JProgressBar();
+		progressBar.setDoubleBuffered(true);
+		progressBar.setStringPainted(true);
+		progressBar.setIndeterminate(true);
+		dialogPanel.add(progressBar, BorderLayout.SOUTH);
+		downloader.setProgressListener((downloaded, total) -> EventQueue.invokeLater(() -> {
+			if(total > 0) {
+				progressBar.setIndeterminate(false);
+				progressBar.setValue((int) (downloaded * 100 / total));
+				progressBar.setString(downloaded / (1024 * 1024) + " / " + total / (1024 * 1024) + " MB");
+			} else progressBar.setString(downloaded / (1024 * 1024) + " MB");
+		}));
+
 		downloader.downloadAndUnzip(dialog);
 	}
 
@@ -651,7 +983,7 @@ public class StarMadeLauncher extends JFrame {
 			dialog.setModal(true);
 			dialog.setResizable(false);
 			dialog.setTitle("Launch Settings");
-			dialog.setSize(500, 350);
+			dialog.setSize(500, 375);
 			dialog.setLocationRelativeTo(null);
 			dialog.setLayout(new BorderLayout());
 			dialog.setAlwaysOnTop(true);
@@ -705,6 +1037,29 @@ public class StarMadeLauncher extends JFrame {
 			slider.setSnapToTicks(true);
 			northPanel.add(slider, BorderLayout.CENTER);
 			slider.addChangeListener(e1 -> sliderLabel.setText("Memory: " + slider.getValue() + " MB"));
+			JCheckBox autoMemory = new JCheckBox("Pick memory and garbage collector automatically");
+			autoMemory.setDoubleBuffered(true);
+			autoMemory.setFont(new Font("Roboto", Font.PLAIN, 12));
+			autoMemory.setHorizontalAlignment(SwingConstants.CENTER);
+			autoMemory.setSelected(LaunchSettings.isJvmTuningEnabled());
+			slider.setEnabled(!autoMemory.isSelected());
+			autoMemory.addActionListener(e1 -> slider.setEnabled(!autoMemory.isSelected()));
+			JCheckBox aotCache = new JCheckBox("Cache game classes for faster startup");
+			aotCache.setDoubleBuffered(true);
+			aotCache.setFont(new Font("Roboto", Font.PLAIN, 12));
+			aotCache.setHorizontalAlignment(SwingConstants.CENTER);
+			aotCache.setSelected(LaunchSettings.isAotCacheEnabled());
+			JCheckBox jlinkRuntime = new JCheckBox("Run the game on a Java runtime trimmed to the modules it uses");
+			jlinkRuntime.setDoubleBuffered(true);
+			jlinkRuntime.setFont(new Font("Roboto", Font.PLAIN, 12));
+			jlinkRuntime.setHorizontalAlignment(SwingConstants.CENTER);
+			jlinkRuntime.setSelected(LaunchSettings.isJlinkRuntimeEnabled());
+			JPanel optionsPanel = new JPanel(new GridLayout(0, 1));
+			optionsPanel.setDoubleBuffered(true);
+			optionsPanel.add(autoMemory);
+			optionsPanel.add(aotCache);
+			optionsPanel.add(jlinkRuntime);
+			northPanel.add(optionsPanel, BorderLayout.SOUTH);
 			JPanel centerPanel = new JPanel();
 			centerPanel.setDoubleBuffered(true);
 			centerPanel.setOpaque(false);
@@ -743,7 +1098,11 @@ public class StarMadeLauncher extends JFrame {
 			buttonPanel.add(cancelButton);
 			saveButton.addActionListener(e1 -> {
 				LaunchSettings.setMemory(slider.getValue());
-				LaunchSettings.setJvmArgs(launchArgs.getText());
+				LaunchSettings.setJvmTuningEnabled(autoMemory.isSelected());
+				LaunchSettings.setAotCacheEnabled(aotCache.isSelected());
+				LaunchSettings.setJlinkRuntimeEnabled(jlinkRuntime.isSelected());
+				// The version selection overwrites "jvm_args", so the user's arguments are kept separately
+				LaunchSettings.setLaunchArgs(launchArgs.getText());
 				LaunchSettings.saveSettings();
 				dialog.dispose();
 			});
@@ -774,7 +1133,7 @@ public class StarMadeLauncher extends JFrame {
 			dialog[0].setModal(true);
 			dialog[0].setResizable(false);
 			dialog[0].setTitle("Installation Settings");
-			dialog[0].setSize(450, 150);
+			dialog[0].setSize(450, 210);
 			dialog[0].setLocationRelativeTo(null);
 			dialog[0].setLayout(new BorderLayout());
 			dialog[0].setAlwaysOnTop(true);
@@ -836,9 +1195,11 @@ public class StarMadeLauncher extends JFrame {
 			repairButton.addActionListener(e1 -> {
 				IndexFileEntry version = getLatestVersion(lastUsedBranch);
 				if(version != null) {
-					if(updaterThread == null || !updaterThread.updating) {
+					if(isServerRunning()) {
+						JOptionPane.showMessageDialog(dialog[0], "Please stop the server first!", "Error", JOptionPane.ERROR_MESSAGE);
+					} else if(updaterThread == null || !updaterThread.updating) {
 						dialog[0].dispose();
-						recreateButtons(playPanel, true);
+						recreateButtons(getShownPanel(), true);
 						updateGame(version);
 					}
 				} else JOptionPane.showMessageDialog(dialog[0], "The Launcher needs to be online to do this!", "Error", JOptionPane.ERROR_MESSAGE);
@@ -857,6 +1218,26 @@ public class StarMadeLauncher extends JFrame {
 				}
 			});
 
+			JButton restoreBackupButton = new JButton("Restore Backup");
+			restoreBackupButton.setDoubleBuffered(true);
+			restoreBackupButton.setOpaque(false);
+			restoreBackupButton.setFont(new Font("Roboto", Font.BOLD, 12));
+			dialogPanel.add(restoreBackupButton);
+			restoreBackupButton.addActionListener(e1 -> {
+				if(updaterThread != null && updaterThread.updating) {
+					JOptionPane.showMessageDialog(dialog[0], "Please wait for the update to finish first!", "Error", JOptionPane.ERROR_MESSAGE);
+					return;
+				}
+				(new RestoreBackupDialog(dialog[0], LaunchSettings.getInstallDir())).setVisible(true);
+			});
+
+			JCheckBox updatePrefetch = new JCheckBox("Download new builds in the background while playing");
+			updatePrefetch.setDoubleBuffered(true);
+			updatePrefetch.setOpaque(false);
+			updatePrefetch.setFont(new Font("Roboto", Font.PLAIN, 12));
+			updatePrefetch.setSelected(LaunchSettings.isUpdatePrefetchEnabled());
+			dialogPanel.add(updatePrefetch);
+
 			JPanel buttonPanel = new JPanel();
 			buttonPanel.setDoubleBuffered(true);
 			buttonPanel.setOpaque(false);
@@ -871,11 +1252,13 @@ public class StarMadeLauncher extends JFrame {
 			cancelButton.setDoubleBuffered(true);
 			buttonPanel.add(cancelButton);
 			saveButton.addActionListener(e1 -> {
+				LaunchSettings.setUpdatePrefetchEnabled(updatePrefetch.isSelected());
+				LaunchSettings.saveSettings();
 				String installDir = installLabelPath.getText();
 				if(installDir != null) {
 					LaunchSettings.setInstallDir(new File(installDir).getAbsolutePath());
 					LaunchSettings.saveSettings();
-					recreateButtons(playPanel, false);
+					recreateButtons(getShownPanel(), false);
 				}
 				dialog[0].dispose();
 			});
@@ -892,14 +1275,7 @@ public class StarMadeLauncher extends JFrame {
 		mainPanel.add(centerPanel, BorderLayout.CENTER);
 		JLabel background = new JLabel();
 		background.setDoubleBuffered(true);
-		try {
-			Image image = ImageIO.read(Objects.requireNonNull(StarMadeLauncher.class.getResource("/sprites/left_panel.png")));
-			//Resize the image to the left panel
-			image = image.getScaledInstance(800, 500, Image.SCALE_SMOOTH);
-			background.setIcon(new ImageIcon(image));
-		} catch(IOException exception) {
-			LogManager.logException("Failed to load background image", exception);
-		}
+		background.setIcon(getIcon("sprites/left_panel.png", 800, 500));
 		centerPanel.add(background, BorderLayout.CENTER);
 
 		switchToClientMode(); // make sure right components are visible
@@ -974,13 +1350,13 @@ public class StarMadeLauncher extends JFrame {
 				@Override
 				public void mouseEntered(MouseEvent e) {
 					if(updaterThread == null || !updaterThread.updating) updateButton.setIcon(getIcon("sprites/update_roll.png"));
-					else updateButton.setToolTipText(dlStatus.toString());
+					else updateButton.setToolTipText(updateStatus);
 				}
 
 				@Override
 				public void mouseExited(MouseEvent e) {
 					if(updaterThread == null || !updaterThread.updating) updateButton.setIcon(getIcon("sprites/update_btn.png"));
-					else updateButton.setToolTipText(dlStatus.toString());
+					else updateButton.setToolTipText(updateStatus);
 				}
 			});
 			playPanelButtonsSub.add(updateButton);
@@ -992,7 +1368,8 @@ public class StarMadeLauncher extends JFrame {
 			playButton.setBorderPainted(false);
 			playButton.addActionListener(e -> {
 				try {
-					dispose();
+					// A server started from the launcher keeps the window open to show its resource use
+					if(!serverMode) dispose();
 					LaunchSettings.setLastUsedVersion(gameVersion.version());
 					LaunchSettings.saveSettings();
 					runStarMade(serverMode);
@@ -1013,19 +1390,78 @@ public class StarMadeLauncher extends JFrame {
 			});
 			playPanelButtonsSub.add(playButton);
 		}
+		if(isServerRunning()) {
+			if(serverMode) {
+				// The server panel shows the running server's resource use instead of its buttons
+				playPanelButtonsSub.removeAll();
+				playPanelButtonsSub.add(new ResourceGraph(serverMonitor));
+			} else {
+				// Launching or updating would replace the files of the running server
+				for(Component button : playPanelButtonsSub.getComponents()) {
+					button.setEnabled(false);
+					if(button instanceof JComponent component) component.setToolTipText("The server started from the launcher is still running");
+				}
+			}
+		}
 		playPanel.revalidate();
 		playPanel.repaint();
 	}
 
+	private boolean isServerRunning() {
+		Process process = serverProcess;
+		return process != null && process.isAlive();
+	}
+
+	/**
+	 * @return the panel of the mode the launcher currently shows, the launch buttons belong there
+	 */
+	private JPanel getShownPanel() {
+		return serverMode ? serverPanel : playPanel;
+	}
+
 	private void runStarMade(boolean server) {
 		ArrayList<String> commandComponents = getCommandComponents(server);
 		ProcessBuilder process = new ProcessBuilder(commandComponents);
 		process.directory(new File(LaunchSettings.getInstallDir()));
-		process.redirectOutput(ProcessBuilder.Redirect.INHERIT);
-		process.redirectError(ProcessBuilder.Redirect.INHERIT);
+		process.redirectErrorStream(true);
 		try {
-			process.start();
-			System.exit(0);
+			Process game = process.start();
+			UpdatePrefetcher.start(LaunchSettings.getInstallDir(), gameVersion.branch());
+			ResourceMonitor monitor = ResourceMonitor.start(game, server ? "server" : "game", JvmTuner.getMaxHeapMegabytes(commandComponents));
+			RotatingLogFile logFile = createGameLog(server ? "server" : "game");
+			LogPump pump = LogPump.attach(game, logFile, null, true, server ? "Server" : "Game");
+			Thread stopServer = new Thread(game::destroy, "Server-Shutdown");
+			if(server) {
+				// Closing the launcher stops the server it started, instead of leaving it without anyone reading its output
+				Runtime.getRuntime().addShutdownHook(stopServer);
+				serverProcess = game;
+				serverMonitor = monitor;
+				EventQueue.invokeLater(() -> recreateButtons(getShownPanel(), false));
+			} else {
+				// The launcher keeps running without a window to pump the game's output, and exits with the game
+				dispose();
+			}
+			new Thread(() -> {
+				try {
+					game.waitFor();
+					pump.await(5000);
+					logFile.close();
+				} catch(Exception exception) {
+					LogManager.logWarning("Failed to close game log", exception);
+				}
+				if(server) {
+					try {
+						Runtime.getRuntime().removeShutdownHook(stopServer);
+					} catch(IllegalStateException ignored) {
+						// Already shutting down
+					}
+					EventQueue.invokeLater(() -> {
+						serverProcess = null;
+						serverMonitor = null;
+						recreateButtons(getShownPanel(), false);
+					});
+				} else System.exit(0);
+			}, "Game-Waiter").start();
 		} catch(Exception exception) {
 			LogManager.logFatal("Failed to start StarMade", exception);
 		}
@@ -1130,7 +1566,7 @@ public class StarMadeLauncher extends JFrame {
 		LaunchSettings.saveSettings();
 		versionDropdown.removeAllItems();
 		updateVersionDropdown(versionDropdown, branchDropdown, versionRegistry);
-		recreateButtons(playPanel, false);
+		recreateButtons(getShownPanel(), false);
 	}
 
 	private void onSelectVersion(JComboBox<String> versionDropdown) {
@@ -1138,7 +1574,7 @@ public class StarMadeLauncher extends JFrame {
 		selectedVersion = versionDropdown.getItemAt(versionDropdown.getSelectedIndex()).split(" ")[0];
 		LaunchSettings.setLastUsedVersion(selectedVersion);
 		LaunchSettings.saveSettings();
-		if(playPanel != null) recreateButtons(playPanel, false);
+		if(getShownPanel() != null) recreateButtons(getShownPanel(), false);
 	}
 
 	private void updateGame(IndexFileEntry version) {
@@ -1151,52 +1587,53 @@ public class StarMadeLauncher extends JFrame {
 		ImageIcon updateButtonEmpty = getIcon("sprites/update_load_empty.png");
 		ImageIcon updateButtonFilled = getIcon("sprites/update_load_full.png");
 		updateButton.setIcon(updateButtonEmpty);
+		updateStatus = "Updating...";
 		//Start update process and update progress bar
-		(updaterThread = new UpdaterThread(version, backupMode, new File(LaunchSettings.getInstallDir())) {
-			@Override
-			public void onProgress(float progress, String file, long mbDownloaded, long mbTotal, long mbSpeed) {
-				dlStatus.setInstallProgress(progress);
-				dlStatus.setDownloadedMb(mbDownloaded);
-				dlStatus.setTotalMb(mbTotal);
-				dlStatus.setSpeedMb(mbSpeed);
-				if(file != null && !"null".equals(file)) dlStatus.setFilename(file);
+		updaterThread = new UpdaterThread(version, backupMode, new File(LaunchSettings.getInstallDir()));
+		updaterThread.getEvents().subscribe(CoalescingListener.onEventQueue(event -> onUpdateEvent(event, updateButtonEmpty, updateButtonFilled), UPDATE_EVENTS_PER_SECOND));
+		updaterThread.start();
+	}
+
+	private void onUpdateEvent(ProgressEvent event, ImageIcon updateButtonEmpty, ImageIcon updateButtonFilled) {
+		switch(event) {
+			case DownloadProgress progress -> {
+				updateStatus = progress.toString();
 				int width = updateButtonEmpty.getIconWidth();
 				int height = updateButtonEmpty.getIconHeight();
 				BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
 				Graphics2D g = image.createGraphics();
 				g.drawImage(updateButtonEmpty.getImage(), 0, 0, null);
-				int filledWidth = (int) (width * progress);
+				int filledWidth = (int) (width * progress.getProgress());
 				g.drawImage(updateButtonFilled.getImage(), 0, 0, filledWidth, updateButtonFilled.getIconHeight(), 0, 0, filledWidth, updateButtonFilled.getIconHeight(), null);
 				g.dispose();
 				updateButton.setIcon(new ImageIcon(image));
-				updateButton.setToolTipText(dlStatus.toString());
+				updateButton.setToolTipText(updateStatus);
 				updateButton.repaint();
 			}
-
-			@Override
-			public void onFinished() {
+			case ProgressEvent.Backup backup -> {
+				updateStatus = "Backing up... [" + (int) (backup.getProgress() * 100) + "%]\n" + backup.file();
+				updateButton.setToolTipText(updateStatus);
+			}
+			case ProgressEvent.Status status -> {
+				updateStatus = status.message();
+				updateButton.setToolTipText(updateStatus);
+			}
+			case ProgressEvent.Finished finished when finished.stage() == ProgressEvent.Stage.UPDATE -> {
+				if(!finished.success()) {
+					updateButton.setIcon(getIcon("sprites/update_btn.png"));
+					return;
+				}
 				gameVersion = getLastUsedVersion();
 				assert gameVersion != null;
 				LaunchSettings.setLastUsedVersion(gameVersion.version());
 				selectedVersion = gameVersion.version();
 				setBranch(gameVersion.branch());
 				LaunchSettings.saveSettings();
-				SwingUtilities.invokeLater(() -> {
-					try {
-						sleep(1);
-						recreateButtons(playPanel, false);
-					} catch(InterruptedException e) {
-						throw new RuntimeException(e);
-					}
-				});
+				recreateButtons(getShownPanel(), false);
 			}
-
-			@Override
-			public void onError(Exception exception) {
-				LogManager.logException("Failed to update game", exception);
-				updateButton.setIcon(getIcon("sprites/update_btn.png"));
+			default -> {
 			}
-		}).start();
+		}
 	}
 
 	public void createScroller(JPanel currentPanel) {
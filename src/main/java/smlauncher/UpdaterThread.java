@@ -1,5 +1,7 @@
 package smlauncher;
 
+import smlauncher.event.ProgressBus;
+import smlauncher.event.ProgressEvent;
 import smlauncher.starmade.*;
 
 import java.io.File;
@@ -8,6 +10,7 @@ import java.security.NoSuchAlgorithmException;
 
 /**
  * Thread for updating the game.
+ * <p>The backup and download progress and the result are published on {@link #getEvents()}.</p>
  *
  * @author TheDerpGamer (TheDerpGamer#0027)
  */
@@ -20,7 +23,8 @@ public class UpdaterThread extends Thread {
 	private final IndexFileEntry version;
 	private final int backupMode;
 	private final File installDir;
-	public boolean updating;
+	private final ProgressBus events = new ProgressBus();
+	public volatile boolean updating;
 
 	public UpdaterThread(IndexFileEntry version, int backupMode, File installDir) {
 		this.version = version;
@@ -28,6 +32,10 @@ public class UpdaterThread extends Thread {
 		this.installDir = installDir;
 	}
 
+	public ProgressBus getEvents() {
+		return events;
+	}
+
 	@Override
 	public void run() {
 		try {
@@ -36,7 +44,14 @@ public class UpdaterThread extends Thread {
 			// Back up the database
 			boolean dbOnly = backupMode == BACKUP_MODE_DATABASE;
 			if(backupMode != BACKUP_MODE_NONE && installDir.exists()) {
-				(new StarMadeBackupTool()).backUp(installDir.getPath(), "server-database", String.valueOf(System.currentTimeMillis()), ".zip", false, dbOnly, null);
+				StarMadeBackupTool backupTool = new StarMadeBackupTool(events);
+				backupTool.setFormat(LaunchSettings.getBackupFormat(), LaunchSettings.getBackupLevel(dbOnly));
+				BackupResult backupResult = backupTool.backUp(installDir.getPath(), "server-database", String.valueOf(System.currentTimeMillis()), ".zip", false, dbOnly, null);
+				if(backupResult != null && !backupResult.isComplete()) {
+					StringBuilder skipped = new StringBuilder();
+					for(BackupManifest.Skipped file : backupResult.skipped()) skipped.append("\n\t").append(file.path()).append(": ").append(file.reason());
+					LogManager.logWarning("Backup " + backupResult.archive().getName() + " is incomplete, " + backupResult.skipped().size() + " files could not be backed up:" + skipped);
+				}
 			}
 
 			// Get checksums
@@ -44,57 +59,15 @@ public class UpdaterThread extends Thread {
 			ChecksumFile checksums = GameUpdater.getChecksums(buildDir);
 
 			if(!installDir.exists()) installDir.mkdirs();
-			float finalSize = checksums.checksums.size();
-			if(finalSize == 0) {
-				onFinished();
-				return;
-			}
-			checksums.download(false, buildDir, installDir, installDir.getPath(), new FileDowloadCallback() {
-				@Override
-				public void update(FileDownloadUpdate u) {
-					if(u.total == 0) {
-						onFinished();
-						return;
-					}
-					float progress = (float) u.currentSize / u.totalSize;
-					if(progress < 0) progress = (float) u.total / u.index; //Somehow its negative sometimes
-					onProgress(progress, u.fileName, u.downloaded, u.totalSize, (long) u.downloadSpeed);
-//					System.out.println(u.index + " " + u.total + " " + u.currentSize + " " + u.totalSize);
-					if(u.index >= u.total - 1 && u.currentSize >= u.totalSize) {
-						updating = false;
-//						onFinished();
-					}
-				}
-
-				@Override
-				public void update(String u) {
-					if(u.contains("Nothing to download")) onFinished();
-				}
-
-				@Override
-				public void done(FileDownloadUpdate u) {
-					if(u.index == 0 || u.total == 0) return;//idk
-					if(u.index >= u.total - 1) {
-						updating = false;
-						onFinished();
-					}
-				}
-			});
-			//onFinished();
+			checksums.download(false, buildDir, installDir, installDir.getPath(), events);
+			events.publish(new ProgressEvent.Finished(ProgressEvent.Stage.UPDATE, true, "Updated to v" + version.version() + " (build " + version.build() + ")"));
 		} catch(IOException exception) {
-			System.out.println("Could not download file checksums");
-			onError(exception);
+			LogManager.logException("Failed to update game", exception);
+			events.publish(new ProgressEvent.Finished(ProgressEvent.Stage.UPDATE, false, String.valueOf(exception.getMessage())));
 		} catch(NoSuchAlgorithmException exception) {
 			throw new RuntimeException(exception);
+		} finally {
+			updating = false;
 		}
 	}
-
-	public void onProgress(float progress, String currentFile, long downloaded, long total, long speed) {
-	}
-
-	public void onFinished() {
-	}
-
-	public void onError(Exception exception) {
-	}
 }
@@ -0,0 +1,76 @@
+package smlauncher.event;
+
+import javax.swing.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Passes events to a listener at most a given number of times per second.
+ * <p>Progress events only replace a pending one, the latest is delivered when the interval since the last delivery
+ * has passed. Status and finished events are delivered right away, after the pending progress, so the listener sees
+ * them in the order they were published. Publishing never blocks or locks, delivery runs on the given executor.</p>
+ */
+public class CoalescingListener implements ProgressBus.Listener {
+
+	private static final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "Progress-Coalescer");
+		thread.setDaemon(true);
+		return thread;
+	});
+	private final ProgressBus.Listener delegate;
+	private final Executor executor;
+	private final long intervalNanos;
+	private final AtomicReference<ProgressEvent> pending = new AtomicReference<>();
+	private final AtomicBoolean scheduled = new AtomicBoolean();
+	private volatile long lastDelivery;
+
+	/**
+	 * @param maxPerSecond how often progress may be delivered
+	 * @param executor     runs the delivery, for example on the event dispatch thread
+	 */
+	public CoalescingListener(ProgressBus.Listener delegate, int maxPerSecond, Executor executor) {
+		this.delegate = delegate;
+		this.executor = executor;
+		intervalNanos = TimeUnit.SECONDS.toNanos(1) / Math.max(1, maxPerSecond);
+		lastDelivery = System.nanoTime() - intervalNanos;
+	}
+
+	/**
+	 * @return a listener that updates Swing components at most the given number of times per second
+	 */
+	public static CoalescingListener onEventQueue(ProgressBus.Listener delegate, int maxPerSecond) {
+		return new CoalescingListener(delegate, maxPerSecond, SwingUtilities::invokeLater);
+	}
+
+	@Override
+	public void onEvent(ProgressEvent event) {
+		if(!event.isCoalescable()) {
+			ProgressEvent progress = pending.getAndSet(null);
+			executor.execute(() -> {
+				if(progress != null) delegate.onEvent(progress);
+				delegate.onEvent(event);
+			});
+			return;
+		}
+		ProgressEvent previous = pending.getAndSet(event);
+		// Progress of another operation is not replaced, the listener would miss its last state
+		if(previous != null && previous.getClass() != event.getClass()) executor.execute(() -> delegate.onEvent(previous));
+		if(scheduled.compareAndSet(false, true)) {
+			long delay = Math.max(0, lastDelivery + intervalNanos - System.nanoTime());
+			scheduler.schedule(() -> executor.execute(this::flush), delay, TimeUnit.NANOSECONDS);
+		}
+	}
+
+	private void flush() {
+		// Cleared before taking the event, a progress published in between schedules the next delivery
+		scheduled.set(false);
+		ProgressEvent event = pending.getAndSet(null);
+		if(event == null) return;
+		lastDelivery = System.nanoTime();
+		delegate.onEvent(event);
+	}
+}
@@ -0,0 +1,61 @@
+package smlauncher.event;
+
+import java.io.PrintStream;
+
+/**
+ * Prints progress events as short lines, for headless mode.
+ * <p>On a terminal progress overwrites its line, in log files every delivered progress gets its own line, so the
+ * renderer should be attached through a {@link CoalescingListener} with a low rate, see {@link #attach(ProgressBus)}.
+ * </p>
+ */
+public class ConsoleProgressRenderer implements ProgressBus.Listener {
+
+	private static final int EVENTS_PER_SECOND = 1;
+	private final PrintStream out;
+	private final boolean terminal;
+	private boolean progressLine;
+
+	public ConsoleProgressRenderer(PrintStream out, boolean terminal) {
+		this.out = out;
+		this.terminal = terminal;
+	}
+
+	/**
+	 * Prints the events of a bus to the console, one progress line per second.
+	 */
+	public static void attach(ProgressBus bus) {
+		bus.subscribe(new CoalescingListener(new ConsoleProgressRenderer(System.out, System.console() != null), EVENTS_PER_SECOND, Runnable::run));
+	}
+
+	@Override
+	public synchronized void onEvent(ProgressEvent event) {
+		switch(event) {
+			case ProgressEvent.Status(ProgressEvent.Stage stage, String message) -> printLine(stage, message);
+			case ProgressEvent.Finished(ProgressEvent.Stage stage, boolean success, String message) -> printLine(stage, (success ? "Finished: " : "Failed: ") + message);
+			case DownloadProgress progress -> printProgress(ProgressEvent.Stage.UPDATE, String.format("%3d%% %s / %s at %s/s %s",
+					(int) (progress.getProgress() * 100), DownloadProgress.formatBytes(progress.bytes()), DownloadProgress.formatBytes(progress.totalBytes()), DownloadProgress.formatBytes((long) progress.bytesPerSecond()), progress.fileName()));
+			case ProgressEvent.Backup backup -> printProgress(ProgressEvent.Stage.BACKUP, String.format("%3d%% %d / %d files %s",
+					(int) (backup.getProgress() * 100), backup.fileIndex(), backup.fileCount(), backup.file()));
+			case ProgressEvent.Extract extract -> printProgress(ProgressEvent.Stage.EXTRACT, extract.fileCount() > 0
+					? String.format("%3d%% %d / %d files %s", extract.fileIndex() * 100 / extract.fileCount(), extract.fileIndex(), extract.fileCount(), extract.file())
+					: extract.fileIndex() + " files " + extract.file());
+		}
+	}
+
+	private void printLine(ProgressEvent.Stage stage, String message) {
+		if(progressLine) out.println();
+		progressLine = false;
+		out.println("[" + stage + "] " + message);
+	}
+
+	private void printProgress(ProgressEvent.Stage stage, String message) {
+		if(!terminal) {
+			out.println("[" + stage + "] " + message);
+			return;
+		}
+		// Padded so a shorter line covers the previous one
+		out.print(String.format("\r%-100s", "[" + stage + "] " + message));
+		out.flush();
+		progressLine = true;
+	}
+}
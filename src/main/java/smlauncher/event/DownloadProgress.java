@@ -0,0 +1,43 @@
+package smlauncher.event;
+
+/**
+ * A snapshot of the download progress of a game update.
+ *
+ * @param fileName       the name of the file being downloaded
+ * @param fileBytes      the bytes of that file downloaded so far
+ * @param fileSize       the size of that file
+ * @param fileCount      the number of files the update downloads
+ * @param bytes          the bytes of all files downloaded so far
+ * @param totalBytes     the bytes the update downloads
+ * @param bytesPerSecond the current download rate
+ */
+public record DownloadProgress(String fileName, long fileBytes, long fileSize, int fileCount, long bytes, long totalBytes, double bytesPerSecond) implements ProgressEvent {
+
+	@Override
+	public boolean isCoalescable() {
+		return true;
+	}
+
+	/**
+	 * @return the downloaded part of the update, between 0 and 1
+	 */
+	public float getProgress() {
+		if(totalBytes <= 0) return 0;
+		return Math.clamp((float) bytes / totalBytes, 0.0f, 1.0f);
+	}
+
+	public static String formatBytes(long bytes) {
+		if(bytes < 1024) return bytes + " B";
+		else if(bytes < 1024 * 1024) return bytes / 1024 + " KB";
+		else if(bytes < 1024 * 1024 * 1024) return bytes / (1024 * 1024) + " MB";
+		else return bytes / (1024 * 1024 * 1024) + " GB";
+	}
+
+	@Override
+	public String toString() {
+		return String.format(
+				"Updating... [%d%%]\nDownloading %s [%s / %s] at %s/s",
+				(int) (getProgress() * 100), fileName, formatBytes(bytes), formatBytes(totalBytes), formatBytes((long) bytesPerSecond)
+		);
+	}
+}
@@ -0,0 +1,47 @@
+package smlauncher.event;
+
+import smlauncher.LogManager;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Delivers the progress of an update, backup or extraction to its listeners.
+ * <p>Publishing does not lock, listeners are called on the publishing thread, which is usually a download or archive
+ * thread. Listeners that update the UI or print progress should be wrapped in a {@link CoalescingListener}, so they
+ * are not called for every chunk of bytes.</p>
+ */
+public class ProgressBus {
+
+	private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+	public void subscribe(Listener listener) {
+		listeners.add(listener);
+	}
+
+	public void unsubscribe(Listener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * @return whether anyone listens, so publishers can skip building progress snapshots
+	 */
+	public boolean hasListeners() {
+		return !listeners.isEmpty();
+	}
+
+	public void publish(ProgressEvent event) {
+		for(Listener listener : listeners) {
+			try {
+				listener.onEvent(event);
+			} catch(RuntimeException exception) {
+				// A broken listener must not fail the update
+				LogManager.logWarning("Progress listener failed on " + event, exception);
+			}
+		}
+	}
+
+	public interface Listener {
+		void onEvent(ProgressEvent event);
+	}
+}
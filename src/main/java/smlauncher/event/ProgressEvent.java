@@ -0,0 +1,67 @@
+package smlauncher.event;
+
+/**
+ * An event published on a {@link ProgressBus} while the launcher updates, backs up or extracts the game.
+ * <p>Status and finished events are delivered one by one. Progress events can be published for every chunk of bytes,
+ * they are snapshots that replace each other and a {@link CoalescingListener} only delivers the latest one.</p>
+ */
+public sealed interface ProgressEvent permits ProgressEvent.Status, ProgressEvent.Finished, ProgressEvent.Backup, ProgressEvent.Extract, DownloadProgress {
+
+	/**
+	 * @return whether the event only replaces the previous event of the same type and may be dropped for a newer one
+	 */
+	default boolean isCoalescable() {
+		return false;
+	}
+
+	enum Stage {
+		UPDATE, BACKUP, EXTRACT
+	}
+
+	/**
+	 * @param stage   the operation the message belongs to
+	 * @param message a short message for the user
+	 */
+	record Status(Stage stage, String message) implements ProgressEvent {
+	}
+
+	/**
+	 * @param stage   the operation that finished
+	 * @param success whether it finished without errors
+	 * @param message the result or the error for the user
+	 */
+	record Finished(Stage stage, boolean success, String message) implements ProgressEvent {
+	}
+
+	/**
+	 * @param fileIndex  the number of files archived so far
+	 * @param fileCount  the number of files to archive
+	 * @param file       the name of the file being archived
+	 * @param bytes      the bytes archived so far
+	 * @param totalBytes the bytes to archive
+	 */
+	record Backup(int fileIndex, int fileCount, String file, long bytes, long totalBytes) implements ProgressEvent {
+
+		@Override
+		public boolean isCoalescable() {
+			return true;
+		}
+
+		public float getProgress() {
+			return totalBytes > 0 ? (float) bytes / totalBytes : fileCount > 0 ? (float) fileIndex / fileCount : 0;
+		}
+	}
+
+	/**
+	 * @param fileIndex the number of files extracted or checked so far
+	 * @param fileCount the number of files in the archive, or 0 if it is not known
+	 * @param file      the name of the file being extracted
+	 */
+	record Extract(int fileIndex, int fileCount, String file) implements ProgressEvent {
+
+		@Override
+		public boolean isCoalescable() {
+			return true;
+		}
+	}
+}
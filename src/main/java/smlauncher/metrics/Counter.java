@@ -0,0 +1,23 @@
+package smlauncher.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A value that only goes up, such as the number of bytes downloaded. Cheap to update from many threads at once.
+ */
+public class Counter {
+
+	private final LongAdder value = new LongAdder();
+
+	public void inc() {
+		value.increment();
+	}
+
+	public void add(long amount) {
+		value.add(amount);
+	}
+
+	public long get() {
+		return value.sum();
+	}
+}
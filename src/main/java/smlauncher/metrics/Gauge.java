@@ -0,0 +1,26 @@
+package smlauncher.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.DoubleSupplier;
+
+/**
+ * A value that can go up and down. It is either set directly or read from a supplier whenever the metrics are exported.
+ */
+public class Gauge {
+
+	private final AtomicLong bits = new AtomicLong(Double.doubleToLongBits(0));
+	private final DoubleSupplier supplier;
+
+	Gauge(DoubleSupplier supplier) {
+		this.supplier = supplier;
+	}
+
+	public void set(double value) {
+		bits.set(Double.doubleToLongBits(value));
+	}
+
+	public double get() {
+		if(supplier != null) return supplier.getAsDouble();
+		return Double.longBitsToDouble(bits.get());
+	}
+}
@@ -0,0 +1,89 @@
+package smlauncher.metrics;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts observations in fixed buckets, such as download latencies. Percentiles are estimated from the buckets the
+ * same way Prometheus does, so the buckets should cover the expected range.
+ */
+public class Histogram {
+
+	/**
+	 * Buckets for durations in seconds, from 5ms to 30 minutes.
+	 */
+	public static final double[] SECONDS = {0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30, 60, 300, 1800};
+
+	private final double[] bounds;
+	private final LongAdder[] buckets;
+	private final LongAdder count = new LongAdder();
+	private final DoubleAdder sum = new DoubleAdder();
+
+	/**
+	 * @param bounds the upper bounds of the buckets in ascending order, values above the last one are still counted
+	 */
+	Histogram(double[] bounds) {
+		this.bounds = bounds.clone();
+		Arrays.sort(this.bounds);
+		buckets = new LongAdder[this.bounds.length + 1];
+		for(int i = 0; i < buckets.length; i++) buckets[i] = new LongAdder();
+	}
+
+	public void observe(double value) {
+		int index = Arrays.binarySearch(bounds, value);
+		if(index < 0) index = -index - 1;
+		buckets[index].increment();
+		count.increment();
+		sum.add(value);
+	}
+
+	public long getCount() {
+		return count.sum();
+	}
+
+	public double getSum() {
+		return sum.sum();
+	}
+
+	public double[] getBounds() {
+		return bounds.clone();
+	}
+
+	/**
+	 * @return the number of observations at or below each bound, with the total count as the last element
+	 */
+	public long[] getCumulativeCounts() {
+		long[] counts = new long[buckets.length];
+		long total = 0;
+		for(int i = 0; i < buckets.length; i++) {
+			total += buckets[i].sum();
+			counts[i] = total;
+		}
+		return counts;
+	}
+
+	/**
+	 * Estimates a percentile by interpolating within the bucket it falls into.
+	 *
+	 * @param quantile the quantile between 0 and 1, for example 0.99
+	 * @return the estimate, or NaN if nothing was observed
+	 */
+	public double getQuantile(double quantile) {
+		long[] counts = getCumulativeCounts();
+		long total = counts[counts.length - 1];
+		if(total == 0) return Double.NaN;
+		double rank = quantile * total;
+		for(int i = 0; i < counts.length; i++) {
+			if(counts[i] < rank) continue;
+			// Past the last bound there is no upper limit to interpolate towards
+			if(i == bounds.length) return bounds.length == 0 ? Double.NaN : bounds[bounds.length - 1];
+			double lower = i == 0 ? 0 : bounds[i - 1];
+			long below = i == 0 ? 0 : counts[i - 1];
+			long inBucket = counts[i] - below;
+			if(inBucket == 0) return bounds[i];
+			return lower + (bounds[i] - lower) * (rank - below) / inBucket;
+		}
+		return bounds[bounds.length - 1];
+	}
+}
@@ -0,0 +1,88 @@
+package smlauncher.metrics;
+
+import smlauncher.LogManager;
+import smlauncher.process.ResourceMonitor;
+import smlauncher.starmade.DownloadThrottle;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * The metrics the launcher records, in one place so their names and help texts stay consistent.
+ */
+public final class LauncherMetrics {
+
+	public static final Counter HASHED_FILES = Metrics.counter("launcher_hashed_files_total", "Files hashed to check for updates");
+	public static final Counter HASHED_BYTES = Metrics.counter("launcher_hashed_bytes_total", "Bytes hashed to check for updates");
+	public static final Counter HASH_NANOS = Metrics.counter("launcher_hash_nanoseconds_total", "Time spent hashing files");
+	public static final Gauge HASH_THROUGHPUT = Metrics.gauge("launcher_hash_megabytes_per_second", "Average hashing speed", LauncherMetrics::getHashThroughput);
+	public static final Histogram DOWNLOAD_LATENCY = Metrics.histogram("launcher_download_latency_seconds", "Time from requesting a file until its first bytes arrive", Histogram.SECONDS);
+	public static final Counter DOWNLOAD_FAILURES = Metrics.counter("launcher_download_failures_total", "Files that failed to download");
+	public static final Counter DOWNLOAD_THROTTLE_NANOS = Metrics.counter("launcher_download_throttle_nanoseconds_total", "Time downloads waited for the bandwidth limit");
+	public static final Gauge DOWNLOAD_LIMIT = Metrics.gauge("launcher_download_limit_bytes_per_second", "Bandwidth limit that applies to downloads now, 0 for none", DownloadThrottle::getEffectiveLimit);
+	public static final Gauge DOWNLOAD_THROUGHPUT = Metrics.gauge("launcher_download_bytes_per_second", "Actual download rate over the last second", DownloadThrottle::getThroughput);
+	public static final Counter BACKUPS = Metrics.counter("launcher_backups_total", "Backups created");
+	public static final Histogram BACKUP_DURATION = Metrics.histogram("launcher_backup_duration_seconds", "Time taken to create a backup", Histogram.SECONDS);
+	public static final Gauge BACKUP_SIZE = Metrics.gauge("launcher_backup_last_size_bytes", "Size of the most recent backup archive");
+	public static final Counter BACKUP_SKIPPED_FILES = Metrics.counter("launcher_backup_skipped_files_total", "Files that could not be backed up");
+	public static final Counter GAME_RESTARTS = Metrics.counter("launcher_game_restarts_total", "Times a supervised server was restarted after a crash or failed health check");
+
+	private static final Map<String, ResourceMonitor> monitors = new ConcurrentHashMap<>();
+
+	private LauncherMetrics() {
+	}
+
+	/**
+	 * @param url the downloaded URL, its host is used as the mirror label
+	 * @return the counter for bytes downloaded from the URL's mirror
+	 */
+	public static Counter getDownloadedBytes(String url) {
+		return Metrics.counter("launcher_downloaded_bytes_total", "Bytes downloaded per mirror", "mirror", getMirror(url));
+	}
+
+	/**
+	 * @return the counter for files downloaded from the URL's mirror
+	 */
+	public static Counter getDownloadedFiles(String url) {
+		return Metrics.counter("launcher_downloaded_files_total", "Files downloaded per mirror", "mirror", getMirror(url));
+	}
+
+	/**
+	 * Exports the latest samples of a child process monitor, replacing any earlier monitor with the same name.
+	 *
+	 * @param name the label for the process, such as "game" or "server"
+	 */
+	public static void trackProcess(String name, ResourceMonitor monitor) {
+		monitors.put(name, monitor);
+		Metrics.gauge("launcher_child_cpu_ratio", "Share of all CPU cores used by the game process", () -> getSampleValue(name, ResourceMonitor.Sample::cpu), "process", name);
+		Metrics.gauge("launcher_child_resident_bytes", "Resident memory of the game process", () -> getSampleValue(name, ResourceMonitor.Sample::residentBytes), "process", name);
+		Metrics.gauge("launcher_child_max_heap_bytes", "Maximum heap the game process was started with", () -> monitors.get(name).getMaxHeapBytes(), "process", name);
+		Metrics.gauge("launcher_child_threads", "Thread count of the game process", () -> getSampleValue(name, ResourceMonitor.Sample::threads), "process", name);
+		Metrics.gauge("launcher_child_open_files", "Open files of the game process", () -> getSampleValue(name, ResourceMonitor.Sample::openFiles), "process", name);
+		Metrics.gauge("launcher_child_disk_read_bytes_per_second", "Disk read rate of the game process", () -> getSampleValue(name, ResourceMonitor.Sample::readBytesPerSec), "process", name);
+		Metrics.gauge("launcher_child_disk_write_bytes_per_second", "Disk write rate of the game process", () -> getSampleValue(name, ResourceMonitor.Sample::writeBytesPerSec), "process", name);
+	}
+
+	private static double getSampleValue(String name, ToDoubleFunction<ResourceMonitor.Sample> value) {
+		ResourceMonitor monitor = monitors.get(name);
+		ResourceMonitor.Sample sample = monitor == null || !monitor.isRunning() ? null : monitor.getLatest();
+		return sample == null ? Double.NaN : value.applyAsDouble(sample);
+	}
+
+	private static double getHashThroughput() {
+		long nanos = HASH_NANOS.get();
+		return nanos == 0 ? Double.NaN : HASHED_BYTES.get() / (1024.0 * 1024.0) / (nanos / 1e9);
+	}
+
+	private static String getMirror(String url) {
+		try {
+			String host = URI.create(url.replace(" ", "%20")).getHost();
+			if(host != null) return host;
+		} catch(IllegalArgumentException exception) {
+			LogManager.logWarning("Could not read the host of " + url);
+		}
+		return "unknown";
+	}
+}
@@ -0,0 +1,208 @@
+package smlauncher.metrics;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import smlauncher.LogManager;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.DoubleSupplier;
+import java.util.function.Function;
+
+/**
+ * The launcher's metrics registry.
+ * <p>Metrics are registered by name and an optional list of label name and value pairs, and asking for the same name and
+ * labels again returns the same metric. Updating a metric is lock free, so keep a reference to it in hot paths instead
+ * of looking it up for every update. The registry can be written in the Prometheus text format, see
+ * {@link MetricsServer}, or as JSON.</p>
+ */
+public final class Metrics {
+
+	private static final Map<String, Family> families = new ConcurrentSkipListMap<>();
+	private static Thread dumpHook;
+
+	private Metrics() {
+	}
+
+	/**
+	 * @param labels label names and values, alternating
+	 */
+	public static Counter counter(String name, String help, String... labels) {
+		return get(name, help, Type.COUNTER, labels, key -> new Counter());
+	}
+
+	/**
+	 * @param labels label names and values, alternating
+	 */
+	public static Gauge gauge(String name, String help, String... labels) {
+		return get(name, help, Type.GAUGE, labels, key -> new Gauge(null));
+	}
+
+	/**
+	 * Registers a gauge that is read from a supplier whenever the metrics are exported. If the gauge already exists the
+	 * old supplier is kept.
+	 *
+	 * @param labels label names and values, alternating
+	 */
+	public static Gauge gauge(String name, String help, DoubleSupplier supplier, String... labels) {
+		return get(name, help, Type.GAUGE, labels, key -> new Gauge(supplier));
+	}
+
+	/**
+	 * @param bounds the upper bounds of the buckets, for example {@link Histogram#SECONDS}
+	 * @param labels label names and values, alternating
+	 */
+	public static Histogram histogram(String name, String help, double[] bounds, String... labels) {
+		return get(name, help, Type.HISTOGRAM, labels, key -> new Histogram(bounds));
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> T get(String name, String help, Type type, String[] labels, Function<String, Object> factory) {
+		if(labels.length % 2 != 0) throw new IllegalArgumentException("Labels of " + name + " must be name and value pairs");
+		Family family = families.computeIfAbsent(name, key -> new Family(help, type));
+		if(family.type != type) throw new IllegalArgumentException("Metric " + name + " is a " + family.type + ", not a " + type);
+		return (T) family.metrics.computeIfAbsent(formatLabels(labels), key -> new Labeled(labels.clone(), factory.apply(key))).metric;
+	}
+
+	/**
+	 * Writes all metrics in the Prometheus text exposition format.
+	 */
+	public static void writePrometheus(Writer writer) throws IOException {
+		for(Map.Entry<String, Family> entry : families.entrySet()) {
+			String name = entry.getKey();
+			Family family = entry.getValue();
+			writer.append("# HELP ").append(name).append(' ').append(family.help.replace("\\", "\\\\").replace("\n", "\\n")).append('\n');
+			writer.append("# TYPE ").append(name).append(' ').append(family.type.name().toLowerCase()).append('\n');
+			for(Map.Entry<String, Labeled> metric : new TreeMap<>(family.metrics).entrySet()) {
+				String labels = metric.getKey();
+				switch(family.type) {
+					case COUNTER -> writeSample(writer, name, labels, null, ((Counter) metric.getValue().metric).get());
+					case GAUGE -> writeSample(writer, name, labels, null, ((Gauge) metric.getValue().metric).get());
+					case HISTOGRAM -> {
+						Histogram histogram = (Histogram) metric.getValue().metric;
+						double[] bounds = histogram.getBounds();
+						long[] counts = histogram.getCumulativeCounts();
+						for(int i = 0; i < bounds.length; i++) writeSample(writer, name + "_bucket", labels, "le=\"" + formatValue(bounds[i]) + "\"", counts[i]);
+						writeSample(writer, name + "_bucket", labels, "le=\"+Inf\"", counts[counts.length - 1]);
+						writeSample(writer, name + "_sum", labels, null, histogram.getSum());
+						writeSample(writer, name + "_count", labels, null, histogram.getCount());
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return all metrics as JSON, histograms with their count, sum and estimated percentiles
+	 */
+	public static JSONObject toJSON() {
+		JSONObject json = new JSONObject();
+		json.put("timestamp", System.currentTimeMillis());
+		for(Map.Entry<String, Family> entry : families.entrySet()) {
+			Family family = entry.getValue();
+			JSONArray values = new JSONArray();
+			for(Labeled metric : new TreeMap<>(family.metrics).values()) {
+				JSONObject value = new JSONObject();
+				if(metric.labels.length > 0) {
+					JSONObject labels = new JSONObject();
+					for(int i = 0; i < metric.labels.length; i += 2) labels.put(metric.labels[i], metric.labels[i + 1] == null ? "" : metric.labels[i + 1]);
+					value.put("labels", labels);
+				}
+				switch(family.type) {
+					case COUNTER -> value.put("value", ((Counter) metric.metric).get());
+					case GAUGE -> value.put("value", toJSONNumber(((Gauge) metric.metric).get()));
+					case HISTOGRAM -> {
+						Histogram histogram = (Histogram) metric.metric;
+						value.put("count", histogram.getCount());
+						value.put("sum", histogram.getSum());
+						value.put("p50", toJSONNumber(histogram.getQuantile(0.5)));
+						value.put("p90", toJSONNumber(histogram.getQuantile(0.9)));
+						value.put("p99", toJSONNumber(histogram.getQuantile(0.99)));
+					}
+				}
+				values.put(value);
+			}
+			JSONObject metric = new JSONObject();
+			metric.put("type", family.type.name().toLowerCase());
+			metric.put("help", family.help);
+			metric.put("values", values);
+			json.put(entry.getKey(), metric);
+		}
+		return json;
+	}
+
+	/**
+	 * Writes the metrics as JSON to a file when the launcher exits, if that is not set up yet.
+	 */
+	public static synchronized void dumpOnExit(File file) {
+		if(dumpHook != null) return;
+		dumpHook = new Thread(() -> {
+			try {
+				if(file.getParentFile() != null) file.getParentFile().mkdirs();
+				Files.writeString(file.toPath(), toJSON().toString(), StandardCharsets.UTF_8);
+			} catch(Exception exception) {
+				LogManager.logWarning("Failed to write metrics to " + file.getAbsolutePath(), exception);
+			}
+		}, "Metrics-Dump");
+		Runtime.getRuntime().addShutdownHook(dumpHook);
+	}
+
+	private static void writeSample(Writer writer, String name, String labels, String extraLabel, double value) throws IOException {
+		writer.append(name);
+		if(!labels.isEmpty() || extraLabel != null) {
+			writer.append('{').append(labels);
+			if(extraLabel != null) writer.append(labels.isEmpty() ? "" : ",").append(extraLabel);
+			writer.append('}');
+		}
+		writer.append(' ').append(formatValue(value)).append('\n');
+	}
+
+	private static String formatValue(double value) {
+		if(Double.isNaN(value)) return "NaN";
+		if(Double.isInfinite(value)) return value > 0 ? "+Inf" : "-Inf";
+		if(value == Math.rint(value) && Math.abs(value) < 1e15) return String.valueOf((long) value);
+		return String.valueOf(value);
+	}
+
+	private static Object toJSONNumber(double value) {
+		// JSON has no NaN, a gauge without a value is written as null
+		return Double.isNaN(value) || Double.isInfinite(value) ? JSONObject.NULL : value;
+	}
+
+	private static String formatLabels(String[] labels) {
+		if(labels.length == 0) return "";
+		List<String> pairs = new ArrayList<>(labels.length / 2);
+		for(int i = 0; i < labels.length; i += 2) {
+			String value = labels[i + 1] == null ? "" : labels[i + 1];
+			pairs.add(labels[i] + "=\"" + value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n") + "\"");
+		}
+		return String.join(",", pairs);
+	}
+
+	private enum Type {
+		COUNTER, GAUGE, HISTOGRAM
+	}
+
+	private record Labeled(String[] labels, Object metric) {
+	}
+
+	private static class Family {
+		private final String help;
+		private final Type type;
+		private final Map<String, Labeled> metrics = new ConcurrentHashMap<>();
+
+		Family(String help, Type type) {
+			this.help = help;
+			this.type = type;
+		}
+	}
+}
@@ -0,0 +1,77 @@
+package smlauncher.metrics;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import smlauncher.LogManager;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Serves the launcher metrics over HTTP for Prometheus to scrape.
+ * <p>The server only listens on the loopback address. {@code /metrics} returns the Prometheus text format and
+ * {@code /metrics.json} the JSON form.</p>
+ */
+public class MetricsServer {
+
+	private static HttpServer server;
+
+	/**
+	 * Starts the server if it is not running yet.
+	 *
+	 * @param port the local port to listen on
+	 */
+	public static synchronized void start(int port) {
+		if(server != null) return;
+		try {
+			HttpServer httpServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+			httpServer.createContext("/metrics", MetricsServer::handle);
+			httpServer.createContext("/metrics.json", MetricsServer::handleJSON);
+			// The dispatcher thread inherits the daemon flag of the thread that starts it, so the server never keeps
+			// the launcher alive on its own
+			Thread starter = new Thread(httpServer::start, "Metrics-Server");
+			starter.setDaemon(true);
+			starter.start();
+			starter.join();
+			server = httpServer;
+			System.out.println("[METRICS] Serving metrics on http://127.0.0.1:" + port + "/metrics");
+		} catch(IOException exception) {
+			LogManager.logWarning("Failed to start the metrics server on port " + port, exception);
+		} catch(InterruptedException exception) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	public static synchronized void stop() {
+		if(server == null) return;
+		server.stop(0);
+		server = null;
+	}
+
+	private static void handle(HttpExchange exchange) throws IOException {
+		if(!exchange.getRequestURI().getPath().equals("/metrics")) {
+			respond(exchange, 404, "text/plain", "Not found\n");
+			return;
+		}
+		StringWriter text = new StringWriter();
+		Metrics.writePrometheus(text);
+		respond(exchange, 200, "text/plain; version=0.0.4; charset=utf-8", text.toString());
+	}
+
+	private static void handleJSON(HttpExchange exchange) throws IOException {
+		respond(exchange, 200, "application/json", Metrics.toJSON().toString());
+	}
+
+	private static void respond(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+		byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", contentType);
+		exchange.sendResponseHeaders(status, bytes.length);
+		try(OutputStream out = exchange.getResponseBody()) {
+			out.write(bytes);
+		}
+	}
+}
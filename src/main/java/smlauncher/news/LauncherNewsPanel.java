@@ -1,64 +1,94 @@
 package smlauncher.news;
 
+import smlauncher.LogManager;
 import smlauncher.StarMadeLauncher;
-import smlauncher.util.BBCodeToHTMLConverter;
 import smlauncher.util.Palette;
-import smlauncher.util.SteamNewsAPI;
 
 import javax.swing.*;
+import javax.swing.text.html.HTMLDocument;
+import javax.swing.text.html.HTMLEditorKit;
 import java.awt.*;
-import java.time.Instant;
-import java.time.LocalDate;
-import java.time.ZoneId;
-import java.util.ArrayList;
+import java.io.StringReader;
+import java.util.List;
 
 /**
  * Panel for displaying game news in the launcher.
+ * <p>The news are loaded on a background thread, the cached news first and then the fetched ones if they changed.
+ * The HTML is also parsed in the background, the panel only swaps in the finished document.</p>
  *
  * @author TheDerpGamer
  */
 public class LauncherNewsPanel extends JPanel {
 
 	public static final boolean PRINT_HTML_MESSAGES = false;
+	private final JEditorPane htmlPanel;
+	private boolean loading;
+	private boolean showingNews;
 
 	public LauncherNewsPanel() {
 		super(true);
 		setBackground(Palette.paneColor);
 		setOpaque(true);
-	}
-
-	public void updatePanel() {
-		removeAll();
-		JEditorPane htmlPanel = new JEditorPane();
+		htmlPanel = new JEditorPane();
 		htmlPanel.setContentType("text/html");
 		htmlPanel.setEditable(false);
 		htmlPanel.setBackground(Palette.paneColor);
 		htmlPanel.setOpaque(true);
-		htmlPanel.setEditable(false);
-		StringBuilder sb = new StringBuilder();
-		if(!StarMadeLauncher.offlineMode) {
-			for(SteamNewsAPI.NewsPost post : SteamNewsAPI.getPosts()) {
-				ArrayList<String> lines = BBCodeToHTMLConverter.convert(post.getContents());
-				lines.add(0, "<h1>" + post.getTitle() + "</h1>");
-				LocalDate ldt = Instant.ofEpochMilli(post.getDate() * 1000L).atZone(ZoneId.systemDefault()).toLocalDate();
-				lines.add("<p><a href=\"" + post.getUrl() + "\">Posted on " + ldt.toString() + " by " + post.getAuthor() + "</a></p>");
-				lines = BBCodeToHTMLConverter.insertColors(lines, "#eeeeee");
-				lines.add("<hr>");
+		htmlPanel.setText("<html><body style=\"color: #eeeeee; font-family: Verdana;\"><p>Loading news...</p></body></html>");
+		add(htmlPanel, BorderLayout.CENTER);
+	}
 
-				for(String line : lines) {
-					sb.append(line);
-					if(PRINT_HTML_MESSAGES) System.out.println(line);
+	public void updatePanel() {
+		if(loading) return;
+		loading = true;
+		boolean offline = StarMadeLauncher.offlineMode;
+		// News that are already shown are only replaced if they changed
+		boolean shown = showingNews;
+		new SwingWorker<Void, HTMLDocument>() {
+			@Override
+			protected Void doInBackground() {
+				String cached = NewsFeed.getCachedHtml();
+				if(offline) {
+					if(!shown) publish(parse(NewsFeed.getOfflineHtml(cached)));
+					return null;
+				}
+				if(cached != null && !shown) publish(parse(cached));
+				try {
+					String html = NewsFeed.refresh();
+					if(html != null) publish(parse(html));
+				} catch(Exception exception) {
+					LogManager.logWarning("Failed to update the news", exception);
+					if(cached == null && !shown) publish(parse(NewsFeed.getUnavailableHtml()));
 				}
+				return null;
 			}
-		} else {
-			//Text that says launcher is in offline mode
-			sb.append("<h1>Offline Mode</h1>");
-			sb.append("<p>The launcher is currently in offline mode. News updates are not available.</p>");
-			if(PRINT_HTML_MESSAGES) System.out.println("Offline Mode: News updates are not available.");
-		}
 
-		htmlPanel.setText(sb.toString());
-		add(htmlPanel, BorderLayout.CENTER);
-		revalidate();
+			@Override
+			protected void process(List<HTMLDocument> documents) {
+				htmlPanel.setDocument(documents.getLast());
+				showingNews = true;
+				revalidate();
+			}
+
+			@Override
+			protected void done() {
+				loading = false;
+			}
+		}.execute();
+	}
+
+	/**
+	 * Parses the HTML into a document off the event dispatch thread, a document that is not shown yet is not shared.
+	 */
+	private static HTMLDocument parse(String html) {
+		if(PRINT_HTML_MESSAGES) System.out.println(html);
+		HTMLEditorKit kit = new HTMLEditorKit();
+		HTMLDocument document = (HTMLDocument) kit.createDefaultDocument();
+		try {
+			kit.read(new StringReader(html), document, 0);
+		} catch(Exception exception) {
+			LogManager.logWarning("Failed to parse the news", exception);
+		}
+		return document;
 	}
 }
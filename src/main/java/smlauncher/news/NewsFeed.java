@@ -0,0 +1,149 @@
+package smlauncher.news;
+
+import org.json.JSONException;
+import smlauncher.LogManager;
+import smlauncher.util.BBCodeToHTMLConverter;
+import smlauncher.util.OperatingSystem;
+import smlauncher.util.SteamNewsAPI;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The news shown in the launcher, cached on disk so they show up right away on the next start.
+ * <p>The cache keeps the JSON of the news API with its ETag and the HTML rendered from it. The news are fetched again
+ * when the cache is older than its time to live, asking the API whether they changed since the cached ETag. The HTML
+ * is only rendered again when the news changed or the renderer did.</p>
+ */
+public final class NewsFeed {
+
+	private static final long TTL_MILLIS = TimeUnit.MINUTES.toMillis(30);
+	/**
+	 * Raised when the rendered HTML changes, so cached news are rendered again.
+	 */
+	private static final int RENDERER_VERSION = 1;
+	private static final String TEXT_COLOR = "#eeeeee";
+
+	private NewsFeed() {
+	}
+
+	/**
+	 * @return the HTML of the cached news, or null if there are none
+	 */
+	public static String getCachedHtml() {
+		try {
+			File html = new File(getFolder(), "news.html");
+			return html.isFile() ? new String(Files.readAllBytes(html.toPath()), StandardCharsets.UTF_8) : null;
+		} catch(IOException exception) {
+			LogManager.logWarning("Failed to read the cached news", exception);
+			return null;
+		}
+	}
+
+	/**
+	 * Fetches the news if the cache expired.
+	 *
+	 * @return the HTML of the news if it changed, or null if the cached HTML is still current
+	 * @throws IOException if the news could not be fetched or cached
+	 */
+	public static synchronized String refresh() throws IOException {
+		File folder = getFolder();
+		File json = new File(folder, "news.json");
+		File html = new File(folder, "news.html");
+		File metaFile = new File(folder, "news.properties");
+		Properties meta = new Properties();
+		if(metaFile.isFile()) {
+			try(InputStream input = new FileInputStream(metaFile)) {
+				meta.load(input);
+			}
+		}
+		boolean cached = json.isFile() && html.isFile();
+		boolean rendered = String.valueOf(RENDERER_VERSION).equals(meta.getProperty("renderer"));
+		long fetched = Long.parseLong(meta.getProperty("fetched", "0"));
+		if(cached && rendered && System.currentTimeMillis() - fetched < TTL_MILLIS) return null;
+
+		SteamNewsAPI.Response response = SteamNewsAPI.fetch(cached ? meta.getProperty("etag") : null);
+		String body = response.body();
+		String cachedJson = cached ? new String(Files.readAllBytes(json.toPath()), StandardCharsets.UTF_8) : null;
+		// Unchanged news only need the HTML rendered again if the renderer changed
+		boolean changed = body != null && !body.equals(cachedJson);
+		if(body == null) body = cachedJson;
+		String result = null;
+		if(changed || !rendered) {
+			try {
+				result = render(SteamNewsAPI.parse(body));
+			} catch(JSONException exception) {
+				throw new IOException("Invalid news from the Steam news API", exception);
+			}
+			if(changed) write(json, body);
+			write(html, result);
+		}
+		meta.setProperty("fetched", String.valueOf(System.currentTimeMillis()));
+		meta.setProperty("renderer", String.valueOf(RENDERER_VERSION));
+		if(response.etag() != null) meta.setProperty("etag", response.etag());
+		else meta.remove("etag");
+		try(OutputStream output = new FileOutputStream(metaFile)) {
+			meta.store(output, "StarMade launcher news cache");
+		}
+		return result;
+	}
+
+	/**
+	 * @return the message shown in offline mode, followed by the cached news if there are any
+	 */
+	public static String getOfflineHtml(String cachedHtml) {
+		String message = "<h1>Offline Mode</h1><p>The launcher is currently in offline mode. News updates are not available.</p>";
+		if(cachedHtml == null) return wrap(message);
+		// The cached HTML is a whole document, the message goes at the start of its body
+		int body = cachedHtml.indexOf("<body>");
+		return body == -1 ? wrap(message) : cachedHtml.substring(0, body + 6) + message + "<hr>" + cachedHtml.substring(body + 6);
+	}
+
+	/**
+	 * @return the message shown when the news could not be fetched and none are cached
+	 */
+	public static String getUnavailableHtml() {
+		return wrap("<h1>News Unavailable</h1><p>The news could not be loaded, check your internet connection.</p>");
+	}
+
+	static String render(List<SteamNewsAPI.NewsPost> posts) {
+		StringBuilder html = new StringBuilder();
+		for(SteamNewsAPI.NewsPost post : posts) {
+			html.append("<h1>");
+			BBCodeToHTMLConverter.appendEscaped(html, post.getTitle());
+			html.append("</h1><div>");
+			html.append(post.isBBCode() ? BBCodeToHTMLConverter.toHtml(post.getContents()) : post.getContents());
+			LocalDate date = Instant.ofEpochMilli(post.getDate() * 1000L).atZone(ZoneId.systemDefault()).toLocalDate();
+			html.append("</div><p><a href=\"");
+			BBCodeToHTMLConverter.appendEscaped(html, post.getUrl());
+			html.append("\">Posted on ").append(date).append(" by ");
+			BBCodeToHTMLConverter.appendEscaped(html, post.getAuthor());
+			html.append("</a></p><hr>");
+		}
+		return wrap(html.toString());
+	}
+
+	private static String wrap(String body) {
+		return "<html><head><style>body {color: " + TEXT_COLOR + "; font-family: Verdana;}</style></head><body>" + body + "</body></html>";
+	}
+
+	private static void write(File file, String text) throws IOException {
+		File part = new File(file.getParentFile(), file.getName() + ".tmp");
+		Files.write(part.toPath(), text.getBytes(StandardCharsets.UTF_8));
+		Files.move(part.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	private static File getFolder() throws IOException {
+		File folder = new File(OperatingSystem.getAppDir(), "news");
+		if(!folder.isDirectory() && !folder.mkdirs()) throw new IOException("Failed to create " + folder.getAbsolutePath());
+		return folder;
+	}
+}
@@ -0,0 +1,99 @@
+package smlauncher.process;
+
+import smlauncher.JreManager;
+import smlauncher.LogManager;
+import smlauncher.fileio.TextFileUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Manages the JDK ahead-of-time caches that let the game start faster on Java 25.
+ * <p>The first launch of a build is a training run: the JVM records which classes the game loads and links, and writes
+ * them to a cache when the game exits. Later launches of the same build map that cache instead of loading and linking
+ * the classes again. Caches are kept in the aot-cache folder of the shared Java runtime cache, one per build, install
+ * folder, runtime and client or server mode, since the JVM rejects a cache created for a different class path or
+ * runtime. Installing a build deletes the caches of that install folder so its next launch trains again.</p>
+ */
+public final class AotCache {
+
+	private static final String PREFIX = "starmade-";
+	private static final String EXTENSION = ".aot";
+
+	private AotCache() {
+	}
+
+	/**
+	 * @param installDir the game install folder, containing version.txt and StarMade.jar
+	 * @param java       the Java executable the game runs on
+	 * @param server     whether the game runs as a dedicated server
+	 * @return the arguments to use or create the cache for this launch, or none if the build is unknown
+	 */
+	public static List<String> getArguments(File installDir, File java, boolean server) {
+		String build = getBuild(installDir);
+		if(build == null) return List.of();
+		File folder;
+		try {
+			folder = getFolder();
+		} catch(IOException exception) {
+			LogManager.logWarning("Failed to open the Java runtime cache", exception);
+			return List.of();
+		}
+		File cache = new File(folder, PREFIX + build + "-" + (server ? "server" : "client") + "-" + getInstallKey(installDir) + "-" + getRuntimeKey(java) + EXTENSION);
+		if(cache.isFile()) return List.of("-XX:AOTCache=" + cache.getAbsolutePath());
+		if(!folder.isDirectory() && !folder.mkdirs()) {
+			LogManager.logWarning("Failed to create " + folder.getAbsolutePath());
+			return List.of();
+		}
+		LogManager.logInfo("No startup cache for build " + build + " yet, this launch creates " + cache.getName() + " when the game exits");
+		return List.of("-XX:AOTCacheOutput=" + cache.getAbsolutePath());
+	}
+
+	/**
+	 * Deletes the caches of an install folder. Call after installing a build there, its next launch creates a new cache.
+	 * The caches of other install folders are kept.
+	 */
+	public static void clear(File installDir) {
+		String install = "-" + getInstallKey(installDir) + "-";
+		File[] files;
+		try {
+			files = getFolder().listFiles((dir, name) -> name.startsWith(PREFIX) && name.endsWith(EXTENSION) && name.contains(install));
+		} catch(IOException exception) {
+			LogManager.logWarning("Failed to open the Java runtime cache", exception);
+			return;
+		}
+		if(files == null) return;
+		for(File file : files) {
+			if(!file.delete()) LogManager.logWarning("Failed to delete startup cache " + file.getName());
+		}
+	}
+
+	private static File getFolder() throws IOException {
+		return new File(JreManager.getCacheFolder(), "aot-cache");
+	}
+
+	private static String getInstallKey(File installDir) {
+		return Integer.toHexString(installDir.getAbsoluteFile().toPath().normalize().toString().hashCode());
+	}
+
+	private static String getRuntimeKey(File java) {
+		// A reinstalled runtime gets a new cache instead of one the JVM would reject
+		return Integer.toHexString((java.getAbsolutePath() + "|" + java.lastModified()).hashCode());
+	}
+
+	/**
+	 * @return the build of the installed game as a file name, or null if no version.txt exists
+	 */
+	static String getBuild(File installDir) {
+		File versionFile = new File(installDir, "version.txt");
+		if(!versionFile.isFile()) return null;
+		try {
+			String version = TextFileUtil.readText(versionFile).trim();
+			return version.isEmpty() ? null : version.replaceAll("[^A-Za-z0-9._-]", "_");
+		} catch(IOException exception) {
+			LogManager.logWarning("Failed to read " + versionFile.getAbsolutePath(), exception);
+			return null;
+		}
+	}
+}
@@ -0,0 +1,207 @@
+package smlauncher.process;
+
+import org.apache.commons.io.FileUtils;
+import smlauncher.JreManager;
+import smlauncher.LogManager;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds trimmed Java runtimes that contain only the modules the game uses.
+ * <p>jdeps lists the modules StarMade.jar and its libraries depend on, and jlink links them into a runtime image without
+ * debug attributes, headers and man pages. The image is a fraction of the size of the JDK and starts faster, since the
+ * JVM maps fewer modules. Images are kept in the shared runtime cache, one per game build and JDK, and images that were
+ * not used for a while are deleted when a new one is built.</p>
+ * <p>Building takes a while, so the first launch of a build starts it in the background and runs on the full JDK.</p>
+ */
+public final class JlinkRuntime {
+
+	/**
+	 * Modules the game and its libraries load by reflection or as services, which jdeps cannot see.
+	 */
+	private static final List<String> EXTRA_MODULES = List.of("jdk.unsupported", "jdk.crypto.ec", "jdk.charsets", "jdk.localedata", "jdk.zipfs", "jdk.management");
+	private static final String PREFIX = "jlink-";
+	private static final long MAX_AGE_MILLIS = TimeUnit.DAYS.toMillis(30);
+	private static final Set<String> building = new HashSet<>();
+
+	private JlinkRuntime() {
+	}
+
+	/**
+	 * Get the java executable of the trimmed runtime for an install, starting to build it if it does not exist yet.
+	 *
+	 * @param installDir the game install folder, containing version.txt and StarMade.jar
+	 * @param jdk        the JDK the game runs on, or null if it is not in the runtime cache
+	 * @return the executable, or null to use the JDK for this launch
+	 */
+	public static File getJavaExecutable(File installDir, JreManager.Runtime jdk) {
+		if(jdk == null) {
+			LogManager.logInfo("Trimmed runtimes need Java from the shared runtime cache, using the JDK");
+			return null;
+		}
+		File image = getImageFolder(installDir, jdk);
+		if(image == null) return null;
+		File java = new File(image, getExecutablePath(jdk));
+		if(java.isFile()) {
+			// Keeps images that are still in use from being trimmed
+			image.setLastModified(System.currentTimeMillis());
+			return java;
+		}
+		synchronized(building) {
+			if(!building.add(image.getName())) return null;
+		}
+		LogManager.logInfo("No trimmed runtime for " + image.getName() + " yet, building it in the background");
+		Thread thread = new Thread(() -> {
+			try {
+				build(installDir, jdk);
+			} catch(IOException exception) {
+				LogManager.logWarning("Failed to build a trimmed runtime for " + installDir.getAbsolutePath(), exception);
+			} finally {
+				synchronized(building) {
+					building.remove(image.getName());
+				}
+			}
+		}, "Jlink-Runtime");
+		thread.setDaemon(true);
+		thread.start();
+		return null;
+	}
+
+	/**
+	 * Builds the trimmed runtime for an install, unless it already exists.
+	 *
+	 * @return the java executable of the runtime
+	 * @throws IOException if the JDK has no jdeps or jlink, or either of them fails
+	 */
+	public static File build(File installDir, JreManager.Runtime jdk) throws IOException {
+		File image = getImageFolder(installDir, jdk);
+		if(image == null) throw new IOException("No game build found in " + installDir.getAbsolutePath());
+		File java = new File(image, getExecutablePath(jdk));
+		if(java.isFile()) return java;
+		File bin = jdk.getJavaExecutable().getParentFile();
+		File jdeps = getTool(bin, "jdeps");
+		File jlink = getTool(bin, "jlink");
+		File gameJar = new File(installDir, "StarMade.jar");
+		if(!gameJar.isFile()) throw new IOException(gameJar.getAbsolutePath() + " does not exist");
+		trim(image.getParentFile());
+
+		long start = System.currentTimeMillis();
+		List<String> jdepsCommand = new ArrayList<>(List.of(jdeps.getAbsolutePath(), "--ignore-missing-deps", "--print-module-deps", "-q", "--multi-release", String.valueOf(jdk.getMajorVersion())));
+		// Libraries are read from the class path like the game loads them, as targets modular ones would need all their
+		// dependencies. The libraries the game uses are analyzed along with it.
+		File[] libraries = new File(installDir, "lib").listFiles((dir, name) -> name.endsWith(".jar"));
+		if(libraries != null && libraries.length > 0) {
+			List<String> classPath = new ArrayList<>();
+			for(File library : libraries) classPath.add(library.getAbsolutePath());
+			jdepsCommand.add("--class-path");
+			jdepsCommand.add(String.join(File.pathSeparator, classPath));
+		}
+		jdepsCommand.add(gameJar.getAbsolutePath());
+		String output = run(jdepsCommand, installDir);
+		String[] lines = output.trim().split("\\R");
+		Set<String> modules = new TreeSet<>(Arrays.asList(lines[lines.length - 1].trim().split(",")));
+		modules.removeIf(String::isEmpty);
+		if(modules.isEmpty()) throw new IOException("jdeps found no modules for " + gameJar.getAbsolutePath() + ": " + output);
+		modules.add("java.base");
+		// Modules that do not exist in this JDK would make jlink fail
+		Set<String> available = getModules(jdk);
+		for(String module : EXTRA_MODULES) if(available.contains(module)) modules.add(module);
+
+		File part = new File(image.getParentFile(), image.getName() + "." + ProcessHandle.current().pid() + "-" + Thread.currentThread().threadId() + ".part");
+		FileUtils.deleteQuietly(part);
+		try {
+			run(List.of(jlink.getAbsolutePath(), "--add-modules", String.join(",", modules), "--strip-debug", "--no-header-files", "--no-man-pages", "--compress", "zip-6", "--output", part.getAbsolutePath()), installDir);
+			if(!new File(part, getExecutablePath(jdk)).isFile()) throw new IOException("jlink did not create a java executable");
+			Files.move(part.toPath(), image.toPath(), StandardCopyOption.ATOMIC_MOVE);
+		} catch(IOException exception) {
+			FileUtils.deleteQuietly(part);
+			// Another launcher may have finished the same image first
+			if(java.isFile()) return java;
+			throw exception;
+		}
+		long imageSize = FileUtils.sizeOfDirectory(image) / (1024 * 1024);
+		long jdkSize = FileUtils.sizeOfDirectory(jdk.folder()) / (1024 * 1024);
+		System.out.println("[JLINK] Built " + image.getName() + " with " + modules.size() + " modules in " + (System.currentTimeMillis() - start) / 1000 + " s, " + imageSize + " MB instead of " + jdkSize + " MB");
+		LogManager.logInfo("Trimmed runtime " + image.getName() + " contains " + String.join(",", modules));
+		return java;
+	}
+
+	/**
+	 * @return the image folder for the build in the install and the JDK, or null if the build is unknown
+	 */
+	private static File getImageFolder(File installDir, JreManager.Runtime jdk) {
+		String build = AotCache.getBuild(installDir);
+		if(build == null) return null;
+		try {
+			return new File(new File(JreManager.getCacheFolder(), "images"), PREFIX + build + "-" + jdk.getKey());
+		} catch(IOException exception) {
+			LogManager.logWarning("Failed to open the Java runtime cache", exception);
+			return null;
+		}
+	}
+
+	/**
+	 * @return the path of the java executable in an image, relative to the image folder
+	 */
+	private static String getExecutablePath(JreManager.Runtime jdk) {
+		// jlink images have no macOS bundle folders, the executable is always in bin
+		return "bin/" + jdk.getJavaExecutable().getName();
+	}
+
+	private static File getTool(File bin, String name) throws IOException {
+		File tool = new File(bin, name);
+		if(!tool.isFile()) tool = new File(bin, name + ".exe");
+		if(!tool.isFile()) throw new IOException("The runtime in " + bin.getParent() + " has no " + name + ", trimmed runtimes need a JDK");
+		return tool;
+	}
+
+	private static Set<String> getModules(JreManager.Runtime jdk) throws IOException {
+		Set<String> modules = new HashSet<>();
+		for(String line : run(List.of(jdk.getJavaExecutable().getAbsolutePath(), "--list-modules"), null).split("\\R")) {
+			// Lines look like "java.base@25.0.2"
+			String module = line.trim().split("@")[0];
+			if(!module.isEmpty()) modules.add(module);
+		}
+		return modules;
+	}
+
+	/**
+	 * Deletes images that were not used for a while.
+	 */
+	private static void trim(File folder) {
+		if(!folder.isDirectory() && !folder.mkdirs()) return;
+		File[] images = folder.listFiles((dir, name) -> name.startsWith(PREFIX));
+		if(images == null) return;
+		long oldest = System.currentTimeMillis() - MAX_AGE_MILLIS;
+		for(File image : images) {
+			if(image.lastModified() < oldest) {
+				LogManager.logInfo("Deleting unused trimmed runtime " + image.getName());
+				FileUtils.deleteQuietly(image);
+			}
+		}
+	}
+
+	private static String run(List<String> command, File directory) throws IOException {
+		ProcessBuilder builder = new ProcessBuilder(command);
+		if(directory != null) builder.directory(directory);
+		builder.redirectErrorStream(true);
+		Process process = builder.start();
+		String name = new File(command.getFirst()).getName();
+		try {
+			// Reading the output until the tool exits keeps it from blocking on a full pipe
+			String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+			if(process.waitFor() != 0) throw new IOException(name + " failed with exit code " + process.exitValue() + ": " + output.trim());
+			return output;
+		} catch(InterruptedException exception) {
+			process.destroyForcibly();
+			Thread.currentThread().interrupt();
+			throw new IOException(name + " was interrupted", exception);
+		}
+	}
+}
@@ -0,0 +1,232 @@
+package smlauncher.process;
+
+import oshi.SystemInfo;
+import oshi.hardware.HardwareAbstractionLayer;
+import smlauncher.LogManager;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Picks the heap size, garbage collector and processor count for the game's JVM from the host's memory and CPUs.
+ * <p>A client gets a third of the physical memory, capped at 8 GB and lowered if little memory is free. A server grows
+ * its heap with the size of its database, since a larger universe keeps more sectors loaded, and gets the same initial
+ * and maximum heap so it never pauses to resize. Large server heaps use ZGC on modern Java, everything else uses G1.
+ * Any of these flags the user put in their own JVM arguments wins over the tuned one.</p>
+ */
+public final class JvmTuner {
+
+	public static final int MIN_HEAP = 2048;
+	private static final int MAX_CLIENT_HEAP = 8192;
+	private static final int MIN_SERVER_HEAP = 4096;
+	private static final int ZGC_MIN_HEAP = 8192;
+	private static final int ZGC_MIN_PROCESSORS = 4;
+	// Rendering a frame should not wait on a long collection
+	private static final int CLIENT_PAUSE_MILLIS = 50;
+	private static final int HEAP_STEP = 256;
+
+	private JvmTuner() {
+	}
+
+	/**
+	 * @return the physical and free memory and the processor count of this machine
+	 */
+	public static Host readHost() {
+		try {
+			HardwareAbstractionLayer hardware = new SystemInfo().getHardware();
+			return new Host(hardware.getMemory().getTotal() / 1024 / 1024, hardware.getMemory().getAvailable() / 1024 / 1024, hardware.getProcessor().getLogicalProcessorCount());
+		} catch(Exception exception) {
+			LogManager.logWarning("Failed to read system memory, assuming 16 GB", exception);
+			return new Host(16384, 8192, Runtime.getRuntime().availableProcessors());
+		}
+	}
+
+	/**
+	 * @param server     whether the JVM runs a dedicated server
+	 * @param modernJava whether the game runs on a Java version with generational ZGC
+	 * @param database   the size of the server database in bytes, 0 for a client
+	 */
+	public static Tuning tune(Host host, boolean server, boolean modernJava, long database) {
+		int processors = Math.max(1, host.processors());
+		// A server leaves one core to the OS and the launcher
+		int activeProcessors = server && processors >= 4 ? processors - 1 : processors;
+		return tune(host, server, modernJava, database, getHeapBudget(host), activeProcessors);
+	}
+
+	/**
+	 * Tunes one of several servers that share a host.
+	 *
+	 * @param maxHeap    the share of the host's memory this server may use in MB
+	 * @param processors the number of processors reserved for this server
+	 */
+	public static Tuning tuneShare(Host host, boolean modernJava, long database, int maxHeap, int processors) {
+		return tune(host, true, modernJava, database, maxHeap, Math.max(1, processors));
+	}
+
+	/**
+	 * @return the memory all JVMs on the host may use together in MB, leaving the OS at least 2 GB and a quarter of it
+	 */
+	public static int getHeapBudget(Host host) {
+		return (int) Math.max(MIN_HEAP, host.totalMemory() - Math.max(2048, host.totalMemory() / 4));
+	}
+
+	private static Tuning tune(Host host, boolean server, boolean modernJava, long database, int ceiling, int processors) {
+		int heap;
+		String reason;
+		if(server) {
+			long databaseMegabytes = database / 1024 / 1024;
+			heap = (int) Math.min(ceiling, Math.max(MIN_SERVER_HEAP, MIN_SERVER_HEAP + databaseMegabytes));
+			reason = host.totalMemory() + " MB memory, " + databaseMegabytes + " MB database";
+		} else {
+			heap = (int) Math.min(ceiling, Math.clamp(host.totalMemory() / 3, MIN_HEAP, MAX_CLIENT_HEAP));
+			reason = host.totalMemory() + " MB memory";
+			// The client heap grows on demand, so it only has to fit into what is free right now
+			if(host.availableMemory() - 1024 < heap) {
+				heap = (int) Math.max(MIN_HEAP, host.availableMemory() - 1024);
+				reason += ", " + host.availableMemory() + " MB free";
+			}
+		}
+		heap = Math.max(MIN_HEAP, heap / HEAP_STEP * HEAP_STEP);
+		int initialHeap = server ? heap : Math.min(1024, heap);
+		GarbageCollector gc;
+		if(server && modernJava && heap >= ZGC_MIN_HEAP && processors >= ZGC_MIN_PROCESSORS) gc = GarbageCollector.ZGC;
+		else gc = server ? GarbageCollector.G1 : GarbageCollector.G1_LOW_PAUSE;
+		return new Tuning(heap, initialHeap, gc, processors, reason + ", " + processors + " processors");
+	}
+
+	/**
+	 * @return the fixed heap chosen in the launcher settings, leaving the collector and processors to the JVM
+	 */
+	public static Tuning manual(int memory) {
+		return new Tuning(memory, Math.min(1024, memory), GarbageCollector.DEFAULT, 0, "memory set in the launcher settings");
+	}
+
+	/**
+	 * @return the total size of all files below a folder, or 0 if it does not exist
+	 */
+	public static long getFolderSize(File folder) {
+		if(!folder.isDirectory()) return 0;
+		AtomicLong size = new AtomicLong();
+		try(Stream<Path> files = Files.walk(folder.toPath())) {
+			files.forEach(path -> {
+				try {
+					BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+					if(attributes.isRegularFile()) size.addAndGet(attributes.size());
+				} catch(IOException ignored) {
+					// The server may delete files while the folder is walked
+				}
+			});
+		} catch(IOException | RuntimeException exception) {
+			LogManager.logWarning("Failed to measure " + folder.getAbsolutePath(), exception);
+		}
+		return size.get();
+	}
+
+	/**
+	 * Splits JVM arguments as entered in the launcher settings.
+	 */
+	public static List<String> splitArguments(String arguments) {
+		List<String> result = new ArrayList<>();
+		if(arguments == null) return result;
+		for(String argument : arguments.trim().split("\\s+")) {
+			if(!argument.isEmpty()) result.add(argument);
+		}
+		return result;
+	}
+
+	/**
+	 * @return the last -Xmx of a command line in MB, or 0 if it has none
+	 */
+	public static int getMaxHeapMegabytes(List<String> command) {
+		int heap = 0;
+		for(String argument : command) {
+			if(argument.equals("-jar")) break;
+			if(argument.startsWith("-Xmx")) heap = parseMegabytes(argument.substring(4));
+		}
+		return heap;
+	}
+
+	private static int parseMegabytes(String size) {
+		if(size.isEmpty()) return 0;
+		char unit = Character.toLowerCase(size.charAt(size.length() - 1));
+		try {
+			if(Character.isDigit(unit)) return (int) (Long.parseLong(size) / 1024 / 1024);
+			long value = Long.parseLong(size.substring(0, size.length() - 1));
+			return switch(unit) {
+				case 'k' -> (int) (value / 1024);
+				case 'm' -> (int) value;
+				case 'g' -> (int) (value * 1024);
+				case 't' -> (int) (value * 1024 * 1024);
+				default -> 0;
+			};
+		} catch(NumberFormatException exception) {
+			return 0;
+		}
+	}
+
+	/**
+	 * The memory, CPUs and free memory of a machine.
+	 *
+	 * @param totalMemory     the physical memory in MB
+	 * @param availableMemory the memory that is free or can be reclaimed right now in MB
+	 * @param processors      the number of logical processors
+	 */
+	public record Host(long totalMemory, long availableMemory, int processors) {
+	}
+
+	/**
+	 * The JVM settings chosen for a launch.
+	 *
+	 * @param maxHeap          the -Xmx in MB
+	 * @param initialHeap      the -Xms in MB
+	 * @param gc               the garbage collector
+	 * @param activeProcessors the number of processors the JVM may use, or 0 to let it decide
+	 * @param reason           what the settings are based on, for the log
+	 */
+	public record Tuning(int maxHeap, int initialHeap, GarbageCollector gc, int activeProcessors, String reason) {
+
+		/**
+		 * @param userArguments the JVM arguments the user entered, which override the tuned ones
+		 * @return the tuned arguments the user did not override
+		 */
+		public List<String> getArguments(List<String> userArguments) {
+			boolean userMaxHeap = false;
+			boolean userInitialHeap = false;
+			boolean userGc = false;
+			boolean userProcessors = false;
+			for(String argument : userArguments) {
+				if(argument.startsWith("-Xmx")) userMaxHeap = true;
+				else if(argument.startsWith("-Xms")) userInitialHeap = true;
+				else if(argument.matches("-XX:[+-]Use\\w*GC") || argument.startsWith("-XX:MaxGCPauseMillis")) userGc = true;
+				else if(argument.startsWith("-XX:ActiveProcessorCount")) userProcessors = true;
+			}
+			List<String> arguments = new ArrayList<>();
+			// A tuned -Xms could be larger than the user's -Xmx, which the JVM refuses to start with
+			if(!userInitialHeap && !userMaxHeap) arguments.add("-Xms" + initialHeap + "m");
+			if(!userMaxHeap) arguments.add("-Xmx" + maxHeap + "m");
+			if(!userGc) arguments.addAll(gc.arguments);
+			if(!userProcessors && activeProcessors > 0) arguments.add("-XX:ActiveProcessorCount=" + activeProcessors);
+			return arguments;
+		}
+	}
+
+	public enum GarbageCollector {
+		DEFAULT,
+		G1("-XX:+UseG1GC"),
+		G1_LOW_PAUSE("-XX:+UseG1GC", "-XX:MaxGCPauseMillis=" + CLIENT_PAUSE_MILLIS),
+		ZGC("-XX:+UseZGC");
+
+		private final List<String> arguments;
+
+		GarbageCollector(String... arguments) {
+			this.arguments = List.of(arguments);
+		}
+	}
+}
@@ -0,0 +1,161 @@
+package smlauncher.process;
+
+import smlauncher.LogManager;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Copies a child process's output to a log file without ever blocking the process.
+ * <p>A reader thread drains the process pipe through a channel into a bounded queue. A separate writer thread takes
+ * the chunks and writes them to a {@link RotatingLogFile}, a {@link LogRingBuffer} and optionally the console. If the
+ * writer falls behind, for example because the console is stalled, chunks are dropped and counted instead of letting
+ * the pipe fill up.</p>
+ */
+public class LogPump {
+
+	private static final int CHUNK_SIZE = 1024 * 8;
+	private static final int QUEUE_CHUNKS = 1024;
+	private static final byte[] END = new byte[0];
+
+	private final InputStream input;
+	private final RotatingLogFile file;
+	private final LogRingBuffer ring;
+	private final boolean echo;
+	private final BlockingQueue<byte[]> queue = new ArrayBlockingQueue<>(QUEUE_CHUNKS);
+	private final AtomicLong dropped = new AtomicLong();
+	private final AtomicLong totalDropped = new AtomicLong();
+	private final Thread reader;
+	private final Thread writer;
+
+	/**
+	 * @param input the process output
+	 * @param file  the log file to write to, may be null
+	 * @param ring  the buffer for recent lines, may be null
+	 * @param echo  whether to copy the output to the launcher's console
+	 * @param name  the name used for the pump threads
+	 */
+	public LogPump(InputStream input, RotatingLogFile file, LogRingBuffer ring, boolean echo, String name) {
+		this.input = input;
+		this.file = file;
+		this.ring = ring;
+		this.echo = echo;
+		// Not daemons: the launcher has to stay alive to drain the pipe for as long as the process writes to it
+		reader = new Thread(this::read, name + "-Log-Reader");
+		writer = new Thread(this::write, name + "-Log-Writer");
+	}
+
+	/**
+	 * Starts pumping the combined output of a process. The process must have been started with
+	 * {@link ProcessBuilder#redirectErrorStream(boolean) redirectErrorStream(true)} to include its errors.
+	 */
+	public static LogPump attach(Process process, RotatingLogFile file, LogRingBuffer ring, boolean echo, String name) {
+		LogPump pump = new LogPump(process.getInputStream(), file, ring, echo, name);
+		pump.start();
+		return pump;
+	}
+
+	public void start() {
+		writer.start();
+		reader.start();
+	}
+
+	/**
+	 * Waits until all output has been read and written. Call after the process exited.
+	 *
+	 * @param timeoutMillis how long to wait at most
+	 */
+	public void await(long timeoutMillis) throws InterruptedException {
+		long end = System.currentTimeMillis() + timeoutMillis;
+		reader.join(Math.max(1, end - System.currentTimeMillis()));
+		writer.join(Math.max(1, end - System.currentTimeMillis()));
+	}
+
+	/**
+	 * @return the number of output bytes that were dropped because the writer could not keep up
+	 */
+	public long getDroppedBytes() {
+		return totalDropped.get();
+	}
+
+	private void read() {
+		try(ReadableByteChannel channel = Channels.newChannel(input)) {
+			ByteBuffer buffer = ByteBuffer.allocate(CHUNK_SIZE);
+			while(channel.read(buffer) != -1) {
+				if(buffer.position() == 0) continue;
+				buffer.flip();
+				byte[] chunk = new byte[buffer.remaining()];
+				buffer.get(chunk);
+				buffer.clear();
+				if(!queue.offer(chunk)) {
+					dropped.addAndGet(chunk.length);
+					totalDropped.addAndGet(chunk.length);
+				}
+			}
+		} catch(IOException exception) {
+			// The pipe closes when the process is killed
+		} finally {
+			try {
+				while(!queue.offer(END, 1, TimeUnit.SECONDS)) {
+					if(!writer.isAlive()) break;
+				}
+			} catch(InterruptedException exception) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	private void write() {
+		boolean fileFailed = false;
+		try {
+			while(true) {
+				byte[] chunk = queue.take();
+				long lost = dropped.getAndSet(0);
+				if(lost > 0) {
+					byte[] marker = ("\n[LAUNCHER] " + lost + " bytes of output were dropped because the log could not keep up\n").getBytes(StandardCharsets.UTF_8);
+					fileFailed = output(marker, fileFailed);
+				}
+				if(chunk == END) break;
+				fileFailed = output(chunk, fileFailed);
+				if(queue.isEmpty()) {
+					if(file != null && !fileFailed) {
+						try {
+							file.flush();
+						} catch(IOException exception) {
+							fileFailed = true;
+							LogManager.logWarning("Failed to write game log " + file.getFile().getName(), exception);
+						}
+					}
+					if(echo) System.out.flush();
+				}
+			}
+		} catch(InterruptedException exception) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * @return whether writing to the file has failed, after which only the console and ring buffer are fed
+	 */
+	private boolean output(byte[] chunk, boolean fileFailed) {
+		if(file != null && !fileFailed) {
+			try {
+				file.write(chunk, 0, chunk.length);
+			} catch(IOException exception) {
+				fileFailed = true;
+				LogManager.logWarning("Failed to write game log " + file.getFile().getName(), exception);
+			}
+		}
+		if(ring != null) ring.append(chunk, 0, chunk.length);
+		if(echo) System.out.write(chunk, 0, chunk.length);
+		return fileFailed;
+	}
+}
@@ -0,0 +1,66 @@
+package smlauncher.process;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps the most recent lines of a process's output in memory.
+ * <p>Every line gets a sequence number, so a view can poll {@link #getLinesSince(long)} and only receive the lines it
+ * has not shown yet.</p>
+ */
+public class LogRingBuffer {
+
+	private final String[] lines;
+	private final ByteArrayOutputStream partial = new ByteArrayOutputStream();
+	private long next;
+
+	public LogRingBuffer(int capacity) {
+		lines = new String[Math.max(1, capacity)];
+	}
+
+	/**
+	 * Appends raw output. Lines are split on '\n', an unfinished line is kept until its end arrives.
+	 */
+	public synchronized void append(byte[] bytes, int offset, int length) {
+		int start = offset;
+		for(int i = offset; i < offset + length; i++) {
+			if(bytes[i] == '\n') {
+				partial.write(bytes, start, i - start);
+				addLine(partial.toString(StandardCharsets.UTF_8));
+				partial.reset();
+				start = i + 1;
+			}
+		}
+		partial.write(bytes, start, offset + length - start);
+	}
+
+	public synchronized void addLine(String line) {
+		if(line.endsWith("\r")) line = line.substring(0, line.length() - 1);
+		lines[(int) (next % lines.length)] = line;
+		next++;
+	}
+
+	/**
+	 * @return the sequence number the next line will get
+	 */
+	public synchronized long getNextSequence() {
+		return next;
+	}
+
+	/**
+	 * @param sequence the first sequence number to return
+	 * @return the lines from the sequence number on, or all buffered lines if older ones were already overwritten
+	 */
+	public synchronized List<String> getLinesSince(long sequence) {
+		long first = Math.max(sequence, Math.max(0, next - lines.length));
+		List<String> result = new ArrayList<>((int) Math.max(0, next - first));
+		for(long i = first; i < next; i++) result.add(lines[(int) (i % lines.length)]);
+		return result;
+	}
+
+	public List<String> getLines() {
+		return getLinesSince(0);
+	}
+}
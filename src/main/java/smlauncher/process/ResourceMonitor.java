@@ -0,0 +1,192 @@
+package smlauncher.process;
+
+import oshi.SystemInfo;
+import oshi.software.os.OSProcess;
+import oshi.software.os.OperatingSystem;
+import smlauncher.LogManager;
+import smlauncher.metrics.LauncherMetrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Samples the CPU, memory, threads, open files and disk I/O of a child process at a fixed rate.
+ * <p>All monitors share one daemon sampling thread. Each sample refreshes a single OSHI process object instead of
+ * listing the system's processes, so sampling costs the launcher very little. The most recent samples are kept in a
+ * fixed-size ring buffer for graphs and exported as metrics. A warning is logged when the resident memory gets close to
+ * the maximum heap the process was started with.</p>
+ */
+public class ResourceMonitor {
+
+	public static final long DEFAULT_INTERVAL_MILLIS = 1000;
+	public static final int DEFAULT_CAPACITY = 300;
+	// Warn once the resident memory passes this share of -Xmx, and again only after it dropped below the reset share
+	private static final double WARN_RATIO = 0.9;
+	private static final double RESET_RATIO = 0.8;
+
+	private static final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "Resource-Monitor");
+		thread.setDaemon(true);
+		thread.setPriority(Thread.MIN_PRIORITY);
+		return thread;
+	});
+	private static OperatingSystem operatingSystem;
+	private static int processors;
+
+	private final Process process;
+	private final String name;
+	private final long maxHeapBytes;
+	private final Sample[] samples;
+	private long next;
+	private OSProcess osProcess;
+	private long lastCpuTime;
+	private long lastBytesRead;
+	private long lastBytesWritten;
+	private long lastTime;
+	private boolean warned;
+	private volatile ScheduledFuture<?> task;
+
+	/**
+	 * @param process      the process to monitor
+	 * @param name         the name used in warnings and metrics, such as "game" or "server"
+	 * @param maxHeapBytes the process's -Xmx, or 0 to not warn about memory
+	 * @param capacity     the number of samples to keep
+	 */
+	public ResourceMonitor(Process process, String name, long maxHeapBytes, int capacity) {
+		this.process = process;
+		this.name = name;
+		this.maxHeapBytes = maxHeapBytes;
+		samples = new Sample[Math.max(1, capacity)];
+	}
+
+	/**
+	 * Starts monitoring a process at the default rate and exports it as metrics.
+	 *
+	 * @param maxHeapMegabytes the process's -Xmx in MB, or 0 to not warn about memory
+	 */
+	public static ResourceMonitor start(Process process, String name, int maxHeapMegabytes) {
+		ResourceMonitor monitor = new ResourceMonitor(process, name, maxHeapMegabytes * 1024L * 1024L, DEFAULT_CAPACITY);
+		monitor.start(DEFAULT_INTERVAL_MILLIS);
+		LauncherMetrics.trackProcess(name, monitor);
+		return monitor;
+	}
+
+	public synchronized void start(long intervalMillis) {
+		if(task != null) return;
+		task = scheduler.scheduleAtFixedRate(this::sample, 0, intervalMillis, TimeUnit.MILLISECONDS);
+	}
+
+	public synchronized void stop() {
+		if(task == null) return;
+		task.cancel(false);
+		task = null;
+	}
+
+	public boolean isRunning() {
+		return task != null && process.isAlive();
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public long getMaxHeapBytes() {
+		return maxHeapBytes;
+	}
+
+	/**
+	 * @return the most recent sample, or null if none was taken yet
+	 */
+	public synchronized Sample getLatest() {
+		return next == 0 ? null : samples[(int) ((next - 1) % samples.length)];
+	}
+
+	/**
+	 * @return the buffered samples, oldest first
+	 */
+	public synchronized List<Sample> getSamples() {
+		long first = Math.max(0, next - samples.length);
+		List<Sample> result = new ArrayList<>((int) (next - first));
+		for(long i = first; i < next; i++) result.add(samples[(int) (i % samples.length)]);
+		return result;
+	}
+
+	private void sample() {
+		try {
+			if(!process.isAlive()) {
+				stop();
+				return;
+			}
+			long now = System.nanoTime();
+			if(osProcess == null) {
+				osProcess = getOperatingSystem().getProcess((int) process.pid());
+				if(osProcess == null) return;
+			} else if(!osProcess.updateAttributes()) {
+				stop();
+				return;
+			}
+			long cpuTime = osProcess.getKernelTime() + osProcess.getUserTime();
+			long bytesRead = osProcess.getBytesRead();
+			long bytesWritten = osProcess.getBytesWritten();
+			double cpu = 0;
+			long readRate = 0;
+			long writeRate = 0;
+			if(lastTime != 0) {
+				double seconds = (now - lastTime) / 1e9;
+				// Kernel and user time are in milliseconds of CPU time across all cores
+				cpu = Math.min(1, (cpuTime - lastCpuTime) / (seconds * 1000 * processors));
+				readRate = (long) (Math.max(0, bytesRead - lastBytesRead) / seconds);
+				writeRate = (long) (Math.max(0, bytesWritten - lastBytesWritten) / seconds);
+			}
+			lastTime = now;
+			lastCpuTime = cpuTime;
+			lastBytesRead = bytesRead;
+			lastBytesWritten = bytesWritten;
+			Sample sample = new Sample(System.currentTimeMillis(), cpu, osProcess.getResidentSetSize(), osProcess.getThreadCount(), osProcess.getOpenFiles(), readRate, writeRate);
+			synchronized(this) {
+				samples[(int) (next % samples.length)] = sample;
+				next++;
+			}
+			checkMemory(sample);
+		} catch(RuntimeException exception) {
+			// An exception would cancel the schedule silently, so say why sampling stopped
+			LogManager.logWarning("Failed to sample resources of " + name, exception);
+			stop();
+		}
+	}
+
+	private void checkMemory(Sample sample) {
+		if(maxHeapBytes <= 0) return;
+		if(!warned && sample.residentBytes() >= maxHeapBytes * WARN_RATIO) {
+			warned = true;
+			LogManager.logWarning("The " + name + " uses " + sample.residentBytes() / (1024 * 1024) + " MB of memory, close to its limit of " + maxHeapBytes / (1024 * 1024) + " MB. Consider raising the memory in the launcher settings.");
+		} else if(warned && sample.residentBytes() < maxHeapBytes * RESET_RATIO) warned = false;
+	}
+
+	private static synchronized OperatingSystem getOperatingSystem() {
+		if(operatingSystem == null) {
+			SystemInfo systemInfo = new SystemInfo();
+			operatingSystem = systemInfo.getOperatingSystem();
+			processors = Math.max(1, systemInfo.getHardware().getProcessor().getLogicalProcessorCount());
+		}
+		return operatingSystem;
+	}
+
+	/**
+	 * One measurement of a process.
+	 *
+	 * @param time             when the sample was taken
+	 * @param cpu              the share of all CPU cores used since the previous sample, from 0 to 1
+	 * @param residentBytes    the resident set size
+	 * @param threads          the number of threads
+	 * @param openFiles        the number of open files, or -1 if the platform does not report it
+	 * @param readBytesPerSec  the disk read rate since the previous sample
+	 * @param writeBytesPerSec the disk write rate since the previous sample
+	 */
+	public record Sample(long time, double cpu, long residentBytes, int threads, long openFiles, long readBytesPerSec, long writeBytesPerSec) {
+	}
+}
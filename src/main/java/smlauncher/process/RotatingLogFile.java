@@ -0,0 +1,87 @@
+package smlauncher.process;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A log file that is rotated once it reaches a size limit.
+ * <p>The current output goes to {@code <name>.log}. On rotation it becomes {@code <name>.1.log}, optionally gzip
+ * compressed to {@code <name>.1.log.gz}, and older files move up by one until the file limit is reached.</p>
+ */
+public class RotatingLogFile implements Closeable {
+
+	private final File directory;
+	private final String name;
+	private final long maxBytes;
+	private final int maxFiles;
+	private final boolean compress;
+	private OutputStream out;
+	private long size;
+
+	/**
+	 * @param directory the folder to write the logs to
+	 * @param name      the log name without extension
+	 * @param maxBytes  the size at which the log is rotated
+	 * @param maxFiles  the number of rotated logs to keep
+	 * @param compress  whether rotated logs are gzip compressed
+	 */
+	public RotatingLogFile(File directory, String name, long maxBytes, int maxFiles, boolean compress) {
+		this.directory = directory;
+		this.name = name;
+		this.maxBytes = Math.max(1024, maxBytes);
+		this.maxFiles = Math.max(0, maxFiles);
+		this.compress = compress;
+	}
+
+	public synchronized void write(byte[] bytes, int offset, int length) throws IOException {
+		if(out == null) open();
+		else if(size > 0 && size + length > maxBytes) rotate();
+		out.write(bytes, offset, length);
+		size += length;
+	}
+
+	public synchronized void flush() throws IOException {
+		if(out != null) out.flush();
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		if(out != null) {
+			out.close();
+			out = null;
+		}
+	}
+
+	public File getFile() {
+		return new File(directory, name + ".log");
+	}
+
+	private void open() throws IOException {
+		if(!directory.exists()) directory.mkdirs();
+		File file = getFile();
+		size = file.length();
+		out = new BufferedOutputStream(new FileOutputStream(file, true), 1024 * 64);
+	}
+
+	private void rotate() throws IOException {
+		close();
+		String extension = compress ? ".log.gz" : ".log";
+		File oldest = new File(directory, name + "." + maxFiles + extension);
+		Files.deleteIfExists(oldest.toPath());
+		for(int i = maxFiles - 1; i >= 1; i--) {
+			File file = new File(directory, name + "." + i + extension);
+			if(file.exists()) Files.move(file.toPath(), new File(directory, name + "." + (i + 1) + extension).toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+		File current = getFile();
+		if(maxFiles == 0) Files.deleteIfExists(current.toPath());
+		else if(compress) {
+			try(InputStream in = new FileInputStream(current); OutputStream gzip = new GZIPOutputStream(new FileOutputStream(new File(directory, name + ".1" + extension)), 1024 * 64)) {
+				in.transferTo(gzip);
+			}
+			Files.delete(current.toPath());
+		} else Files.move(current.toPath(), new File(directory, name + ".1" + extension).toPath(), StandardCopyOption.REPLACE_EXISTING);
+		open();
+	}
+}
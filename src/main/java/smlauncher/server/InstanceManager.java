@@ -0,0 +1,199 @@
+package smlauncher.server;
+
+import smlauncher.LaunchSettings;
+import smlauncher.LogManager;
+import smlauncher.process.JvmTuner;
+import smlauncher.process.RotatingLogFile;
+import smlauncher.util.OperatingSystem;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Runs several dedicated servers from one launcher, each under its own {@link ServerSupervisor}.
+ * <p>The host is partitioned so the servers do not starve each other. Servers without a fixed memory setting split the
+ * heap budget left after the fixed ones, and servers without a CPU list split the processors no other server was
+ * pinned to into equal blocks. On Linux each server is pinned to its processors with taskset, elsewhere only its
+ * processor count is limited.</p>
+ */
+public class InstanceManager {
+
+	private final List<ServerInstance> instances;
+	private final Predicate<File> modernJava;
+	private final CommandBuilder commandBuilder;
+	private final List<ServerSupervisor> supervisors = new ArrayList<>();
+
+	/**
+	 * @param modernJava     whether the game in an install folder runs on Java 25
+	 * @param commandBuilder builds the server command for an install folder, port and JVM tuning
+	 */
+	public InstanceManager(List<ServerInstance> instances, Predicate<File> modernJava, CommandBuilder commandBuilder) {
+		this.instances = instances;
+		this.modernJava = modernJava;
+		this.commandBuilder = commandBuilder;
+	}
+
+	/**
+	 * Starts all servers and blocks until every supervisor stopped.
+	 */
+	public void run() {
+		JvmTuner.Host host = JvmTuner.readHost();
+		List<Partition> partitions = partition(host, instances);
+		boolean taskset = OperatingSystem.getCurrent() == OperatingSystem.LINUX && isOnPath("taskset");
+		if(!taskset) System.out.println("[INSTANCES] CPU pinning needs taskset on Linux, only limiting the processor count of each server");
+		List<Thread> threads = new ArrayList<>();
+		for(int i = 0; i < instances.size(); i++) {
+			ServerInstance instance = instances.get(i);
+			Partition partition = partitions.get(i);
+			System.out.println("[INSTANCES] " + instance.name() + ": port " + instance.port() + ", " + (instance.memory() > 0 ? instance.memory() + " MB" : "up to " + partition.maxHeap() + " MB") + ", processors " + partition.cpus());
+			ServerSupervisor supervisor = new ServerSupervisor(() -> getCommand(host, instance, partition, taskset), instance.installDir(), instance.port());
+			supervisor.setName(instance.name());
+			supervisor.setLogFile(new RotatingLogFile(new File(instance.installDir(), "logs"), "server", LaunchSettings.getGameLogMaxSize() * 1024L * 1024L, LaunchSettings.getGameLogFiles(), LaunchSettings.isGameLogCompressed()));
+			// The standby runs a class of the launcher, which Java 8 cannot load
+			boolean standby = instance.warmStandby() && modernJava.test(instance.installDir());
+			if(instance.warmStandby() && !standby) System.out.println("[INSTANCES] " + instance.name() + ": warm standby needs Java 25, it is not used for this build");
+			supervisor.setWarmStandby(standby);
+			supervisor.setRestartInterval(TimeUnit.MINUTES.toMillis(instance.restartInterval()));
+			synchronized(supervisors) {
+				supervisors.add(supervisor);
+			}
+			Thread thread = new Thread(supervisor::run, "Instance-" + instance.name());
+			thread.start();
+			threads.add(thread);
+		}
+		for(Thread thread : threads) {
+			try {
+				thread.join();
+			} catch(InterruptedException exception) {
+				Thread.currentThread().interrupt();
+				stop();
+				return;
+			}
+		}
+	}
+
+	public void stop() {
+		synchronized(supervisors) {
+			for(ServerSupervisor supervisor : supervisors) supervisor.stop();
+		}
+	}
+
+	/**
+	 * @return the supervisors of the started servers, in the order of the instances
+	 */
+	public List<ServerSupervisor> getSupervisors() {
+		synchronized(supervisors) {
+			return new ArrayList<>(supervisors);
+		}
+	}
+
+	private List<String> getCommand(JvmTuner.Host host, ServerInstance instance, Partition partition, boolean taskset) {
+		JvmTuner.Tuning tuning;
+		if(instance.memory() > 0) {
+			JvmTuner.Tuning manual = JvmTuner.manual(instance.memory());
+			tuning = new JvmTuner.Tuning(manual.maxHeap(), manual.initialHeap(), manual.gc(), partition.cpus().size(), manual.reason());
+		} else {
+			long database = JvmTuner.getFolderSize(new File(instance.installDir(), "server-database"));
+			tuning = JvmTuner.tuneShare(host, modernJava.test(instance.installDir()), database, partition.maxHeap(), partition.cpus().size());
+		}
+		List<String> command = new ArrayList<>();
+		if(taskset) {
+			// taskset runs the JVM in its own process, so the supervisor still watches the server itself
+			command.add("taskset");
+			command.add("-c");
+			command.add(formatCpus(partition.cpus()));
+		}
+		command.addAll(commandBuilder.build(instance.installDir(), instance.port(), tuning, JvmTuner.splitArguments(instance.jvmArgs())));
+		return command;
+	}
+
+	/**
+	 * Splits the host's heap budget and processors between the instances.
+	 */
+	static List<Partition> partition(JvmTuner.Host host, List<ServerInstance> instances) {
+		int budget = JvmTuner.getHeapBudget(host);
+		int shared = 0;
+		int sharedCpus = 0;
+		List<Integer> free = new ArrayList<>();
+		for(int i = 0; i < Math.max(1, host.processors()); i++) free.add(i);
+		for(ServerInstance instance : instances) {
+			if(instance.memory() > 0) budget -= instance.memory();
+			else shared++;
+			if(instance.cpus().isEmpty()) sharedCpus++;
+			else free.removeAll(parseCpus(instance.cpus()));
+		}
+		// If the fixed lists took every processor, the other servers share all of them
+		if(free.isEmpty()) for(int i = 0; i < Math.max(1, host.processors()); i++) free.add(i);
+		int heapShare = shared == 0 ? 0 : Math.max(JvmTuner.MIN_HEAP, budget / shared);
+		if(shared > 0 && budget / shared < JvmTuner.MIN_HEAP) LogManager.logWarning("Not enough memory for " + instances.size() + " servers, each gets the minimum of " + JvmTuner.MIN_HEAP + " MB");
+		int block = sharedCpus == 0 ? 0 : Math.max(1, free.size() / sharedCpus);
+		List<Partition> partitions = new ArrayList<>();
+		int next = 0;
+		for(ServerInstance instance : instances) {
+			List<Integer> cpus;
+			if(instance.cpus().isEmpty()) {
+				cpus = new ArrayList<>();
+				// With more servers than processors, blocks wrap around and servers share processors
+				for(int i = 0; i < block; i++) cpus.add(free.get((next + i) % free.size()));
+				next = (next + block) % free.size();
+			} else cpus = parseCpus(instance.cpus());
+			partitions.add(new Partition(instance.memory() > 0 ? instance.memory() : heapShare, cpus));
+		}
+		return partitions;
+	}
+
+	/**
+	 * @param cpus a list such as "0-3,8"
+	 */
+	static List<Integer> parseCpus(String cpus) {
+		List<Integer> result = new ArrayList<>();
+		for(String part : cpus.split(",")) {
+			part = part.trim();
+			if(part.isEmpty()) continue;
+			try {
+				int dash = part.indexOf('-');
+				if(dash < 0) result.add(Integer.parseInt(part));
+				else {
+					int last = Integer.parseInt(part.substring(dash + 1).trim());
+					for(int i = Integer.parseInt(part.substring(0, dash).trim()); i <= last; i++) result.add(i);
+				}
+			} catch(NumberFormatException exception) {
+				throw new IllegalArgumentException("Invalid processor list " + cpus, exception);
+			}
+		}
+		if(result.isEmpty()) throw new IllegalArgumentException("Invalid processor list " + cpus);
+		return result;
+	}
+
+	private static String formatCpus(List<Integer> cpus) {
+		List<String> parts = new ArrayList<>(cpus.size());
+		for(int cpu : cpus) parts.add(String.valueOf(cpu));
+		return String.join(",", parts);
+	}
+
+	private static boolean isOnPath(String command) {
+		String path = System.getenv("PATH");
+		if(path == null) return false;
+		for(String folder : path.split(File.pathSeparator)) {
+			if(new File(folder, command).canExecute()) return true;
+		}
+		return false;
+	}
+
+	@FunctionalInterface
+	public interface CommandBuilder {
+		List<String> build(File installDir, int port, JvmTuner.Tuning tuning, List<String> userArguments);
+	}
+
+	/**
+	 * The share of the host one instance gets.
+	 *
+	 * @param maxHeap the heap the server may grow to in MB
+	 * @param cpus    the processors the server runs on
+	 */
+	record Partition(int maxHeap, List<Integer> cpus) {
+	}
+}
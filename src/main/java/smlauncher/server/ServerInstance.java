@@ -0,0 +1,79 @@
+package smlauncher.server;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import smlauncher.fileio.TextFileUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The settings profile of one server in multi-instance mode.
+ * <p>Each profile is a JSON file in the instances folder, for example:</p>
+ * <pre>
+ * {
+ *     "installDir": "/srv/starmade/survival",
+ *     "port": 4242,
+ *     "memory": 0,
+ *     "cpus": "0-3",
+ *     "jvmArgs": "",
+ *     "warmStandby": false,
+ *     "restartInterval": 0
+ * }
+ * </pre>
+ * <p>Only the install folder and port are required. Memory 0 and an empty CPU list share the host between the instances
+ * that do not set them.</p>
+ *
+ * @param name            the file name of the profile
+ * @param installDir      the game install folder
+ * @param port            the port the server listens on
+ * @param memory          the maximum heap in MB, or 0 for an equal share of the host's memory
+ * @param cpus            the processors to pin the server to, such as "0-3,8", or empty for an equal share
+ * @param jvmArgs         additional JVM arguments, which override the tuned ones
+ * @param warmStandby     whether to keep a standby JVM for restarts
+ * @param restartInterval the minutes between scheduled restarts, or 0 for none
+ */
+public record ServerInstance(String name, File installDir, int port, int memory, String cpus, String jvmArgs, boolean warmStandby, int restartInterval) {
+
+	public static final File FOLDER = new File("instances");
+
+	public static ServerInstance read(File file) throws IOException {
+		String name = file.getName().replaceFirst("\\.json$", "");
+		try {
+			JSONObject json = new JSONObject(TextFileUtil.readText(file));
+			if(!json.has("installDir") || !json.has("port")) throw new IOException("Instance " + name + " needs an installDir and a port");
+			String cpus = json.optString("cpus", "").trim();
+			if(!cpus.isEmpty()) InstanceManager.parseCpus(cpus);
+			return new ServerInstance(name, new File(json.getString("installDir")), json.getInt("port"), json.optInt("memory", 0), cpus, json.optString("jvmArgs", ""), json.optBoolean("warmStandby", false), json.optInt("restartInterval", 0));
+		} catch(JSONException exception) {
+			throw new IOException("Instance " + name + " is not valid JSON: " + exception.getMessage(), exception);
+		} catch(IllegalArgumentException exception) {
+			throw new IOException("Instance " + name + ": " + exception.getMessage(), exception);
+		}
+	}
+
+	/**
+	 * Reads all profiles in the instances folder, sorted by name.
+	 *
+	 * @throws IOException if a profile is invalid, or two profiles share an install folder or port
+	 */
+	public static List<ServerInstance> readAll() throws IOException {
+		File[] files = FOLDER.listFiles((dir, name) -> name.endsWith(".json"));
+		List<ServerInstance> instances = new ArrayList<>();
+		if(files == null) return instances;
+		Set<File> installDirs = new HashSet<>();
+		Set<Integer> ports = new HashSet<>();
+		for(File file : files) {
+			ServerInstance instance = read(file);
+			if(!installDirs.add(instance.installDir().getAbsoluteFile())) throw new IOException("Instance " + instance.name() + " uses the same install folder as another instance");
+			if(!ports.add(instance.port())) throw new IOException("Instance " + instance.name() + " uses the same port as another instance");
+			instances.add(instance);
+		}
+		instances.sort((a, b) -> a.name().compareTo(b.name()));
+		return instances;
+	}
+}
@@ -0,0 +1,447 @@
+package smlauncher.server;
+
+import smlauncher.LogManager;
+import smlauncher.metrics.LauncherMetrics;
+import smlauncher.process.JvmTuner;
+import smlauncher.process.LogPump;
+import smlauncher.process.LogRingBuffer;
+import smlauncher.process.ResourceMonitor;
+import smlauncher.process.RotatingLogFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Runs a dedicated server process and keeps it alive.
+ * <p>Once the server had time to start, its port is probed over TCP. A server that exits with an error, or fails
+ * several probes in a row, is restarted after an exponential backoff. The backoff resets once the server stayed up for
+ * a while. A server that exits with code 0 was shut down on purpose and is not restarted.</p>
+ * <p>Optionally the server is restarted on a schedule, and a warm standby JVM is kept ready once the server is up, so a
+ * restart only has to load the world.</p>
+ */
+public class ServerSupervisor {
+
+	private static final int EXIT_HISTORY_SIZE = 20;
+	private static final String SCHEDULED_RESTART = "Scheduled restart";
+	/**
+	 * How often a waiting standby is compared against the current server command. Building the command measures the
+	 * server database, so it is not done on every probe.
+	 */
+	private static final long STANDBY_CHECK_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+	private final Supplier<List<String>> command;
+	private final File workingDirectory;
+	private final int port;
+	private final Deque<ExitRecord> exitHistory = new ArrayDeque<>();
+	private final LogRingBuffer log = new LogRingBuffer(2000);
+	private RotatingLogFile logFile;
+	private String name = "server";
+	private String label = "Server";
+	private String prefix = "[SUPERVISOR] ";
+	private boolean echo = true;
+	private LogPump pump;
+	private volatile ResourceMonitor monitor;
+	private boolean warmStandby;
+	private volatile WarmStandby standby;
+	private long restartIntervalMillis;
+	private long startupGraceMillis = TimeUnit.MINUTES.toMillis(3);
+	private long probeIntervalMillis = TimeUnit.SECONDS.toMillis(10);
+	private int probeTimeoutMillis = 5000;
+	private int maxProbeFailures = 3;
+	private long minBackoffMillis = TimeUnit.SECONDS.toMillis(5);
+	private long maxBackoffMillis = TimeUnit.MINUTES.toMillis(5);
+	private long stableRunMillis = TimeUnit.MINUTES.toMillis(10);
+	private long shutdownTimeoutMillis = TimeUnit.SECONDS.toMillis(60);
+	private int maxRestarts = -1;
+	private boolean restartOnCleanExit;
+	private volatile State state = State.STOPPED;
+	private volatile Process process;
+	private volatile boolean stopRequested;
+	private volatile int restartCount;
+
+	/**
+	 * @param command          supplies the server command line, called again before every restart so setting changes
+	 *                         are picked up
+	 * @param workingDirectory the directory to run the server in
+	 * @param port             the port the server listens on
+	 */
+	public ServerSupervisor(Supplier<List<String>> command, File workingDirectory, int port) {
+		this.command = command;
+		this.workingDirectory = workingDirectory;
+		this.port = port;
+	}
+
+	/**
+	 * Starts the server and supervises it until {@link #stop()} is called, the server shuts down cleanly or the restart
+	 * limit is reached. Blocks the calling thread.
+	 */
+	public void run() {
+		stopRequested = false;
+		Thread shutdownHook = new Thread(this::stop, "Server-Supervisor-Shutdown");
+		Runtime.getRuntime().addShutdownHook(shutdownHook);
+		int crashes = 0;
+		try {
+			while(!stopRequested) {
+				long startTime = System.currentTimeMillis();
+				String reason;
+				int exitCode;
+				try {
+					setState(State.STARTING);
+					process = startProcess();
+					System.out.println(prefix + "Started server (pid " + process.pid() + ") on port " + port);
+					reason = watch(process, startTime);
+					exitCode = process.exitValue();
+				} catch(IOException exception) {
+					LogManager.logException("Failed to start " + name, exception);
+					reason = "Failed to start: " + exception.getMessage();
+					exitCode = -1;
+				} catch(InterruptedException exception) {
+					Thread.currentThread().interrupt();
+					stop();
+					break;
+				}
+				awaitLog();
+				long endTime = System.currentTimeMillis();
+				recordExit(new ExitRecord(exitCode, startTime, endTime, reason));
+				System.out.println(prefix + "Server exited with code " + exitCode + " after " + (endTime - startTime) / 1000 + "s (" + reason + ")");
+
+				if(stopRequested) break;
+				if(reason.equals(SCHEDULED_RESTART)) {
+					System.out.println(prefix + "Restarting server as scheduled");
+					crashes = 0;
+					continue;
+				}
+				if(exitCode == 0 && !restartOnCleanExit && reason.equals("Exited")) {
+					System.out.println(prefix + "Server shut down cleanly, not restarting");
+					break;
+				}
+				if(maxRestarts >= 0 && restartCount >= maxRestarts) {
+					LogManager.logWarning(label + " stopped " + (restartCount + 1) + " times, giving up after " + maxRestarts + " restarts");
+					break;
+				}
+				// Only crashes in quick succession grow the backoff
+				crashes = endTime - startTime >= stableRunMillis ? 1 : crashes + 1;
+				long backoff = getBackoff(crashes);
+				LogManager.logWarning(label + " stopped unexpectedly (" + reason + ", exit code " + exitCode + "), restarting in " + backoff / 1000 + "s");
+				setState(State.BACKOFF);
+				try {
+					sleep(backoff);
+				} catch(InterruptedException exception) {
+					Thread.currentThread().interrupt();
+					break;
+				}
+				if(stopRequested) break;
+				restartCount++;
+				LauncherMetrics.GAME_RESTARTS.inc();
+			}
+		} finally {
+			setState(State.STOPPED);
+			discardStandby();
+			if(logFile != null) {
+				try {
+					logFile.close();
+				} catch(IOException exception) {
+					LogManager.logWarning("Failed to close server log", exception);
+				}
+			}
+			try {
+				Runtime.getRuntime().removeShutdownHook(shutdownHook);
+			} catch(IllegalStateException ignored) {
+				// Already shutting down
+			}
+		}
+	}
+
+	/**
+	 * Stops the server and ends supervision. The server gets time to save before it is killed.
+	 */
+	public void stop() {
+		stopRequested = true;
+		synchronized(this) {
+			notifyAll();
+		}
+		Process current = process;
+		if(current != null && current.isAlive()) terminate(current);
+		discardStandby();
+	}
+
+	protected Process startProcess() throws IOException {
+		List<String> commandComponents;
+		Process process = null;
+		WarmStandby ready = standby;
+		standby = null;
+		List<String> current = command.get();
+		if(ready != null && !ready.isCurrent(current)) {
+			System.out.println(prefix + "The server command or game changed since the standby started, starting a new server instead");
+			ready.discard();
+			ready = null;
+		}
+		if(ready != null && (process = ready.activate()) != null) {
+			commandComponents = ready.getCommand();
+			System.out.println(prefix + "Handing over to the standby server");
+		} else {
+			commandComponents = current;
+			System.out.println(prefix + "Command: " + String.join(" ", commandComponents));
+			ProcessBuilder builder = new ProcessBuilder(commandComponents);
+			builder.directory(workingDirectory);
+			builder.redirectErrorStream(true);
+			process = builder.start();
+		}
+		log.addLine(prefix + "Started server (pid " + process.pid() + ")");
+		if(monitor != null) monitor.stop();
+		monitor = ResourceMonitor.start(process, name, JvmTuner.getMaxHeapMegabytes(commandComponents));
+		pump = LogPump.attach(process, logFile, log, echo, label.replace(' ', '-'));
+		return process;
+	}
+
+	private void awaitLog() {
+		if(pump == null) return;
+		try {
+			pump.await(5000);
+			if(pump.getDroppedBytes() > 0) LogManager.logWarning("Dropped " + pump.getDroppedBytes() + " bytes of server output because the log could not keep up");
+		} catch(InterruptedException exception) {
+			Thread.currentThread().interrupt();
+		}
+		pump = null;
+	}
+
+	/**
+	 * Waits for the process to exit, probing its port once the startup grace period is over.
+	 *
+	 * @return why the process stopped
+	 */
+	private String watch(Process process, long startTime) throws InterruptedException {
+		int failures = 0;
+		long standbyChecked = System.currentTimeMillis();
+		while(!process.waitFor(probeIntervalMillis, TimeUnit.MILLISECONDS)) {
+			if(stopRequested) {
+				terminate(process);
+				return "Stopped";
+			}
+			if(restartIntervalMillis > 0 && System.currentTimeMillis() - startTime >= restartIntervalMillis) {
+				terminate(process);
+				return SCHEDULED_RESTART;
+			}
+			if(System.currentTimeMillis() - startTime < startupGraceMillis) continue;
+			if(probe()) {
+				if(state != State.RUNNING) {
+					System.out.println(prefix + "Server is accepting connections on port " + port);
+					// Only now, so the standby does not slow down the world load
+					if(warmStandby && standby == null) startStandby();
+				} else if(standby != null && System.currentTimeMillis() - standbyChecked >= STANDBY_CHECK_MILLIS) {
+					standbyChecked = System.currentTimeMillis();
+					refreshStandby();
+				}
+				failures = 0;
+				setState(State.RUNNING);
+			} else {
+				failures++;
+				setState(State.UNHEALTHY);
+				LogManager.logWarning(label + " health check failed (" + failures + "/" + maxProbeFailures + ")");
+				if(failures >= maxProbeFailures) {
+					terminate(process);
+					return "Health check failed";
+				}
+			}
+		}
+		return stopRequested ? "Stopped" : "Exited";
+	}
+
+	private void startStandby() {
+		try {
+			standby = WarmStandby.start(command.get(), workingDirectory);
+			if(standby != null) System.out.println(prefix + "Started standby server (pid " + standby.getProcess().pid() + ")");
+		} catch(IOException exception) {
+			LogManager.logWarning("Failed to start standby server", exception);
+		}
+	}
+
+	/**
+	 * Replaces the standby if the server command changed since it started, for example after a settings change.
+	 */
+	private void refreshStandby() {
+		WarmStandby current = standby;
+		if(current == null || current.isCurrent(command.get())) return;
+		System.out.println(prefix + "The server command or game changed, replacing the standby server");
+		discardStandby();
+		startStandby();
+	}
+
+	private void discardStandby() {
+		WarmStandby current = standby;
+		standby = null;
+		if(current != null) current.discard();
+	}
+
+	private boolean probe() {
+		try(Socket socket = new Socket()) {
+			socket.connect(new InetSocketAddress("127.0.0.1", port), probeTimeoutMillis);
+			return true;
+		} catch(IOException exception) {
+			return false;
+		}
+	}
+
+	private void terminate(Process process) {
+		process.destroy();
+		try {
+			if(!process.waitFor(shutdownTimeoutMillis, TimeUnit.MILLISECONDS)) {
+				LogManager.logWarning(label + " did not stop within " + shutdownTimeoutMillis / 1000 + "s, killing it");
+				process.destroyForcibly();
+				process.waitFor(10, TimeUnit.SECONDS);
+			}
+		} catch(InterruptedException exception) {
+			process.destroyForcibly();
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private long getBackoff(int crashes) {
+		long backoff = minBackoffMillis << Math.min(crashes - 1, 20);
+		return Math.min(backoff, maxBackoffMillis);
+	}
+
+	private synchronized void sleep(long millis) throws InterruptedException {
+		long end = System.currentTimeMillis() + millis;
+		long remaining;
+		while(!stopRequested && (remaining = end - System.currentTimeMillis()) > 0) wait(remaining);
+	}
+
+	private void setState(State state) {
+		this.state = state;
+	}
+
+	private synchronized void recordExit(ExitRecord record) {
+		exitHistory.addLast(record);
+		while(exitHistory.size() > EXIT_HISTORY_SIZE) exitHistory.removeFirst();
+	}
+
+	public State getState() {
+		return state;
+	}
+
+	/**
+	 * @return the number of times the server was restarted after a crash or failed health check
+	 */
+	public int getRestartCount() {
+		return restartCount;
+	}
+
+	/**
+	 * @return the most recent exits, oldest first
+	 */
+	public synchronized List<ExitRecord> getExitHistory() {
+		return new ArrayList<>(exitHistory);
+	}
+
+	/**
+	 * @return the most recent lines of server output, kept across restarts
+	 */
+	public LogRingBuffer getLog() {
+		return log;
+	}
+
+	/**
+	 * @param logFile the file to write the server output to, shared across restarts and closed when supervision ends
+	 */
+	public void setLogFile(RotatingLogFile logFile) {
+		this.logFile = logFile;
+	}
+
+	/**
+	 * @param name the instance name used in messages and metrics, when a launcher supervises several servers
+	 */
+	public void setName(String name) {
+		this.name = "server-" + name;
+		label = "Server " + name;
+		prefix = "[SUPERVISOR " + name + "] ";
+	}
+
+	/**
+	 * @param echo whether to copy the server output to the launcher's console
+	 */
+	public void setEcho(boolean echo) {
+		this.echo = echo;
+	}
+
+	/**
+	 * @return the resource monitor of the current server process, or null before the first start
+	 */
+	public ResourceMonitor getMonitor() {
+		return monitor;
+	}
+
+	public Process getProcess() {
+		return process;
+	}
+
+	public int getPort() {
+		return port;
+	}
+
+	public void setStartupGrace(long millis) {
+		startupGraceMillis = millis;
+	}
+
+	public void setProbeInterval(long millis) {
+		probeIntervalMillis = millis;
+	}
+
+	public void setMaxProbeFailures(int maxProbeFailures) {
+		this.maxProbeFailures = Math.max(1, maxProbeFailures);
+	}
+
+	public void setBackoff(long minMillis, long maxMillis) {
+		minBackoffMillis = minMillis;
+		maxBackoffMillis = Math.max(minMillis, maxMillis);
+	}
+
+	/**
+	 * @param maxRestarts the number of restarts before giving up, or -1 to restart forever
+	 */
+	public void setMaxRestarts(int maxRestarts) {
+		this.maxRestarts = maxRestarts;
+	}
+
+	public void setRestartOnCleanExit(boolean restartOnCleanExit) {
+		this.restartOnCleanExit = restartOnCleanExit;
+	}
+
+	/**
+	 * @param warmStandby whether to keep a second server JVM ready to take over on the next restart
+	 */
+	public void setWarmStandby(boolean warmStandby) {
+		this.warmStandby = warmStandby;
+		if(!warmStandby) discardStandby();
+	}
+
+	/**
+	 * @param millis how long the server runs before it is restarted, or 0 to never restart it on a schedule
+	 */
+	public void setRestartInterval(long millis) {
+		restartIntervalMillis = millis;
+	}
+
+	public enum State {
+		STARTING, RUNNING, UNHEALTHY, BACKOFF, STOPPED
+	}
+
+	/**
+	 * A finished server run.
+	 *
+	 * @param exitCode  the process exit code, or -1 if it failed to start
+	 * @param startTime when the server was started
+	 * @param endTime   when the server exited
+	 * @param reason    why the server stopped
+	 */
+	public record ExitRecord(int exitCode, long startTime, long endTime, String reason) {
+	}
+}
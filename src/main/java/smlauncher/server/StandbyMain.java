@@ -0,0 +1,79 @@
+package smlauncher.server;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * The entry point of a standby server JVM.
+ * <p>Loads the classes of the game jar, then waits for a start line on its input before running the game's main class
+ * with the remaining arguments. Runs on the game's class path instead of the launcher's, so it must only use JDK
+ * classes and must not contain lambdas or nested classes, which would be compiled to separate class files.</p>
+ */
+public final class StandbyMain {
+
+	public static final String START = "start";
+
+	private StandbyMain() {
+	}
+
+	/**
+	 * @param args the game jar, followed by the game arguments
+	 */
+	public static void main(String[] args) throws Throwable {
+		long start = System.currentTimeMillis();
+		String mainClass;
+		int loaded = 0;
+		try(JarFile jar = new JarFile(args[0])) {
+			mainClass = jar.getManifest() == null ? null : jar.getManifest().getMainAttributes().getValue("Main-Class");
+			if(mainClass == null) throw new IllegalStateException(args[0] + " has no Main-Class");
+			ClassLoader loader = StandbyMain.class.getClassLoader();
+			Enumeration<JarEntry> entries = jar.entries();
+			while(entries.hasMoreElements()) {
+				String name = entries.nextElement().getName();
+				if(!name.endsWith(".class") || name.startsWith("META-INF/") || name.endsWith("module-info.class")) continue;
+				try {
+					// Loads without running static initializers, the game runs those itself once started
+					Class.forName(name.substring(0, name.length() - 6).replace('/', '.'), false, loader);
+					loaded++;
+				} catch(ClassNotFoundException | LinkageError ignored) {
+					// Classes of optional dependencies that are not on the class path
+				}
+			}
+		}
+		System.out.println("[STANDBY] Loaded " + loaded + " classes in " + (System.currentTimeMillis() - start) + "ms, waiting for the server to be needed");
+		System.out.flush();
+		if(!awaitStart(System.in)) {
+			// The launcher is gone
+			System.exit(0);
+		}
+		Method main = Class.forName(mainClass).getMethod("main", String[].class);
+		try {
+			main.invoke(null, (Object) Arrays.copyOfRange(args, 1, args.length));
+		} catch(InvocationTargetException exception) {
+			throw exception.getCause();
+		}
+	}
+
+	/**
+	 * Reads lines byte by byte, so no input meant for the game's console is buffered here.
+	 *
+	 * @return whether the start line was read before the input ended
+	 */
+	private static boolean awaitStart(InputStream input) throws IOException {
+		StringBuilder line = new StringBuilder();
+		int read;
+		while((read = input.read()) != -1) {
+			if(read == '\n') {
+				if(line.toString().trim().equals(START)) return true;
+				line.setLength(0);
+			} else line.append((char) read);
+		}
+		return false;
+	}
+}
@@ -0,0 +1,134 @@
+package smlauncher.server;
+
+import smlauncher.LogManager;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A server JVM that was started ahead of time and waits to take over from the live server.
+ * <p>The standby runs the server command with {@link StandbyMain} in front of the game's main class. It loads the game
+ * classes right away and only starts the game, and with it the world load, once it is activated. Activating it after
+ * the live server exited saves the JVM start and class loading on a restart.</p>
+ */
+public class WarmStandby {
+
+	private static final File CLASS_PATH = new File("standby");
+
+	private final Process process;
+	private final List<String> command;
+	private final File jar;
+	private final long jarModified;
+
+	private WarmStandby(Process process, List<String> command, File jar) {
+		this.process = process;
+		this.command = command;
+		this.jar = jar;
+		jarModified = jar.lastModified();
+	}
+
+	/**
+	 * @param command          the normal server command, running "-jar StarMade.jar"
+	 * @param workingDirectory the directory to run the server in
+	 * @return the waiting standby, or null if the command does not run a jar
+	 */
+	public static WarmStandby start(List<String> command, File workingDirectory) throws IOException {
+		File jar = new File(workingDirectory, "StarMade.jar");
+		List<String> standbyCommand = toStandbyCommand(command, jar);
+		if(standbyCommand == null) return null;
+		ProcessBuilder builder = new ProcessBuilder(standbyCommand);
+		builder.directory(workingDirectory);
+		builder.redirectErrorStream(true);
+		return new WarmStandby(builder.start(), command, jar);
+	}
+
+	/**
+	 * Rewrites "-jar &lt;jar&gt;" to run {@link StandbyMain} with the jar on the class path. The jar's manifest class
+	 * path still applies.
+	 */
+	static List<String> toStandbyCommand(List<String> command, File jar) throws IOException {
+		int index = command.indexOf("-jar");
+		if(index < 0 || index + 1 >= command.size()) return null;
+		List<String> standbyCommand = new ArrayList<>();
+		for(String argument : command.subList(0, index)) {
+			// The class path differs from the one the cache was created for, and the standby only commits the heap it uses
+			if(argument.startsWith("-XX:AOTCache") || argument.startsWith("-Xms")) continue;
+			standbyCommand.add(argument);
+		}
+		standbyCommand.add("-cp");
+		standbyCommand.add(command.get(index + 1) + File.pathSeparator + getClassPath().getAbsolutePath());
+		standbyCommand.add(StandbyMain.class.getName());
+		standbyCommand.add(jar.getAbsolutePath());
+		standbyCommand.addAll(command.subList(index + 2, command.size()));
+		return standbyCommand;
+	}
+
+	/**
+	 * Copies {@link StandbyMain} out of the launcher, so the standby does not get the launcher's libraries on its class
+	 * path.
+	 */
+	private static synchronized File getClassPath() throws IOException {
+		String resource = StandbyMain.class.getName().replace('.', '/') + ".class";
+		File target = new File(CLASS_PATH, resource);
+		try(InputStream input = WarmStandby.class.getClassLoader().getResourceAsStream(resource)) {
+			if(input == null) throw new IOException("Missing " + resource);
+			Files.createDirectories(target.getParentFile().toPath());
+			Files.copy(input, target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+		return CLASS_PATH;
+	}
+
+	/**
+	 * Starts the game in the standby. Only call once the live server exited, the standby binds the same port.
+	 *
+	 * @return the running server, or null if the standby died while waiting
+	 */
+	public Process activate() {
+		if(!process.isAlive()) {
+			LogManager.logWarning("Standby server exited with code " + process.exitValue() + " before it was needed");
+			return null;
+		}
+		try {
+			OutputStream input = process.getOutputStream();
+			input.write((StandbyMain.START + "\n").getBytes(StandardCharsets.UTF_8));
+			input.flush();
+			return process;
+		} catch(IOException exception) {
+			LogManager.logWarning("Failed to activate standby server", exception);
+			discard();
+			return null;
+		}
+	}
+
+	/**
+	 * Kills the standby. It has not loaded a world yet, so there is nothing to save.
+	 */
+	public void discard() {
+		process.destroyForcibly();
+	}
+
+	public Process getProcess() {
+		return process;
+	}
+
+	/**
+	 * @return the server command the standby was created from
+	 */
+	public List<String> getCommand() {
+		return command;
+	}
+
+	/**
+	 * @return whether the standby would start the same server as the command, with the game jar it loaded unchanged
+	 */
+	public boolean isCurrent(List<String> command) {
+		return this.command.equals(command) && jar.lastModified() == jarModified;
+	}
+}
@@ -0,0 +1,118 @@
+package smlauncher.starmade;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Measures backup throughput and compression ratio for every {@link BackupFormat} on this machine.
+ * <p>By default a synthetic server-database is generated: sector files that mix already compressed segment data with
+ * sparse block data, plus many small entity files. An existing folder can be benchmarked instead.</p>
+ */
+public class BackupBenchmark {
+
+	private static final BackupFormat[] FORMATS = {BackupFormat.STORE, BackupFormat.ZIP, BackupFormat.ZIP, BackupFormat.ZIP, BackupFormat.TAR_ZSTD, BackupFormat.TAR_ZSTD, BackupFormat.TAR_ZSTD};
+	private static final int[] LEVELS = {0, 1, 6, 9, 1, 3, 9};
+
+	public static void main(String[] args) throws IOException {
+		if(args.length > 0 && new File(args[0]).isDirectory()) run(new File(args[0]), 0, System.out);
+		else run(null, args.length > 0 ? Integer.parseInt(args[0]) : 256, System.out);
+	}
+
+	/**
+	 * Runs the benchmark and prints one line per format and level.
+	 *
+	 * @param source the folder to back up, or null to generate a synthetic server-database
+	 * @param sizeMB the size of the synthetic server-database in MB
+	 * @param out    where to print the results
+	 * @throws IOException if the files could not be generated or written
+	 */
+	public static void run(File source, int sizeMB, PrintStream out) throws IOException {
+		Path workDir = Files.createTempDirectory("smlauncher-backup-benchmark");
+		try {
+			Path root;
+			if(source != null) root = source.toPath();
+			else {
+				out.println("Generating " + sizeMB + " MB synthetic server-database...");
+				root = workDir.resolve("server-database");
+				generate(root, sizeMB * 1024L * 1024L);
+			}
+			BackupPlan plan = BackupPlan.walk(root, StarMadeRestoreTool.BACKUP_PREFIX, null);
+			out.println("Benchmarking " + plan.getFileCount() + " files (" + plan.getTotalBytes() / (1024 * 1024) + " MB) from " + root);
+			out.printf("%-10s %6s %10s %10s %8s%n", "Format", "Level", "MB/s", "Size (MB)", "Ratio");
+
+			for(int i = 0; i < FORMATS.length; i++) {
+				BackupFormat format = FORMATS[i];
+				int level = format.getLevel(LEVELS[i]);
+				File archive = workDir.resolve("benchmark" + format.extension).toFile();
+				// Read everything once so every run starts with the same page cache state
+				for(BackupPlan.Entry entry : plan.getFiles()) {
+					try(InputStream in = Files.newInputStream(entry.path())) {
+						in.transferTo(OutputStream.nullOutputStream());
+					}
+				}
+
+				long start = System.nanoTime();
+				format.write(plan, archive, level, null);
+				double seconds = Math.max(System.nanoTime() - start, 1) / 1.0e9;
+				long size = archive.length();
+				out.printf("%-10s %6d %10.1f %10.1f %8.2f%n", format, level, plan.getTotalBytes() / (1024.0 * 1024.0) / seconds, size / (1024.0 * 1024.0), size == 0 ? 0 : (double) plan.getTotalBytes() / size);
+				Files.deleteIfExists(archive.toPath());
+			}
+		} finally {
+			try(Stream<Path> paths = Files.walk(workDir)) {
+				paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+			}
+		}
+	}
+
+	/**
+	 * Fills a folder with files that roughly resemble a server database.
+	 */
+	private static void generate(Path root, long totalBytes) throws IOException {
+		Random random = new Random(42);
+		Path data = Files.createDirectories(root.resolve("DATA"));
+		long written = 0;
+		int index = 0;
+		while(written < totalBytes) {
+			if(index % 4 == 0) {
+				// Entity files are small and mostly text-like tag data
+				byte[] entity = new byte[2048 + random.nextInt(8192)];
+				for(int i = 0; i < entity.length; i++) entity[i] = (byte) ('a' + random.nextInt(16));
+				Files.write(root.resolve("ENTITY_SHIP_" + index + ".ent"), entity);
+				written += entity.length;
+			} else {
+				byte[] sector = new byte[256 * 1024 + random.nextInt(768 * 1024)];
+				int offset = 0;
+				while(offset < sector.length) {
+					int length = Math.min(sector.length - offset, 4096 + random.nextInt(16384));
+					if(random.nextInt(10) < 4) {
+						// Segments that are already compressed by the game
+						byte[] noise = new byte[length];
+						random.nextBytes(noise);
+						System.arraycopy(noise, 0, sector, offset, length);
+					} else {
+						// Sparse block data: runs of a few block ids separated by empty space
+						short block = (short) random.nextInt(1024);
+						for(int i = offset; i + 1 < offset + length; i += 2) {
+							if(random.nextInt(32) == 0) block = (short) (random.nextInt(3) == 0 ? 0 : random.nextInt(1024));
+							sector[i] = (byte) (block >> 8);
+							sector[i + 1] = (byte) block;
+						}
+					}
+					offset += length;
+				}
+				Files.write(data.resolve(index + ".smsec"), sector);
+				written += sector.length;
+			}
+			index++;
+		}
+	}
+}
@@ -0,0 +1,88 @@
+package smlauncher.starmade;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.zip.Deflater;
+
+/**
+ * The archive formats backups can be written in.
+ * <p>Levels are format specific: 0-9 for deflate, 1-22 for zstd. A level of -1 uses the format's default.</p>
+ */
+public enum BackupFormat {
+	/**
+	 * Deflate compressed zip, readable by any archive tool.
+	 */
+	ZIP(".zip", Deflater.DEFAULT_COMPRESSION, Deflater.NO_COMPRESSION, Deflater.BEST_COMPRESSION),
+	/**
+	 * Zip with stored entries, the files are copied without compression. Fastest to write, but the backup is as large
+	 * as the files.
+	 */
+	STORE(".zip", Deflater.NO_COMPRESSION, Deflater.NO_COMPRESSION, Deflater.NO_COMPRESSION),
+	/**
+	 * Tar archive compressed with multithreaded zstd.
+	 */
+	TAR_ZSTD(".tar.zst", 3, 1, 22);
+
+	public final String extension;
+	public final int defaultLevel;
+	public final int minLevel;
+	public final int maxLevel;
+
+	BackupFormat(String extension, int defaultLevel, int minLevel, int maxLevel) {
+		this.extension = extension;
+		this.defaultLevel = defaultLevel;
+		this.minLevel = minLevel;
+		this.maxLevel = maxLevel;
+	}
+
+	/**
+	 * Writes the files of a backup plan to an archive in this format.
+	 *
+	 * @param plan  the files to archive
+	 * @param dest  the archive to create, replaced if it exists
+	 * @param level the compression level, or -1 for the default
+	 * @param cb    notified before every file, may be null
+	 * @return the manifest of the files that were stored
+	 * @throws IOException if the archive could not be written
+	 */
+	public BackupManifest write(BackupPlan plan, File dest, int level, FolderZipper.ZipCallback cb) throws IOException {
+		return switch(this) {
+			case ZIP, STORE -> FolderZipper.zipFiles(plan, dest.getAbsolutePath(), getLevel(level), cb);
+			case TAR_ZSTD -> TarZstdArchive.write(plan, dest, getLevel(level), cb);
+		};
+	}
+
+	/**
+	 * @param level the requested level, or -1 for the default
+	 * @return the level clamped to the range this format supports
+	 */
+	public int getLevel(int level) {
+		if(level < 0) return defaultLevel;
+		return Math.max(minLevel, Math.min(maxLevel, level));
+	}
+
+	public boolean isZip() {
+		return extension.equals(".zip");
+	}
+
+	/**
+	 * @param name the format name, case-insensitive
+	 * @return the format, or {@link #ZIP} if the name is unknown
+	 */
+	public static BackupFormat parse(String name) {
+		try {
+			return valueOf(name.trim().toUpperCase(Locale.ENGLISH));
+		} catch(IllegalArgumentException | NullPointerException exception) {
+			return ZIP;
+		}
+	}
+
+	/**
+	 * @param backup a backup archive
+	 * @return the format to read it with
+	 */
+	public static BackupFormat of(File backup) {
+		return backup.getName().endsWith(TAR_ZSTD.extension) ? TAR_ZSTD : ZIP;
+	}
+}
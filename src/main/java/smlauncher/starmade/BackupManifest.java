@@ -0,0 +1,133 @@
+package smlauncher.starmade;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * The list of files stored in a backup, written as the last entry of every backup archive.
+ * <p>Each file is recorded with its path, size, SHA-1 and modification time, computed while the file was being
+ * archived. Files that could not be read are recorded with the reason instead, so they are never silently missing.</p>
+ */
+public class BackupManifest {
+
+	public static final String NAME = "backup-manifest.json";
+	private static final int VERSION = 1;
+
+	private final List<FileRecord> files = new ArrayList<>();
+	private final List<Skipped> skipped = new ArrayList<>();
+	private long created = System.currentTimeMillis();
+
+	public void addFile(String path, long size, byte[] sha1, long lastModified) {
+		files.add(new FileRecord(path, size, HexFormat.of().formatHex(sha1), lastModified));
+	}
+
+	public void addSkipped(String path, String reason) {
+		skipped.add(new Skipped(path, reason));
+	}
+
+	public List<FileRecord> getFiles() {
+		return Collections.unmodifiableList(files);
+	}
+
+	public List<Skipped> getSkipped() {
+		return Collections.unmodifiableList(skipped);
+	}
+
+	public long getCreated() {
+		return created;
+	}
+
+	public long getTotalBytes() {
+		long total = 0;
+		for(FileRecord file : files) total += file.size();
+		return total;
+	}
+
+	/**
+	 * @return the recorded files by their path in the archive
+	 */
+	public Map<String, FileRecord> byPath() {
+		Map<String, FileRecord> map = new HashMap<>(files.size() * 2);
+		for(FileRecord file : files) map.put(file.path(), file);
+		return map;
+	}
+
+	public byte[] toBytes() {
+		JSONObject json = new JSONObject();
+		json.put("version", VERSION);
+		json.put("created", created);
+		JSONArray fileArray = new JSONArray();
+		for(FileRecord file : files) {
+			JSONObject entry = new JSONObject();
+			entry.put("path", file.path());
+			entry.put("size", file.size());
+			entry.put("sha1", file.sha1());
+			entry.put("mtime", file.lastModified());
+			fileArray.put(entry);
+		}
+		json.put("files", fileArray);
+		JSONArray skippedArray = new JSONArray();
+		for(Skipped file : skipped) {
+			JSONObject entry = new JSONObject();
+			entry.put("path", file.path());
+			entry.put("reason", file.reason());
+			skippedArray.put(entry);
+		}
+		json.put("skipped", skippedArray);
+		return json.toString(1).getBytes(StandardCharsets.UTF_8);
+	}
+
+	public static BackupManifest read(InputStream in) throws IOException {
+		JSONObject json = new JSONObject(new String(in.readAllBytes(), StandardCharsets.UTF_8));
+		BackupManifest manifest = new BackupManifest();
+		manifest.created = json.optLong("created", 0);
+		JSONArray fileArray = json.getJSONArray("files");
+		for(int i = 0; i < fileArray.length(); i++) {
+			JSONObject entry = fileArray.getJSONObject(i);
+			manifest.files.add(new FileRecord(entry.getString("path"), entry.getLong("size"), entry.getString("sha1"), entry.optLong("mtime", 0)));
+		}
+		JSONArray skippedArray = json.optJSONArray("skipped");
+		if(skippedArray != null) {
+			for(int i = 0; i < skippedArray.length(); i++) {
+				JSONObject entry = skippedArray.getJSONObject(i);
+				manifest.skipped.add(new Skipped(entry.getString("path"), entry.optString("reason", "")));
+			}
+		}
+		return manifest;
+	}
+
+	public static MessageDigest newDigest() {
+		try {
+			return MessageDigest.getInstance("SHA1");
+		} catch(NoSuchAlgorithmException exception) {
+			throw new IllegalStateException(exception);
+		}
+	}
+
+	/**
+	 * A file stored in the backup.
+	 *
+	 * @param path         the entry name in the archive
+	 * @param size         the number of bytes stored
+	 * @param sha1         the SHA-1 of the stored bytes as lowercase hex
+	 * @param lastModified the modification time of the file
+	 */
+	public record FileRecord(String path, long size, String sha1, long lastModified) {
+	}
+
+	/**
+	 * A file that could not be backed up, or was only partially backed up.
+	 *
+	 * @param path   the entry name in the archive
+	 * @param reason why the file was skipped
+	 */
+	public record Skipped(String path, String reason) {
+	}
+}
@@ -0,0 +1,102 @@
+package smlauncher.starmade;
+
+import smlauncher.LogManager;
+
+import java.io.FileFilter;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The files that go into a backup, collected in a single walk of the source folder.
+ * <p>The walk records the size of every file, so the same pass provides both the archive work queue and the byte
+ * total for progress reporting.</p>
+ */
+public class BackupPlan {
+
+	private final List<Entry> files;
+	private final long totalBytes;
+
+	private BackupPlan(List<Entry> files, long totalBytes) {
+		this.files = Collections.unmodifiableList(files);
+		this.totalBytes = totalBytes;
+	}
+
+	/**
+	 * Walks a folder and collects every file to back up. Entry names start with the name of the folder, matching the
+	 * layout written by {@link FolderZipper}.
+	 *
+	 * @param root             the folder to back up
+	 * @param startsWithFilter files and folders whose name starts with this are skipped, may be null
+	 * @param filter           files and folders rejected by this are skipped, may be null
+	 * @return the backup plan
+	 * @throws IOException if the folder could not be walked
+	 */
+	public static BackupPlan walk(Path root, String startsWithFilter, FileFilter filter) throws IOException {
+		Path start = root.toAbsolutePath().normalize();
+		String rootName = start.getFileName() != null ? start.getFileName().toString() : "";
+		List<Entry> files = new ArrayList<>();
+		long[] totalBytes = {0};
+
+		Files.walkFileTree(start, new SimpleFileVisitor<>() {
+			@Override
+			public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+				if(!dir.equals(start) && isExcluded(dir)) return FileVisitResult.SKIP_SUBTREE;
+				if(dir.equals(start) && filter != null && !filter.accept(dir.toFile())) return FileVisitResult.TERMINATE;
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+				if(!attrs.isRegularFile() || isExcluded(file)) return FileVisitResult.CONTINUE;
+				String name = start.relativize(file).toString().replace('\\', '/');
+				if(!rootName.isEmpty()) name = rootName + "/" + name;
+				files.add(new Entry(file, name, attrs.size(), attrs.lastModifiedTime().toMillis()));
+				totalBytes[0] += attrs.size();
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFileFailed(Path file, IOException exception) {
+				// Unreadable files are left out rather than failing the whole backup
+				LogManager.logWarning("Could not read " + file + ", it is left out of the backup", exception);
+				return FileVisitResult.CONTINUE;
+			}
+
+			private boolean isExcluded(Path path) {
+				if(startsWithFilter != null && path.getFileName().toString().startsWith(startsWithFilter)) return true;
+				return filter != null && !filter.accept(path.toFile());
+			}
+		});
+		return new BackupPlan(files, totalBytes[0]);
+	}
+
+	public List<Entry> getFiles() {
+		return files;
+	}
+
+	public int getFileCount() {
+		return files.size();
+	}
+
+	public long getTotalBytes() {
+		return totalBytes;
+	}
+
+	/**
+	 * A file in the backup.
+	 *
+	 * @param path         the file on disk
+	 * @param name         the entry name in the archive
+	 * @param size         the file size in bytes at the time of the walk
+	 * @param lastModified the modification time at the time of the walk
+	 */
+	public record Entry(Path path, String name, long size, long lastModified) {
+	}
+}
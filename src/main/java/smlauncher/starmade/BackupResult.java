@@ -0,0 +1,28 @@
+package smlauncher.starmade;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * The outcome of a backup.
+ *
+ * @param archive  the backup archive
+ * @param format   the archive format
+ * @param files    the number of files stored
+ * @param bytes    the number of bytes stored, before compression
+ * @param skipped  the files that could not be backed up
+ * @param duration the time taken in milliseconds
+ */
+public record BackupResult(File archive, BackupFormat format, int files, long bytes, List<BackupManifest.Skipped> skipped, long duration) {
+
+	public boolean isComplete() {
+		return skipped.isEmpty();
+	}
+
+	@Override
+	public String toString() {
+		String result = String.format("%d files (%d MB) backed up to %s in %.1fs", files, bytes / (1024 * 1024), archive.getName(), duration / 1000.0);
+		if(!skipped.isEmpty()) result += ", " + skipped.size() + " files skipped";
+		return result;
+	}
+}
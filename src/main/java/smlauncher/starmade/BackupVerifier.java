@@ -0,0 +1,282 @@
+package smlauncher.starmade;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import smlauncher.LogManager;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.security.MessageDigest;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Checks a backup against its {@link BackupManifest}.
+ * <p>Zip entries are read and hashed in parallel. Tar.zst archives are decompressed as one stream while the entries
+ * are hashed on a thread pool. Backups made before manifests existed are checked against their zip CRCs instead.</p>
+ * <p>An entry that cannot be read is reported as corrupt and the other entries are still checked. A tar.zst archive
+ * cannot be read past damage in its stream, so its check stops at the damaged entry.</p>
+ */
+public class BackupVerifier {
+
+	private static final int BUFFER_SIZE = 1024 * 64;
+	private static final int MAX_THREADS = 8;
+	// Tar entries up to this size are handed to the pool, larger ones are hashed on the reading thread
+	private static final int MAX_QUEUED_ENTRY = 1024 * 1024 * 8;
+
+	/**
+	 * Verifies every entry of a backup.
+	 *
+	 * @param backup   the backup archive
+	 * @param callback notified for every checked entry and polled for cancellation, may be null
+	 * @return the verification result
+	 * @throws IOException if the backup could not be read
+	 */
+	public static Result verify(File backup, FolderZipper.ZipCallback callback) throws IOException {
+		long start = System.currentTimeMillis();
+		int threads = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), MAX_THREADS));
+		ExecutorService pool = Executors.newFixedThreadPool(threads, runnable -> {
+			Thread thread = new Thread(runnable, "Backup-Verifier");
+			thread.setDaemon(true);
+			return thread;
+		});
+		Checker checker = new Checker(callback);
+		boolean tar = BackupFormat.of(backup) == BackupFormat.TAR_ZSTD;
+		try {
+			if(tar) verifyTar(backup, pool, threads, checker);
+			else verifyZip(backup, pool, threads, checker);
+		} finally {
+			pool.shutdownNow();
+		}
+		Result result = checker.finish(tar, System.currentTimeMillis() - start);
+		System.out.println("[VERIFY] " + backup.getName() + ": " + result);
+		return result;
+	}
+
+	private static void verifyZip(File backup, ExecutorService pool, int threads, Checker checker) throws IOException {
+		try(ZipFile zipFile = new ZipFile(backup)) {
+			ZipEntry manifestEntry = zipFile.getEntry(BackupManifest.NAME);
+			if(manifestEntry != null) {
+				try(InputStream in = zipFile.getInputStream(manifestEntry)) {
+					checker.setManifest(BackupManifest.read(in));
+				}
+			}
+			List<ZipEntry> files = new ArrayList<>();
+			Enumeration<? extends ZipEntry> entries = zipFile.entries();
+			while(entries.hasMoreElements()) {
+				ZipEntry entry = entries.nextElement();
+				if(!entry.isDirectory() && !entry.getName().equals(BackupManifest.NAME)) files.add(entry);
+			}
+			List<Future<Void>> futures = new ArrayList<>();
+			for(List<ZipEntry> partition : ZipExtractor.partition(files, threads)) {
+				futures.add(pool.submit(() -> {
+					byte[] buffer = new byte[BUFFER_SIZE];
+					for(ZipEntry entry : partition) {
+						if(checker.isCancelled()) break;
+						try(InputStream in = zipFile.getInputStream(entry)) {
+							checker.check(entry.getName(), in, entry.getCrc(), buffer);
+						} catch(IOException exception) {
+							checker.fail(entry.getName(), exception);
+						}
+					}
+					return null;
+				}));
+			}
+			for(Future<Void> future : futures) await(future, backup);
+		}
+		if(checker.isCancelled()) throw new InterruptedIOException("Verification of " + backup.getName() + " was cancelled");
+	}
+
+	private static void verifyTar(File backup, ExecutorService pool, int threads, Checker checker) throws IOException {
+		// Bounds the entries waiting to be hashed, so a slow disk never buffers the whole archive
+		Semaphore queued = new Semaphore(threads * 2);
+		List<Future<Void>> futures = new ArrayList<>();
+		byte[] buffer = new byte[BUFFER_SIZE];
+		String name = null;
+		try(TarArchiveInputStream tar = TarZstdArchive.open(backup)) {
+			TarArchiveEntry entry;
+			while((entry = tar.getNextEntry()) != null) {
+				if(checker.isCancelled()) break;
+				if(!entry.isFile()) continue;
+				name = entry.getName();
+				if(name.equals(BackupManifest.NAME)) {
+					checker.setManifest(BackupManifest.read(tar));
+					continue;
+				}
+				if(entry.getSize() > MAX_QUEUED_ENTRY) {
+					checker.check(name, tar, -1, buffer);
+					continue;
+				}
+				String queuedName = name;
+				byte[] data = tar.readAllBytes();
+				queued.acquire();
+				futures.add(pool.submit(() -> {
+					try {
+						checker.check(queuedName, data);
+					} finally {
+						queued.release();
+					}
+					return null;
+				}));
+			}
+		} catch(InterruptedException exception) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while verifying " + backup.getName());
+		} catch(InterruptedIOException exception) {
+			throw exception;
+		} catch(IOException exception) {
+			// The stream cannot be read past the damage, the entry it was in is reported and the rest is left unchecked
+			checker.fail(name != null ? name : backup.getName(), exception);
+		}
+		for(Future<Void> future : futures) await(future, backup);
+		if(checker.isCancelled()) throw new InterruptedIOException("Verification of " + backup.getName() + " was cancelled");
+	}
+
+	private static void await(Future<Void> future, File backup) throws IOException {
+		try {
+			future.get();
+		} catch(InterruptedException exception) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while verifying " + backup.getName());
+		} catch(ExecutionException exception) {
+			Throwable cause = exception.getCause();
+			if(cause instanceof IOException) throw (IOException) cause;
+			throw new IOException("Failed to verify " + backup.getName(), cause);
+		}
+	}
+
+	/**
+	 * Collects the hashes of the archive entries and compares them against the manifest once it is known. The tar
+	 * manifest is the last entry, so hashes are kept until the whole archive has been read.
+	 */
+	private static class Checker {
+		private final FolderZipper.ZipCallback callback;
+		private final Map<String, String> hashes = new ConcurrentHashMap<>();
+		// Entries whose zip checksum does not match or that could not be read
+		private final Set<String> damaged = ConcurrentHashMap.newKeySet();
+		private BackupManifest manifest;
+
+		Checker(FolderZipper.ZipCallback callback) {
+			this.callback = callback;
+		}
+
+		void setManifest(BackupManifest manifest) {
+			this.manifest = manifest;
+		}
+
+		boolean isCancelled() {
+			return callback != null && callback.isCancelled();
+		}
+
+		void check(String name, InputStream in, long crc, byte[] buffer) throws IOException {
+			MessageDigest digest = BackupManifest.newDigest();
+			CRC32 crc32 = new CRC32();
+			int len;
+			while((len = in.read(buffer)) != -1) {
+				digest.update(buffer, 0, len);
+				crc32.update(buffer, 0, len);
+			}
+			if(crc != -1 && crc32.getValue() != crc) damaged.add(name);
+			record(name, digest.digest());
+		}
+
+		void fail(String name, IOException exception) {
+			LogManager.logWarning("Failed to read " + name + " from the backup", exception);
+			damaged.add(name);
+			if(callback != null) {
+				synchronized(this) {
+					callback.update(new File(name));
+				}
+			}
+		}
+
+		void check(String name, byte[] data) {
+			MessageDigest digest = BackupManifest.newDigest();
+			record(name, digest.digest(data));
+		}
+
+		private void record(String name, byte[] sha1) {
+			hashes.put(name, HexFormat.of().formatHex(sha1));
+			if(callback != null) {
+				synchronized(this) {
+					callback.update(new File(name));
+				}
+			}
+		}
+
+		Result finish(boolean tar, long duration) {
+			List<String> corrupt = new ArrayList<>(damaged);
+			List<String> missing = new ArrayList<>();
+			List<String> unexpected = new ArrayList<>();
+			List<BackupManifest.Skipped> skipped = new ArrayList<>();
+			if(manifest != null) {
+				skipped.addAll(manifest.getSkipped());
+				Set<String> skippedPaths = new HashSet<>();
+				for(BackupManifest.Skipped file : skipped) skippedPaths.add(file.path());
+				Map<String, BackupManifest.FileRecord> records = manifest.byPath();
+				for(BackupManifest.FileRecord record : records.values()) {
+					if(damaged.contains(record.path())) continue;
+					String hash = hashes.get(record.path());
+					if(hash == null) missing.add(record.path());
+					else if(!hash.equals(record.sha1())) corrupt.add(record.path());
+				}
+				for(String name : hashes.keySet()) {
+					// Partially read files are listed as skipped, their entries are expected to be incomplete
+					if(!records.containsKey(name) && !skippedPaths.contains(name) && !damaged.contains(name)) unexpected.add(name);
+				}
+			}
+			Collections.sort(corrupt);
+			Collections.sort(missing);
+			Collections.sort(unexpected);
+			return new Result(manifest != null, tar, hashes.size(), corrupt, missing, unexpected, skipped, duration);
+		}
+	}
+
+	/**
+	 * The outcome of a verification.
+	 *
+	 * @param hasManifest whether the backup has a manifest, without one only the zip checksums are checked
+	 * @param tar         whether the backup is a tar archive, which has no checksums of its own
+	 * @param checked     the number of entries that were read
+	 * @param corrupt     entries whose contents do not match the manifest or their checksum
+	 * @param missing     files in the manifest that are not in the archive
+	 * @param unexpected  entries in the archive that are not in the manifest
+	 * @param skipped     files the manifest lists as not backed up
+	 * @param duration    the time taken in milliseconds
+	 */
+	public record Result(boolean hasManifest, boolean tar, int checked, List<String> corrupt, List<String> missing, List<String> unexpected, List<BackupManifest.Skipped> skipped, long duration) {
+
+		/**
+		 * @return false if there was nothing to check the entries against, a tar archive without a manifest
+		 */
+		public boolean isVerified() {
+			return hasManifest || !tar;
+		}
+
+		/**
+		 * @return true if every stored file was checked and is intact
+		 */
+		public boolean isValid() {
+			return isVerified() && corrupt.isEmpty() && missing.isEmpty() && unexpected.isEmpty();
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder builder = new StringBuilder();
+			builder.append(String.format("%d entries checked in %.1fs", checked, duration / 1000.0));
+			if(!isVerified()) builder.append(" (no manifest, unverified)");
+			else if(!hasManifest) builder.append(" (no manifest, checked zip checksums only)");
+			if(!corrupt.isEmpty()) builder.append(", ").append(corrupt.size()).append(" corrupt");
+			if(!missing.isEmpty()) builder.append(", ").append(missing.size()).append(" missing");
+			if(!unexpected.isEmpty()) builder.append(", ").append(unexpected.size()).append(" not in manifest");
+			if(!skipped.isEmpty()) builder.append(", ").append(skipped.size()).append(" skipped during backup");
+			if(isValid()) builder.append(", OK");
+			return builder.toString();
+		}
+	}
+}
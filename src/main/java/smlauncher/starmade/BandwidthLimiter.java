@@ -0,0 +1,62 @@
+package smlauncher.starmade;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A token bucket that limits how fast downloads read.
+ * <p>The bucket fills at the set rate and holds up to one second of it, so short bursts pass at full speed. Readers
+ * that take more than the bucket holds sleep until the rate has paid for it, which spreads the bandwidth between all
+ * threads sharing a limiter. The rate can be changed at any time.</p>
+ */
+public class BandwidthLimiter {
+
+	private volatile long bytesPerSecond;
+	private double tokens;
+	private long lastRefill = System.nanoTime();
+
+	/**
+	 * @param bytesPerSecond the rate limit, or 0 for none
+	 */
+	public BandwidthLimiter(long bytesPerSecond) {
+		this.bytesPerSecond = bytesPerSecond;
+	}
+
+	public long getRate() {
+		return bytesPerSecond;
+	}
+
+	/**
+	 * @param bytesPerSecond the rate limit, or 0 for none
+	 */
+	public void setRate(long bytesPerSecond) {
+		this.bytesPerSecond = bytesPerSecond;
+	}
+
+	/**
+	 * Waits until the given number of bytes may be read.
+	 *
+	 * @return the nanoseconds spent waiting
+	 * @throws InterruptedIOException if the thread is interrupted while waiting
+	 */
+	public long acquire(int bytes) throws InterruptedIOException {
+		long rate = bytesPerSecond;
+		if(rate <= 0 || bytes <= 0) return 0;
+		long wait;
+		synchronized(this) {
+			long now = System.nanoTime();
+			tokens = Math.min(rate, tokens + (now - lastRefill) * rate / 1e9);
+			lastRefill = now;
+			tokens -= bytes;
+			wait = tokens < 0 ? (long) (-tokens * 1e9 / rate) : 0;
+		}
+		if(wait <= 0) return 0;
+		try {
+			TimeUnit.NANOSECONDS.sleep(wait);
+		} catch(InterruptedException exception) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for bandwidth");
+		}
+		return wait;
+	}
+}
@@ -1,6 +1,10 @@
 package smlauncher.starmade;
 
 import smlauncher.LogManager;
+import smlauncher.event.ProgressBus;
+import smlauncher.event.ProgressEvent;
+import smlauncher.metrics.LauncherMetrics;
+import smlauncher.process.AotCache;
 
 import java.io.BufferedReader;
 import java.io.File;
@@ -90,84 +94,101 @@ public class ChecksumFile {
 		return sb.toString();
 	}
 
-	public void download(boolean force, String buildPath, File installDir, String installDirStr, FileDowloadCallback cb) throws NoSuchAlgorithmException, IOException {
+	/**
+	 * @param events receives the status and the download progress of the update
+	 */
+	public void download(boolean force, String buildPath, File installDir, String installDirStr, ProgressBus events) throws NoSuchAlgorithmException, IOException {
 		ArrayList<ChecksumFileEntry> checksumsToDownload = new ArrayList<>();
-		cb.update("Determining files to download... ");
+		events.publish(new ProgressEvent.Status(ProgressEvent.Stage.UPDATE, "Determining files to download..."));
 
 		FileUpdateTotal o = new FileUpdateTotal();
 		float p = 1.0f / checksums.size();
 		float g = 0;
-		for(ChecksumFileEntry e : checksums) {
-			if(force || e.needsDownload(buildPath, installDirStr)) {
-				checksumsToDownload.add(e);
-				o.totalSize += e.size;
+		// Closed on every way out, a failed or interrupted update keeps it so the next run continues where this one stopped
+		try(DownloadJournal journal = DownloadJournal.open(installDir, buildPath)) {
+			for(ChecksumFileEntry e : checksums) {
+				// Files an interrupted run of this update already verified are not hashed again
+				if(journal.isVerified(e, new File(installDirStr, e.relativePath))) {
+					g++;
+					continue;
+				}
+				if(force || e.needsDownload(buildPath, installDirStr)) {
+					checksumsToDownload.add(e);
+					o.totalSize += e.size;
+					if(!journal.canResume(e)) journal.record(e, DownloadJournal.State.PENDING, 0);
+				} else journal.record(e, DownloadJournal.State.VERIFIED, e.size);
+				//cb.update("Determining files to download... " + (StringTools.formatPointZero(g * p * 100.0f)) + "%  selected " + checksumsToDownload.size() + " / " + checksums.size() + "(" + (o.totalSize / 1024) / 1024 + " MB)");
+				g++;
+			}
+			if(checksumsToDownload.isEmpty()) {
+				journal.complete();
+				events.publish(new ProgressEvent.Status(ProgressEvent.Stage.UPDATE, "Nothing to download"));
+				return;
 			}
-			//cb.update("Determining files to download... " + (StringTools.formatPointZero(g * p * 100.0f)) + "%  selected " + checksumsToDownload.size() + " / " + checksums.size() + "(" + (o.totalSize / 1024) / 1024 + " MB)");
-			g++;
-		}
-		if(checksumsToDownload.isEmpty()) {
-			cb.update("Nothing to download");
-			return;
-		}
 
-		o.startTime = System.currentTimeMillis();
-		ThreadPoolExecutor pool = (ThreadPoolExecutor) Executors.newFixedThreadPool(5);
-		toExecute = checksumsToDownload.size();
-		failed = 0;
-		running.clear();
-		printUpdaterMessage("[UPDATER] Starting download");
+			o.total = checksumsToDownload.size();
+			ThreadPoolExecutor pool = (ThreadPoolExecutor) Executors.newFixedThreadPool(5);
+			toExecute = checksumsToDownload.size();
+			failed = 0;
+			running.clear();
+			printUpdaterMessage("[UPDATER] Starting download");
 
-		// Periodically give updates
-		float percentUpdate = 0.1f;
-		int thresholdIncreaseAmount = (int) (percentUpdate * checksumsToDownload.size());
-		int nextThreshold = 0;
+			// Periodically give updates
+			float percentUpdate = 0.1f;
+			int thresholdIncreaseAmount = (int) (percentUpdate * checksumsToDownload.size());
+			int nextThreshold = 0;
 
-		for(int i = 0; i < checksumsToDownload.size(); i++) {
-			ChecksumFileEntry e = checksumsToDownload.get(i);
-			e.index = i;
+			for(int i = 0; i < checksumsToDownload.size(); i++) {
+				ChecksumFileEntry e = checksumsToDownload.get(i);
+				e.index = i;
 
-			synchronized(running) {
-				boolean add = running.add(e);
+				synchronized(running) {
+					boolean add = running.add(e);
 //				System.err.println("STARTED: "+e+"; "+running);
-				assert (add);
-			}
-			pool.execute(() -> {
-				try {
-					o.index = e.index;
-					o.total = checksumsToDownload.size();
-					e.download(force, buildPath, installDir, installDirStr, cb, o);
-				} catch(Exception e1) {
-					LogManager.logWarning("Failed to download file", e1);
-					failed++;
+					assert (add);
 				}
-				synchronized(running) {
-					boolean remove = running.remove(e);
+				pool.execute(() -> {
+					try {
+						e.download(force, buildPath, installDir, installDirStr, events, o, journal);
+					} catch(Exception e1) {
+						LogManager.logWarning("Failed to download file", e1);
+						LauncherMetrics.DOWNLOAD_FAILURES.inc();
+						failed++;
+					}
+					synchronized(running) {
+						boolean remove = running.remove(e);
 //						System.err.println("FINISHED: "+e);
-					assert (remove);
+						assert (remove);
+					}
+					toExecute--;
+				});
+
+				if(i == nextThreshold) {
+					int percent = (int) (100.0f * i / checksumsToDownload.size());
+					printUpdaterMessage("[UPDATER] Downloaded %d/%d files (%d%%)\n"
+							.formatted(i, checksumsToDownload.size(), percent));
+					nextThreshold += thresholdIncreaseAmount;
 				}
-				toExecute--;
-			});
-
-			if(i == nextThreshold) {
-				int percent = (int) (100.0f * i / checksumsToDownload.size());
-				printUpdaterMessage("[UPDATER] Downloaded %d/%d files (%d%%)\n"
-						.formatted(i, checksumsToDownload.size(), percent));
-				nextThreshold += thresholdIncreaseAmount;
 			}
-		}
 
-		while(toExecute > 0) {
-			try {
-				Thread.sleep(300);
-			} catch(InterruptedException e1) {
-				LogManager.logWarning("Interrupted while waiting for download to finish", e1);
+			while(toExecute > 0) {
+				try {
+					Thread.sleep(300);
+				} catch(InterruptedException e1) {
+					LogManager.logWarning("Interrupted while waiting for download to finish", e1);
+				}
 			}
+			if(failed > 0) {
+				// The journal is kept, so the next run only downloads the files that failed
+				pool.shutdown();
+				throw new IOException("Download failed on " + failed + " file" + (failed > 1 ? "s" : "") + "\nplease redownload forced from the options");
+			}
+			pool.shutdown();
+			journal.complete();
+			// The startup caches belong to the classes of the previous build
+			AotCache.clear(installDir);
+			printUpdaterMessage("Downloaded all files");
 		}
-		if(failed > 0) {
-			throw new IOException("Download failed on " + failed + " file" + (failed > 1 ? "s" : "") + "\nplease redownload forced from the options");
-		}
-		pool.shutdown();
-		printUpdaterMessage("Downloaded all files");
 	}
 
 }
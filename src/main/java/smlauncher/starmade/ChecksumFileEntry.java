@@ -1,6 +1,10 @@
 package smlauncher.starmade;
 
 import smlauncher.LogManager;
+import smlauncher.event.DownloadProgress;
+import smlauncher.event.ProgressBus;
+import smlauncher.metrics.Counter;
+import smlauncher.metrics.LauncherMetrics;
 
 import java.io.File;
 import java.io.IOException;
@@ -8,6 +12,7 @@ import java.net.URISyntaxException;
 import java.security.NoSuchAlgorithmException;
 
 public class ChecksumFileEntry {
+	private static final long JOURNAL_INTERVAL = 4 * 1024 * 1024;
 	public final long size;
 	public final String checksum;
 	public final String relativePath;
@@ -45,7 +50,11 @@ public class ChecksumFileEntry {
 		return replace;
 	}
 
-	public void download(boolean force, String buildPath, File installDir, String installDirStr, FileDowloadCallback cb, FileUpdateTotal o) throws NoSuchAlgorithmException, IOException {
+	/**
+	 * @param events  receives the download progress of the update
+	 * @param journal records the progress of the file, so an interrupted update can resume it
+	 */
+	public void download(boolean force, String buildPath, File installDir, String installDirStr, ProgressBus events, FileUpdateTotal o, DownloadJournal journal) throws NoSuchAlgorithmException, IOException {
 		String sourceFilePath = buildPath + relativePath;
 		File dst = new File(installDirStr, relativePath);
 //		File dst = destFilePath;//new File(destFilePath);
@@ -67,68 +76,75 @@ public class ChecksumFileEntry {
 		String name = dst.getName();
 
 		File file = new File(dst.getAbsolutePath() + ".filepart");
-		//remove file part
-		file.delete();
-		//		final long[] update = new long[2];
-		FileDownloadUpdate e = new FileDownloadUpdate();
+		long resumeOffset = 0;
+		if(journal.canResume(this) && file.isFile() && file.length() <= size) {
+			resumeOffset = file.length();
+			printUpdaterMessage("Resuming " + relativePath + " at " + resumeOffset + " of " + size + " bytes");
+		} else {
+			//remove file part
+			file.delete();
+		}
+		if(resumeOffset == 0 && DownloadCache.restore(checksum, size, file)) {
+			printUpdaterMessage("Copied " + relativePath + " from the download cache");
+			file.renameTo(dst);
+			journal.record(this, DownloadJournal.State.VERIFIED, size);
+			o.currentSize.addAndGet(size);
+			return;
+		}
+		journal.record(this, DownloadJournal.State.IN_PROGRESS, resumeOffset);
+		o.currentSize.addAndGet(resumeOffset);
+		// The bytes of this file counted in the total, and the offset the current transfer writes at
+		long[] counted = {resumeOffset};
+		long[] startOffset = {resumeOffset};
+		long[] nextJournalOffset = {resumeOffset + JOURNAL_INTERVAL};
+		Counter downloadedBytes = LauncherMetrics.getDownloadedBytes(sourceFilePath);
+		long requestTime = System.nanoTime();
+		boolean[] firstBytes = {true};
 		try {
 			FileUtil.copyURLToFile(FileUtil.convertToURLEscapingIllegalCharacters(sourceFilePath), file, 50000, 50000, new DownloadCallback() {
 
 				@Override
 				public void doneDownloading() {
-					int s = Integer.MAX_VALUE;
-					synchronized(ChecksumFile.running) {
-						for(ChecksumFileEntry en : ChecksumFile.running) {
-							s = Math.min(en.index, s);
-						}
-					}
-					if(s == index) {
-						cb.done(e);
-					} else {
-//						System.err.println(s+" INDNN "+index+": "+ChecksumFile.running);
-					}
 				}
 
 				@Override
-				public void downloaded(long size, long diff) {
-					o.lastSpeedSize += diff;
-
-					o.currentSize += diff;
-					e.downloaded = size;
-					e.size = ChecksumFileEntry.this.size;
-					e.fileName = name;
-					e.index = o.index;
-					e.total = o.total;
-					e.totalSize = o.totalSize;
-					e.currentSize = o.currentSize;
-
-					long diffTime = System.currentTimeMillis() - o.startTime;
-					if(diffTime / 200 > 1) {
-						double secs = diffTime / 200.0d;
-
-						o.downloadSpeed = o.lastSpeedSize / secs;
-						o.lastSpeedSize = 0;
-						o.startTime = System.currentTimeMillis();
-
-					}
-					e.downloadSpeed = o.downloadSpeed;
+				public void started(long offset) {
+					// A server that ignores the range sends the whole file again, the resumed bytes are overwritten
+					if(offset == 0 && startOffset[0] > 0) printUpdaterMessage("Server does not support resuming " + relativePath + ", downloading it again");
+					o.currentSize.addAndGet(offset - counted[0]);
+					counted[0] = offset;
+					startOffset[0] = offset;
+					nextJournalOffset[0] = offset + JOURNAL_INTERVAL;
+				}
 
-					int s = Integer.MAX_VALUE;
-					synchronized(ChecksumFile.running) {
-						for(ChecksumFileEntry en : ChecksumFile.running) {
-							s = Math.min(en.index, s);
-						}
+				@Override
+				public void downloaded(long size, long diff) {
+					if(firstBytes[0]) {
+						firstBytes[0] = false;
+						LauncherMetrics.DOWNLOAD_LATENCY.observe((System.nanoTime() - requestTime) / 1e9);
 					}
-					if(s == index) {
-//						System.err.println("INDNN "+index+": "+ChecksumFile.running);
-						cb.update(e);
-					} else {
-//						System.err.println(s+" INDNN "+index+": "+ChecksumFile.running);
+					downloadedBytes.add(diff);
+					counted[0] += diff;
+					long currentSize = o.currentSize.addAndGet(diff);
+					if(startOffset[0] + size >= nextJournalOffset[0]) {
+						nextJournalOffset[0] = startOffset[0] + size + JOURNAL_INTERVAL;
+						journal.record(ChecksumFileEntry.this, DownloadJournal.State.IN_PROGRESS, startOffset[0] + size);
 					}
+					// Every chunk is published, listeners coalesce them to the rate they can show
+					if(events.hasListeners()) events.publish(new DownloadProgress(name, startOffset[0] + size, ChecksumFileEntry.this.size, o.total, currentSize, o.totalSize, DownloadThrottle.getThroughput()));
 				}
 			}, "dev", "dev", true);
 
+			// A resumed file is only as good as the bytes it continued from
+			if(file.length() != size || !FileUtil.getSha1Checksum(file.getAbsolutePath()).equals(checksum)) {
+				file.delete();
+				journal.record(this, DownloadJournal.State.PENDING, 0);
+				throw new IOException("Downloaded " + relativePath + " does not match its checksum");
+			}
 			file.renameTo(dst);
+			journal.record(this, DownloadJournal.State.VERIFIED, size);
+			LauncherMetrics.getDownloadedFiles(sourceFilePath).inc();
+			DownloadCache.store(checksum, dst);
 		} catch(URISyntaxException e1) {
 			LogManager.logException("Error downloading file", e1);
 		}
@@ -0,0 +1,121 @@
+package smlauncher.starmade;
+
+import smlauncher.LogManager;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A folder of downloaded game files named by their checksum, shared by installs that update to the same build.
+ * <p>Disabled unless a folder is set. When enabled, {@link ChecksumFileEntry} copies a file from the cache instead of
+ * downloading it again. Files are copied rather than linked, since the game may change files in its own install. Files
+ * that were not used for a while, and partial files left behind by an interrupted download, are deleted when the cache
+ * is enabled.</p>
+ * <p>Shared by several installs, the cache also keeps every file they download. For the {@link UpdatePrefetcher} it is
+ * only a staging area: the update moves the staged files into the install and does not add its own downloads, so
+ * files are not kept twice.</p>
+ */
+public final class DownloadCache {
+
+	private static final long MAX_AGE_MILLIS = TimeUnit.DAYS.toMillis(30);
+	/**
+	 * Partial files are written to continuously, one untouched for this long belongs to no running download.
+	 */
+	private static final long STALE_PART_MILLIS = TimeUnit.HOURS.toMillis(1);
+	private static volatile File folder;
+	private static volatile boolean shared;
+
+	private DownloadCache() {
+	}
+
+	/**
+	 * @param shared true if installs share the cache and every download is kept, false if it only holds staged files
+	 */
+	public static void enable(File folder, boolean shared) {
+		if(!folder.isDirectory() && !folder.mkdirs()) {
+			LogManager.logWarning("Failed to create download cache " + folder.getAbsolutePath());
+			return;
+		}
+		DownloadCache.shared = shared;
+		DownloadCache.folder = folder;
+		File[] files = folder.listFiles();
+		if(files == null) return;
+		long now = System.currentTimeMillis();
+		for(File file : files) {
+			long age = now - file.lastModified();
+			boolean stale = file.getName().endsWith(".part") ? age > STALE_PART_MILLIS : age > MAX_AGE_MILLIS;
+			if(stale && !file.delete()) LogManager.logWarning("Failed to delete cached download " + file.getName());
+		}
+	}
+
+	public static boolean isEnabled() {
+		return folder != null;
+	}
+
+	/**
+	 * @return the cache folder, or null if the cache is disabled
+	 */
+	static File getFolder() {
+		return folder;
+	}
+
+	/**
+	 * @return whether a file with the checksum and size is cached, without verifying its content
+	 */
+	static boolean contains(String checksum, long size) {
+		File cache = folder;
+		if(cache == null) return false;
+		File cached = new File(cache, checksum);
+		return cached.isFile() && cached.length() == size;
+	}
+
+	/**
+	 * Copies a cached file, if its size and checksum match. Staged files are moved instead, they are only needed once.
+	 *
+	 * @return whether the file was restored from the cache
+	 */
+	static boolean restore(String checksum, long size, File target) {
+		File cache = folder;
+		if(cache == null) return false;
+		File cached = new File(cache, checksum);
+		if(!cached.isFile() || cached.length() != size) return false;
+		try {
+			if(shared) Files.copy(cached.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			else Files.move(cached.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			if(!FileUtil.getSha1Checksum(target.getAbsolutePath()).equals(checksum)) {
+				LogManager.logWarning("Cached download " + checksum + " is corrupt, downloading it again");
+				Files.deleteIfExists(cached.toPath());
+				Files.deleteIfExists(target.toPath());
+				return false;
+			}
+			// Keeps files that are still in use from being trimmed
+			if(shared) cached.setLastModified(System.currentTimeMillis());
+			return true;
+		} catch(IOException exception) {
+			LogManager.logWarning("Failed to copy cached download " + checksum, exception);
+			return false;
+		}
+	}
+
+	/**
+	 * Adds a downloaded file to the cache, if installs share it.
+	 */
+	static void store(String checksum, File file) {
+		File cache = folder;
+		if(cache == null || !shared) return;
+		File cached = new File(cache, checksum);
+		if(cached.isFile()) return;
+		// Another install may store the same file at the same time, only a complete copy gets the final name
+		File part = new File(cache, checksum + "." + Thread.currentThread().threadId() + ".part");
+		try {
+			Files.copy(file.toPath(), part.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			Files.move(part.toPath(), cached.toPath(), StandardCopyOption.ATOMIC_MOVE);
+		} catch(IOException exception) {
+			LogManager.logWarning("Failed to cache download " + file.getName(), exception);
+			part.delete();
+		}
+	}
+}
@@ -4,4 +4,13 @@ public interface DownloadCallback {
 	void downloaded(long size, long diff);
 
 	void doneDownloading();
+
+	/**
+	 * Called before the bytes of a transfer are written, again for every retry after a disconnect.
+	 *
+	 * @param offset the number of bytes already in the file that the transfer continues, 0 if the server ignored the
+	 *               requested range and the file starts over
+	 */
+	default void started(long offset) {
+	}
 }
@@ -0,0 +1,160 @@
+package smlauncher.starmade;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import smlauncher.LogManager;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A journal of the files an update still has to download, kept in the install folder so a killed launcher can continue
+ * where it stopped.
+ * <p>Every change of a file's state is appended as one JSON line, so a line written before the launcher died is never
+ * lost and a torn last line is ignored. The first line names the build the journal belongs to. When an update of the
+ * same build starts again, verified files are skipped without hashing them and partial downloads are resumed from
+ * their .filepart files. A journal of another build is discarded with its partial files. The journal is deleted once
+ * all files were downloaded.</p>
+ */
+public class DownloadJournal implements Closeable {
+
+	public static final String FILE_NAME = "download-journal.jsonl";
+	private final File file;
+	private final File installDir;
+	private final Map<String, Record> records = new HashMap<>();
+	private Writer writer;
+
+	private DownloadJournal(File installDir) {
+		this.installDir = installDir;
+		file = new File(installDir, FILE_NAME);
+	}
+
+	/**
+	 * Opens the journal of an install, continuing it if it belongs to the same build.
+	 *
+	 * @param buildPath the URL the build is downloaded from
+	 */
+	public static DownloadJournal open(File installDir, String buildPath) throws IOException {
+		DownloadJournal journal = new DownloadJournal(installDir);
+		journal.read(buildPath);
+		journal.rewrite(buildPath);
+		return journal;
+	}
+
+	private void read(String buildPath) throws IOException {
+		if(!file.isFile()) return;
+		boolean sameBuild = false;
+		try(BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+			String line;
+			boolean header = true;
+			while((line = reader.readLine()) != null) {
+				try {
+					JSONObject json = new JSONObject(line);
+					if(header) {
+						sameBuild = buildPath.equals(json.optString("build"));
+						header = false;
+						continue;
+					}
+					records.put(json.getString("path"), new Record(json.getString("checksum"), State.valueOf(json.getString("state")), json.optLong("offset", 0)));
+				} catch(JSONException | IllegalArgumentException exception) {
+					// The launcher was killed while writing this line
+					break;
+				}
+			}
+		}
+		if(sameBuild) {
+			int verified = 0;
+			for(Record record : records.values()) if(record.state == State.VERIFIED) verified++;
+			System.out.println("[UPDATER] Continuing an interrupted update, " + verified + " of " + records.size() + " files are already done");
+			return;
+		}
+		// Partial files of another build can not be resumed
+		for(Map.Entry<String, Record> entry : records.entrySet()) {
+			if(entry.getValue().state != State.VERIFIED) new File(installDir, entry.getKey() + ".filepart").delete();
+		}
+		records.clear();
+	}
+
+	/**
+	 * Compacts the journal to one line per file, so it does not grow with every interrupted run.
+	 */
+	private void rewrite(String buildPath) throws IOException {
+		File part = new File(installDir, FILE_NAME + ".tmp");
+		try(Writer output = Files.newBufferedWriter(part.toPath(), StandardCharsets.UTF_8)) {
+			JSONObject header = new JSONObject();
+			header.put("build", buildPath);
+			output.write(header + "\n");
+			for(Map.Entry<String, Record> entry : records.entrySet()) output.write(toLine(entry.getKey(), entry.getValue()));
+		}
+		Files.move(part.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		writer = new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * @return whether a previous run of this update already downloaded and verified the file, and it is still intact
+	 */
+	public synchronized boolean isVerified(ChecksumFileEntry entry, File destination) {
+		Record record = records.get(entry.relativePath);
+		return record != null && record.state == State.VERIFIED && record.checksum.equals(entry.checksum) && destination.length() == entry.size;
+	}
+
+	/**
+	 * @return whether the .filepart of the file is from a previous run of this update and can be resumed
+	 */
+	public synchronized boolean canResume(ChecksumFileEntry entry) {
+		Record record = records.get(entry.relativePath);
+		return record != null && record.state == State.IN_PROGRESS && record.checksum.equals(entry.checksum);
+	}
+
+	public synchronized void record(ChecksumFileEntry entry, State state, long offset) {
+		Record record = new Record(entry.checksum, state, offset);
+		records.put(entry.relativePath, record);
+		if(writer == null) return;
+		try {
+			writer.write(toLine(entry.relativePath, record));
+			// Flushed to the OS for every line, a killed launcher loses nothing
+			writer.flush();
+		} catch(IOException exception) {
+			LogManager.logWarning("Failed to write the download journal, an interrupted update will start over", exception);
+		}
+	}
+
+	/**
+	 * Deletes the journal after all files were downloaded.
+	 */
+	public synchronized void complete() {
+		close();
+		if(file.exists() && !file.delete()) LogManager.logWarning("Failed to delete " + file.getAbsolutePath());
+	}
+
+	@Override
+	public synchronized void close() {
+		if(writer == null) return;
+		try {
+			writer.close();
+		} catch(IOException exception) {
+			LogManager.logWarning("Failed to close the download journal", exception);
+		}
+		writer = null;
+	}
+
+	private static String toLine(String path, Record record) {
+		JSONObject json = new JSONObject();
+		json.put("path", path);
+		json.put("checksum", record.checksum);
+		json.put("state", record.state.name());
+		json.put("offset", record.offset);
+		return json + "\n";
+	}
+
+	public enum State {
+		PENDING, IN_PROGRESS, VERIFIED
+	}
+
+	private record Record(String checksum, State state, long offset) {
+	}
+}
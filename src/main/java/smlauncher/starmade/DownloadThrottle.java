@@ -0,0 +1,105 @@
+package smlauncher.starmade;
+
+import smlauncher.metrics.LauncherMetrics;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The bandwidth limit shared by all game downloads, so an update does not saturate the connection of a host that runs
+ * game servers.
+ * <p>Every download thread takes from the same {@link BandwidthLimiter}. By default the limit only applies while a game
+ * or server process runs on the host, including ones started by other launchers, and downloads run at full speed
+ * otherwise. The limit is checked for every chunk, so changes apply to downloads already running. The processes are
+ * listed on a background thread while downloads run, a chunk only reads the last result.</p>
+ */
+public final class DownloadThrottle {
+
+	private static final long GAME_CHECK_MILLIS = 2000;
+	private static final long WINDOW_NANOS = 1_000_000_000L;
+	private static final BandwidthLimiter limiter = new BandwidthLimiter(0);
+	private static final AtomicBoolean checkingGame = new AtomicBoolean();
+	private static final ExecutorService gameCheck = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "Download-Throttle");
+		thread.setDaemon(true);
+		return thread;
+	});
+	private static volatile long limit;
+	private static volatile boolean whilePlayingOnly = true;
+	private static volatile boolean gameRunning;
+	private static volatile long lastGameCheck;
+	private static long windowStart = System.nanoTime();
+	private static long windowBytes;
+	private static volatile double throughput;
+
+	private DownloadThrottle() {
+	}
+
+	/**
+	 * @param kilobytesPerSecond the limit in KB/s, or 0 for none
+	 * @param whilePlayingOnly   whether the limit only applies while a game or server process runs
+	 */
+	public static void configure(long kilobytesPerSecond, boolean whilePlayingOnly) {
+		limit = Math.max(0, kilobytesPerSecond) * 1024;
+		DownloadThrottle.whilePlayingOnly = whilePlayingOnly;
+		lastGameCheck = 0;
+	}
+
+	/**
+	 * Waits until the given number of downloaded bytes may pass, and counts them for the throughput.
+	 *
+	 * @throws InterruptedIOException if the download thread is interrupted while waiting
+	 */
+	public static void throttle(int bytes) throws InterruptedIOException {
+		limiter.setRate(getEffectiveLimit());
+		long waited = limiter.acquire(bytes);
+		if(waited > 0) LauncherMetrics.DOWNLOAD_THROTTLE_NANOS.add(waited);
+		synchronized(DownloadThrottle.class) {
+			windowBytes += bytes;
+			long now = System.nanoTime();
+			if(now - windowStart >= WINDOW_NANOS) {
+				throughput = windowBytes * 1e9 / (now - windowStart);
+				windowStart = now;
+				windowBytes = 0;
+			}
+		}
+	}
+
+	/**
+	 * @return the limit in bytes per second that applies now, or 0 for none
+	 */
+	public static long getEffectiveLimit() {
+		long currentLimit = limit;
+		if(currentLimit <= 0 || !whilePlayingOnly) return currentLimit;
+		return isGameRunning() ? currentLimit : 0;
+	}
+
+	/**
+	 * @return the download rate in bytes per second over the last second with downloads
+	 */
+	public static double getThroughput() {
+		// A rate that stopped updating means downloads stopped
+		synchronized(DownloadThrottle.class) {
+			if(System.nanoTime() - windowStart > 2 * WINDOW_NANOS) return 0;
+		}
+		return throughput;
+	}
+
+	private static boolean isGameRunning() {
+		long now = System.currentTimeMillis();
+		if(now - lastGameCheck >= GAME_CHECK_MILLIS && checkingGame.compareAndSet(false, true)) {
+			lastGameCheck = now;
+			gameCheck.execute(() -> {
+				try {
+					// Processes of other users may hide their command line, those are not counted
+					gameRunning = ProcessHandle.allProcesses().anyMatch(process -> process.info().commandLine().map(command -> command.contains("StarMade.jar")).orElse(false));
+				} finally {
+					checkingGame.set(false);
+				}
+			});
+		}
+		return gameRunning;
+	}
+}
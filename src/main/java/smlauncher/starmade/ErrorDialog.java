@@ -70,7 +70,7 @@ public class ErrorDialog extends JDialog {
 		JButton reportButton = new JButton("Report");
 		reportButton.addActionListener(e -> {
 			dispose();
-			File reportFile = LogManager.createErrorReport(error, description, exception);
+			File reportFile = LogManager.createErrorReport(error, description, exception, 5);
 			if(reportFile != null) JOptionPane.showMessageDialog(null, "Error report saved to: " + reportFile.getAbsolutePath(), "\nPlease create a new bug report on the GitHub issues page and upload this file!", JOptionPane.INFORMATION_MESSAGE);
 			else JOptionPane.showMessageDialog(null, "Failed to save error report", "Error Report", JOptionPane.ERROR_MESSAGE);
 			try {
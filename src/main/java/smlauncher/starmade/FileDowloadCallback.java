@@ -1,9 +0,0 @@
-package smlauncher.starmade;
-
-public interface FileDowloadCallback {
-	void update(FileDownloadUpdate u);
-
-	void update(String u);
-
-	void done(FileDownloadUpdate u);
-}
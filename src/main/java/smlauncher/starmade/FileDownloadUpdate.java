@@ -1,14 +0,0 @@
-package smlauncher.starmade;
-
-// TODO merge with DownloadStatus
-public class FileDownloadUpdate {
-	public long downloaded;
-	public long size;
-	public String fileName;
-	public int index;
-	public int total;
-	public long totalSize;
-	public long currentSize;
-	public double downloadSpeed;
-
-}
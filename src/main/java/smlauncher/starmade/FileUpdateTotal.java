@@ -1,13 +1,14 @@
 package smlauncher.starmade;
 
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The progress of all files of an update, shared by the download threads.
+ */
 public class FileUpdateTotal {
 
+	public final AtomicLong currentSize = new AtomicLong();
 	public int total;
-	public int index;
 	public long totalSize;
-	public long currentSize;
-	public long lastSpeedSize;
-	public long startTime;
-	public double downloadSpeed;
 
 }
@@ -2,6 +2,7 @@ package smlauncher.starmade;
 
 import org.apache.commons.io.output.StringBuilderWriter;
 import smlauncher.LogManager;
+import smlauncher.metrics.LauncherMetrics;
 
 import java.io.*;
 import java.net.*;
@@ -162,96 +163,31 @@ public class FileUtil {
 
 	public static long getExtractedFilesSize(File zip) throws IOException {
 		long size = 0;
-		ZipFile zipFile = new ZipFile(zip);
-
-		try {
-			Enumeration<?> e = zipFile.entries();
+		try(ZipFile zipFile = new ZipFile(zip)) {
+			Enumeration<? extends ZipEntry> e = zipFile.entries();
 			while(e.hasMoreElements()) {
-				ZipEntry ze = (ZipEntry) e.nextElement();
-				long uncompressedSize = ze.getSize();
-				//				long compressedSize = ze.getCompressedSize();
-				//				System.err.println("FILE SIZE: "+ze.getName()+": "+uncompressedSize);
-				size += uncompressedSize;
+				long uncompressedSize = e.nextElement().getSize();
+				if(uncompressedSize > 0) size += uncompressedSize;
 			}
-		} finally {
-			zipFile.close();
 		}
 		return size;
 	}
 
+	/**
+	 * Extracts a zip archive on multiple threads.
+	 *
+	 * @param zip         the archive to extract
+	 * @param installPath the directory to extract into
+	 * @param replace     a regex removed from the start of each entry name, or null
+	 * @param callback    notified for every extracted file and polled for cancellation, may be null
+	 * @throws IOException if the archive could not be extracted or the extraction was cancelled
+	 * @see ZipExtractor
+	 */
 	public static void extract(File zip, String installPath, String replace, FolderZipper.ZipCallback callback) throws IOException {
-		if(!installPath.endsWith("/")) {
-			installPath += "/";
-		}
-		ZipFile zipFile = new ZipFile(zip);
-
-		{
-			Enumeration<? extends ZipEntry> entries = zipFile.entries();
-
-			File f = new File(installPath);
-			f.mkdirs();
-
-			//			while (entries.hasMoreElements()) {
-			//				System.err.println("zip ENTRY: "+entries.nextElement().getName());
-			//			}
-		}
-		Enumeration<? extends ZipEntry> entries = zipFile.entries();
-
-		File f = new File(installPath);
-		f.mkdirs();
-		while(entries.hasMoreElements()) {
-			ZipEntry entry = entries.nextElement();
-			if(entry.isDirectory()) {
-				// Assume directories are stored parents first then children.
-
-				//				System.err.println("Extracting directory: " + entry.getName());
-				// This is not robust, just for demonstration purposes.
-
-				if(replace != null) {
-					(new File(installPath + entry.getName().replaceFirst(replace, ""))).mkdir();
-				} else {
-					(new File(installPath + entry.getName())).mkdir();
-				}
-
-				continue;
-			}
-			String s = entry.getName();
-
-			if(replace != null) {
-				s = entry.getName().replaceFirst(replace, "");
-			} else {
-				s = entry.getName();
-			}
-
-			int i = s.lastIndexOf('/');
-			//			System.err.println("INDEX: "+i+" "+entry.getName()+" -> "+"/");
-			if(i >= 0) {
-				String path = s.substring(0, i);
-				File p = new File(installPath + path);
-				if(!p.exists()) {
-					//					System.err.println("MKDIRS: "+p.getAbsolutePath());
-					p.mkdirs();
-				}
-			}
-
-			File extr;
-
-			if(replace != null) {
-				extr = new File(installPath + entry.getName().replaceFirst(replace, ""));
-			} else {
-				extr = new File(installPath + entry.getName());
-			}
-
-			if(callback != null) {
-				callback.update(extr);
-			}
-			System.err.println("Extracting file: " + entry.getName() + " exists: " + f.exists() + ", is Dir: " + f.isDirectory() + ". " + f.getAbsolutePath());
-			BufferedInputStream bufferedInputStream = new BufferedInputStream(zipFile.getInputStream(entry));
-			BufferedOutputStream bufferedOutputStream = new BufferedOutputStream(new FileOutputStream(extr));
-			copyInputStream(bufferedInputStream, bufferedOutputStream);
-
-		}
-		zipFile.close();
+		ZipExtractor extractor = new ZipExtractor(zip, installPath);
+		extractor.setReplace(replace);
+		extractor.setCallback(callback);
+		extractor.extract();
 	}
 
 	public static void main(String[] sdf) {
@@ -317,23 +253,27 @@ public class FileUtil {
 			//			connection.setRequestProperty ("Authorization", "Basic " + encoding);
 			InputStream input;
 
-			if(resume) {
-				if(destination.exists()) {
-					long downloadedSize = destination.length();
-					connection.setAllowUserInteraction(true);
-					connection.setRequestProperty("Range", "bytes=" + downloadedSize + "-");
-					connection.setConnectTimeout(14000);
-					input = new BufferedInputStream(connection.getInputStream());
-					input.skip(downloadedSize); //Skip downloaded size
-				} else {
-					input = new BufferedInputStream(connection.getInputStream());
+			boolean append = false;
+			if(resume && destination.exists() && destination.length() > 0) {
+				long downloadedSize = destination.length();
+				connection.setAllowUserInteraction(true);
+				connection.setRequestProperty("Range", "bytes=" + downloadedSize + "-");
+				connection.setConnectTimeout(14000);
+				if(connection instanceof HttpURLConnection httpConnection) {
+					int responseCode = httpConnection.getResponseCode();
+					// The partial file already has every byte, its checksum tells whether it is intact
+					if(responseCode == 416) {
+						if(cb != null) cb.doneDownloading();
+						return;
+					}
+					// The server only sends the missing bytes if it honours the range, otherwise the whole file
+					append = responseCode == HttpURLConnection.HTTP_PARTIAL;
 				}
-
-			} else {
-				input = new BufferedInputStream(connection.getInputStream());
 			}
+			input = new BufferedInputStream(connection.getInputStream());
+			if(cb != null) cb.started(append ? destination.length() : 0);
 
-			copyInputStreamToFile(input, destination, cb);
+			copyInputStreamToFile(input, destination, cb, append);
 		} catch(IOException e) {
 			if(resume) {
 				try {
@@ -365,8 +305,15 @@ public class FileUtil {
 	 * @since 2.0
 	 */
 	public static void copyInputStreamToFile(InputStream source, File destination, DownloadCallback cb) throws IOException {
+		copyInputStreamToFile(source, destination, cb, false);
+	}
+
+	/**
+	 * Copies bytes from an {@link InputStream} to a file, appending them if {@code append} is set.
+	 */
+	public static void copyInputStreamToFile(InputStream source, File destination, DownloadCallback cb, boolean append) throws IOException {
 		try {
-			FileOutputStream output = openOutputStream(destination);
+			FileOutputStream output = openOutputStream(destination, append);
 			try {
 				copy(source, output, cb);
 				output.close(); // don't swallow close Exception if copy completes normally
@@ -816,6 +763,7 @@ public class FileUtil {
 		long count = 0;
 		int n = 0;
 		while(EOF != (n = input.read(buffer))) {
+			DownloadThrottle.throttle(n);
 			output.write(buffer, 0, n);
 			count += n;
 			if(cb != null) {
@@ -833,6 +781,8 @@ public class FileUtil {
 
 		byte[] buffer = new byte[1024];
 		MessageDigest complete;
+		long start = System.nanoTime();
+		long bytes = 0;
 		try {
 			complete = MessageDigest.getInstance("SHA1");
 
@@ -840,8 +790,12 @@ public class FileUtil {
 
 			while((numRead = fis.read(buffer)) != -1) {
 				complete.update(buffer, 0, numRead);
+				bytes += numRead;
 			}
 
+			LauncherMetrics.HASHED_FILES.inc();
+			LauncherMetrics.HASHED_BYTES.add(bytes);
+			LauncherMetrics.HASH_NANOS.add(System.nanoTime() - start);
 			return complete.digest();
 		} catch(NoSuchAlgorithmException e) {
 			throw new IOException(e);
@@ -938,23 +892,6 @@ public class FileUtil {
 
 	}
 
-	public static int countFilesRecusrively(String path) {
-		File f = new File(path);
-		int c = 0;
-		File[] listFiles = f.listFiles();
-		if(listFiles != null) {
-			for(int i = 0; i < listFiles.length; i++) {
-				if(listFiles[i].isDirectory()) {
-					c += countFilesRecusrively(listFiles[i].getAbsolutePath());
-					c++;
-				} else {
-					c++;
-				}
-			}
-		}
-		return c;
-	}
-
 	private static void createFilesHashRecursively(String path, FileFilter fn, ArrayList<File> files) throws IOException {
 
 		File f = new File(path);
@@ -1,8 +1,14 @@
 package smlauncher.starmade;
 
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
 import smlauncher.LogManager;
 
 import java.io.*;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.zip.Deflater;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
@@ -159,7 +165,99 @@ public class FolderZipper {
 
 	}
 
+	/**
+	 * Zips the files of a {@link BackupPlan} into the destZipFile. Entries are written in the order of the plan,
+	 * followed by a {@link BackupManifest} of everything that was stored. Files that can not be read are skipped and
+	 * recorded in the manifest.
+	 *
+	 * @param plan        the files to zip
+	 * @param destZipFile the path of the destination zipFile. This file will be created or erased.
+	 * @param cb          notified before every file with its size, may be null
+	 * @return the manifest written to the zip
+	 * @throws IOException if the zip file could not be written
+	 */
+	public static BackupManifest zipFiles(BackupPlan plan, String destZipFile, ZipCallback cb) throws IOException {
+		return zipFiles(plan, destZipFile, Deflater.DEFAULT_COMPRESSION, cb);
+	}
+
+	/**
+	 * Zips the files of a {@link BackupPlan} at the given deflate level.
+	 * <p>The zip is written to a seekable file, so stored entries get their CRC and size written into their header once
+	 * the file was read, without reading it twice.</p>
+	 *
+	 * @param level the deflate level, 0 stores the files without compression
+	 * @see #zipFiles(BackupPlan, String, ZipCallback)
+	 */
+	public static BackupManifest zipFiles(BackupPlan plan, String destZipFile, int level, ZipCallback cb) throws IOException {
+		File destFile = new File(destZipFile);
+		System.out.println("[ZIP] Writing " + plan.getFileCount() + " files (" + plan.getTotalBytes() / (1024 * 1024) + " MB) to " + destFile.getAbsolutePath() + " (level " + level + ")");
+		BackupManifest manifest = new BackupManifest();
+		try(ZipArchiveOutputStream zip = new ZipArchiveOutputStream(destFile)) {
+			zip.setMethod(level == Deflater.NO_COMPRESSION ? ZipEntry.STORED : ZipEntry.DEFLATED);
+			zip.setLevel(level);
+			byte[] buf = new byte[1024 * 64];
+			MessageDigest digest = BackupManifest.newDigest();
+			for(BackupPlan.Entry entry : plan.getFiles()) {
+				if(cb != null) {
+					if(cb.isCancelled()) throw new InterruptedIOException("Zipping to " + destZipFile + " was cancelled");
+					cb.update(entry.path().toFile(), entry.size());
+				}
+				try(InputStream in = Files.newInputStream(entry.path())) {
+					ZipArchiveEntry zipEntry = new ZipArchiveEntry(entry.name());
+					zipEntry.setTime(entry.lastModified());
+					zip.putArchiveEntry(zipEntry);
+					digest.reset();
+					long size = 0;
+					int len;
+					while(true) {
+						try {
+							len = in.read(buf);
+						} catch(IOException exception) {
+							// The entry is already started, keep what was read and mark the file as incomplete
+							LogManager.logWarning("Error while reading file for zip: " + entry.path(), exception);
+							manifest.addSkipped(entry.name(), "Read failed after " + size + " bytes: " + exception.getMessage());
+							size = -1;
+							break;
+						}
+						if(len < 0) break;
+						zip.write(buf, 0, len);
+						digest.update(buf, 0, len);
+						size += len;
+					}
+					zip.closeArchiveEntry();
+					if(size >= 0) manifest.addFile(entry.name(), size, digest.digest(), entry.lastModified());
+				} catch(FileSystemException exception) {
+					LogManager.logWarning("Error while adding file to zip: " + entry.path(), exception);
+					manifest.addSkipped(entry.name(), exception.getClass().getSimpleName() + ": " + exception.getMessage());
+				}
+			}
+			zip.putArchiveEntry(new ZipArchiveEntry(BackupManifest.NAME));
+			zip.write(manifest.toBytes());
+			zip.closeArchiveEntry();
+		}
+		return manifest;
+	}
+
 	public interface ZipCallback {
 		void update(File f);
+
+		/**
+		 * Called instead of {@link #update(File)} when the size of the file is known up front.
+		 *
+		 * @param f    the file that is about to be processed
+		 * @param size the file size in bytes
+		 */
+		default void update(File f, long size) {
+			update(f);
+		}
+
+		/**
+		 * Polled by long-running archive operations to find out whether they should stop early.
+		 *
+		 * @return true to cancel the operation
+		 */
+		default boolean isCancelled() {
+			return false;
+		}
 	}
 }
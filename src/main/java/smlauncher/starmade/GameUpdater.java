@@ -1,7 +1,11 @@
 package smlauncher.starmade;
 
 import com.formdev.flatlaf.FlatDarkLaf;
+import smlauncher.LaunchSettings;
 import smlauncher.LogManager;
+import smlauncher.event.ConsoleProgressRenderer;
+import smlauncher.event.ProgressBus;
+import smlauncher.event.ProgressEvent;
 import smlauncher.util.OperatingSystem;
 
 import javax.swing.*;
@@ -18,7 +22,7 @@ import java.util.*;
  * @author TheDerpGamer
  */
 // todo move to new package
-public class GameUpdater extends Observable {
+public class GameUpdater {
 	public static final int BACK_NONE = 0;
 	public static final int BACK_DB = 1;
 	public static final int BACK_ALL = 2;
@@ -28,36 +32,61 @@ public class GameUpdater extends Observable {
 	public static String MIRROR_SITE = "http://files.star-made.org/mirrors";
 	public final ArrayList<IndexFileEntry> versions = new ArrayList<>();
 	private final ArrayList<String> mirrorURLs = new ArrayList<>();
-	private final StarMadeBackupTool backup = new StarMadeBackupTool();
+	private final ProgressBus events = new ProgressBus();
+	private final StarMadeBackupTool backup = new StarMadeBackupTool(events);
 	boolean loading;
 	boolean versionsLoaded;
-	private boolean updating;
+	private volatile boolean updating;
+	private volatile boolean updateSucceeded;
+	private Thread updateThread;
 
 	public GameUpdater(String installDir) {
 		reloadVersion(installDir);
 	}
 
-	public static void withoutGUI(boolean force, String installDir, GameBranch branch, int backUp, boolean selectVersion) {
+	/**
+	 * Updates the game in the install directory and waits until the update is finished, so the game is never started
+	 * while its files are still being written.
+	 *
+	 * @return true if the game is up to date, false if the update failed or the EULA was not accepted
+	 */
+	public static boolean withoutGUI(boolean force, String installDir, GameBranch branch, int backUp, boolean selectVersion) {
 		GameUpdater u = new GameUpdater(installDir);
+		ConsoleProgressRenderer.attach(u.events);
 		try {
 			u.startLoadVersionList(branch);
 			while(u.loading) {
 				Thread.sleep(100);
 			}
+			if(!u.versionsLoaded) {
+				System.err.println("Could not load the list of game versions");
+				return false;
+			}
 
-			if(selectVersion) selectVersion(true, u, force, installDir, branch, backUp, selectVersion);
-			else {
+			if(selectVersion) {
+				if(!selectVersion(true, u, force, installDir, branch, backUp, selectVersion)) return false;
+			} else {
 				if(u.isNewerVersionAvailable()) {
 					System.err.println("A New Version Is Available!");
-					u.startUpdateNew(installDir, u.versions.get(u.versions.size() - 1), false, backUp);
-				} else System.err.println("You Are Already on the Newest Version: use -force to force an update");
+					if(!u.startUpdateNew(installDir, u.versions.get(u.versions.size() - 1), false, backUp)) return false;
+				} else {
+					System.err.println("You Are Already on the Newest Version: use -force to force an update");
+					return true;
+				}
 			}
+			u.updateThread.join();
+			return u.updateSucceeded;
 		} catch(InterruptedException e) {
 			LogManager.logWarning("Error while checking Launcher Version", e);
+			Thread.currentThread().interrupt();
+			return false;
 		}
 	}
 
-	public static void selectVersion(boolean display, GameUpdater u, boolean force, String installDir, GameBranch f, int backUp, boolean selectVersion) {
+	/**
+	 * @return true if the update of the selected version was started
+	 */
+	public static boolean selectVersion(boolean display, GameUpdater u, boolean force, String installDir, GameBranch f, int backUp, boolean selectVersion) {
 		if(display) {
 			for(int i = 0; i < u.versions.size(); i++) {
 				System.out.println("[" + i + "] v" + u.versions.get(i).version() + "; " + u.versions.get(i).build());
@@ -71,19 +100,16 @@ public class GameUpdater extends Observable {
 			k = Integer.parseInt(br.readLine());
 		} catch(NumberFormatException e) {
 			System.out.println("Error: Input must be number");
-			selectVersion(false, u, force, installDir, f, backUp, selectVersion);
-			return;
+			return selectVersion(false, u, force, installDir, f, backUp, selectVersion);
 		} catch(IOException e) {
 			LogManager.logWarning("Error while checking Launcher Version", e);
-			selectVersion(false, u, force, installDir, f, backUp, selectVersion);
-			return;
+			return selectVersion(false, u, force, installDir, f, backUp, selectVersion);
 		}
 		if(k < 0 || k >= u.versions.size() - 1) {
 			System.out.println("Error: Version does not exist");
-			selectVersion(false, u, force, installDir, f, backUp, selectVersion);
-			return;
+			return selectVersion(false, u, force, installDir, f, backUp, selectVersion);
 		}
-		u.startUpdateNew(installDir, u.versions.get(k), false, backUp);
+		return u.startUpdateNew(installDir, u.versions.get(k), false, backUp);
 	}
 
 	public static int askBackup(JFrame f) {
@@ -122,10 +148,15 @@ public class GameUpdater extends Observable {
 		return f;
 	}
 
-	@Override
-	public synchronized void addObserver(Observer o) {
-		super.addObserver(o);
-		backup.addObserver(o);
+	/**
+	 * @return the bus that receives the status and the progress of version loading, backups and updates
+	 */
+	public ProgressBus getEvents() {
+		return events;
+	}
+
+	private void publishStatus(String message) {
+		events.publish(new ProgressEvent.Status(ProgressEvent.Stage.UPDATE, message));
 	}
 
 	public boolean isNewerVersionAvailable() {
@@ -149,8 +180,7 @@ public class GameUpdater extends Observable {
 	}
 
 	private void loadVersionList(GameBranch branch) throws IOException {
-		setChanged();
-		notifyObservers("Retrieving Launcher Version");
+		publishStatus("Retrieving Launcher Version");
 
 		loading = true;
 		try {
@@ -161,8 +191,7 @@ public class GameUpdater extends Observable {
 			loading = false;
 		}
 
-		setChanged();
-		notifyObservers("Retrieving Mirrors");
+		publishStatus("Retrieving Mirrors");
 		loading = true;
 		URL urlMirrors;
 		try {
@@ -184,8 +213,7 @@ public class GameUpdater extends Observable {
 			loading = false;
 		}
 
-		setChanged();
-		notifyObservers("Retrieving Versions");
+		publishStatus("Retrieving Versions");
 		loading = true;
 		URL url;
 		try {
@@ -210,8 +238,7 @@ public class GameUpdater extends Observable {
 			System.err.println("loaded files (sorted) " + versions);
 			in.close();
 			versionsLoaded = true;
-			setChanged();
-			notifyObservers("versions loaded");
+			publishStatus("Versions loaded");
 			openConnection.getInputStream().close();
 		} catch(Exception exception) {
 			LogManager.logWarning("Error while checking Launcher Version", exception);
@@ -239,8 +266,13 @@ public class GameUpdater extends Observable {
 		}).start();
 	}
 
-	public void startUpdateNew(String installDirStr, IndexFileEntry newest, boolean forced, int backupFromMain) {
-		if(updating) return;
+	/**
+	 * Asks for the EULA if it was not accepted yet and starts the update on a background thread.
+	 *
+	 * @return true if the update was started, false if an update is already running or the EULA was declined
+	 */
+	public boolean startUpdateNew(String installDirStr, IndexFileEntry newest, boolean forced, int backupFromMain) {
+		if(updating) return false;
 		try {
 			Eula eula = getEula();
 			if(GraphicsEnvironment.isHeadless()) {
@@ -252,14 +284,9 @@ public class GameUpdater extends Observable {
 					String line = br.readLine();
 					if(!"y".equalsIgnoreCase(line)) {
 						System.out.println("You must accept the EULA to continue");
-						return;
-					} else {
-						File file = new File(OperatingSystem.getAppDir(), "eula.properties");
-						Properties p = new Properties();
-						p.setProperty("eula", "true");
-						p.store(new FileOutputStream(file), "StarMade EULA");
-						startUpdateNew(installDirStr, newest, forced, backupFromMain);
+						return false;
 					}
+					acceptEula(eula);
 				}
 			} else {
 				EventQueue.invokeLater(FlatDarkLaf::setup);
@@ -285,22 +312,15 @@ public class GameUpdater extends Observable {
 					JPanel buttonPanel = new JPanel();
 					buttonPanel.setLayout(new FlowLayout());
 					JButton acceptButton = new JButton("I have read the EULA and accept");
+					boolean[] accepted = {false};
 					acceptButton.addActionListener(e -> {
-						File file = null;
 						try {
-							file = new File(OperatingSystem.getAppDir(), "eula.properties");
-						} catch(IOException ex) {
-							LogManager.logFatal("An unexpected error occurred while attempting to accept EULA", ex);
-						}
-						Properties p = new Properties();
-						p.setProperty("eula", "true");
-						try {
-							p.store(new FileOutputStream(file), "StarMade EULA");
+							acceptEula(eula);
 						} catch(IOException e1) {
 							LogManager.logFatal("An unexpected error occurred while attempting to accept EULA", e1);
 						}
+						accepted[0] = true;
 						dialog.dispose();
-						startUpdateNew(installDirStr, newest, forced, backupFromMain);
 					});
 
 					JButton declineButton = new JButton("I don't accept");
@@ -311,6 +331,7 @@ public class GameUpdater extends Observable {
 					buttonPanel.add(declineButton);
 					dialog.add(buttonPanel, BorderLayout.SOUTH);
 					dialog.setVisible(true);
+					if(!accepted[0]) return false;
 				}
 			}
 		} catch(IOException exception) {
@@ -335,74 +356,60 @@ public class GameUpdater extends Observable {
 			}
 		}
 
-		setChanged();
-		notifyObservers("updating");
+		publishStatus("Updating");
 
 		File instalDir = new File(installDirStr);
 		downloadDiff(instalDir, installDirStr, newest, backupFromMain, forced);
+		return true;
 	}
 
 	private void downloadDiff(File installDir, String installDirStr, IndexFileEntry version, int backup, boolean forced) {
 		updating = true;
-
-		new Thread(() -> {
+		updateSucceeded = false;
+		updateThread = new Thread(() -> {
+			// The update downloads whatever the prefetcher has not staged yet, stopping it may wait for its last write
+			UpdatePrefetcher.stop();
+			if(LaunchSettings.isUpdatePrefetchEnabled()) UpdatePrefetcher.enableCache();
 			try {
 				if(backup != BACK_NONE) {
-					setChanged();
-					notifyObservers("Creating backup!");
+					publishStatus("Creating backup");
 					boolean removeOld = false;
 					boolean dbOnly = (backup & BACK_DB) == BACK_DB;
 					System.err.println("BACKING UP: " + installDirStr);
+					this.backup.setFormat(LaunchSettings.getBackupFormat(), LaunchSettings.getBackupLevel(dbOnly));
 					this.backup.backUp(installDirStr, "server-database", String.valueOf(System.currentTimeMillis()), ".zip", removeOld, dbOnly, null);
 				}
 
-				setChanged();
-				notifyObservers("Retrieving checksums for v" + version.version() + "(build " + version.build() + ")");
+				publishStatus("Retrieving checksums for v" + version.version() + " (build " + version.build() + ")");
 
 				// TODO reused code
 				String buildDir = FILES_URL + version.path() + "/";
 				ChecksumFile checksums = getChecksums(buildDir);
 				System.err.println("Downloaded checksums: \n" + checksums);
 
-				checksums.download(forced, buildDir, installDir, installDirStr, new FileDowloadCallback() {
-					@Override
-					public void update(FileDownloadUpdate u) {
-						setChanged();
-						notifyObservers(u);
-					}
-
-					@Override
-					public void update(String u) {
-						setChanged();
-						notifyObservers(u);
-					}
-
-					@Override
-					public void done(FileDownloadUpdate u) {
-
-					}
-				});
-
-				setChanged();
-				notifyObservers("Update Successfull!");
-
-				try {
-					Thread.sleep(500);
-				} catch(InterruptedException e) {
-					LogManager.logWarning("Error while checking Launcher Version", e);
-				}
-				setChanged();
-				notifyObservers("reset");
+				checksums.download(forced, buildDir, installDir, installDirStr, events);
+				updateSucceeded = true;
+				events.publish(new ProgressEvent.Finished(ProgressEvent.Stage.UPDATE, true, "Updated to v" + version.version() + " (build " + version.build() + ")"));
 			} catch(Exception e1) {
-				setChanged();
-				notifyObservers("failed IO");
+				events.publish(new ProgressEvent.Finished(ProgressEvent.Stage.UPDATE, false, String.valueOf(e1.getMessage())));
 				LogManager.logException("Error occurred while updating game", e1);
 			} finally {
 				updating = false;
-				setChanged();
-				notifyObservers("finished");
 			}
-		}).start();
+		}, "Game-Updater");
+		updateThread.start();
+	}
+
+	/**
+	 * Remembers the accepted EULA by its title, so it is only asked for again when it changes.
+	 */
+	private static void acceptEula(Eula eula) throws IOException {
+		File file = new File(OperatingSystem.getAppDir(), "eula.properties");
+		Properties p = new Properties();
+		p.setProperty("EULA", eula.title);
+		try(FileOutputStream out = new FileOutputStream(file)) {
+			p.store(out, "StarMade EULA");
+		}
 	}
 
 	public Eula getEula() throws IOException {
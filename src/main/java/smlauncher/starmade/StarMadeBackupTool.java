@@ -1,67 +1,120 @@
 package smlauncher.starmade;
 
+import smlauncher.event.ProgressBus;
+import smlauncher.event.ProgressEvent;
+import smlauncher.metrics.LauncherMetrics;
+
 import java.io.File;
 import java.io.FileFilter;
 import java.io.IOException;
-import java.util.Observable;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 
 /**
  * Backs up the game directory.
  *
  * @author TheDerpGamer
  */
-// TODO replace deprecated API
-public class StarMadeBackupTool extends Observable {
+public class StarMadeBackupTool {
 
+	private final ProgressBus events;
 	int file;
 	int maxFile;
+	private BackupFormat format = BackupFormat.ZIP;
+	private int level = -1;
+
+	public StarMadeBackupTool() {
+		this(new ProgressBus());
+	}
+
+	/**
+	 * @param events receives the status and the progress of backups
+	 */
+	public StarMadeBackupTool(ProgressBus events) {
+		this.events = events;
+	}
+
+	public ProgressBus getEvents() {
+		return events;
+	}
+
+	/**
+	 * Sets the archive format and compression level for the next backups.
+	 *
+	 * @param format the archive format
+	 * @param level  the compression level, or -1 for the format's default
+	 */
+	public void setFormat(BackupFormat format, int level) {
+		this.format = format;
+		this.level = level;
+	}
 
-	public void backUp(String installDir, String databasePath, String backupName, String Fileension, boolean removeOldVersion, boolean databaseOnly, FileFilter filter) throws IOException {
+	/**
+	 * Backs up the install directory, or only its database.
+	 *
+	 * @return the backup result with any files that could not be backed up, or null if there was nothing to back up
+	 */
+	public BackupResult backUp(String installDir, String databasePath, String backupName, String Fileension, boolean removeOldVersion, boolean databaseOnly, FileFilter filter) throws IOException {
+		BackupResult result = null;
 		File dir = new File(installDir);
 		if(dir.exists() && dir.list().length > 0) {
-			setChanged();
-			notifyObservers("Backing Up");
-			String backup = ("backup-StarMade-" + VersionContainer.VERSION + "-" + VersionContainer.build + "_" + backupName + (!Fileension.startsWith(".") ? ("." + Fileension) : Fileension));
+			events.publish(new ProgressEvent.Status(ProgressEvent.Stage.BACKUP, "Backing up"));
+			String backup = ("backup-StarMade-" + VersionContainer.VERSION + "-" + VersionContainer.build + "_" + backupName + (!format.isZip() ? format.extension : !Fileension.startsWith(".") ? ("." + Fileension) : Fileension));
 			System.out.println("Backing Up (archiving files)");
 
-			file = 0;
-			if(databaseOnly) maxFile = FileUtil.countFilesRecusrively((new File(installDir)).getAbsolutePath() + File.separator + databasePath);
-			else maxFile = FileUtil.countFilesRecusrively((new File(installDir)).getAbsolutePath());
-			ZipGUICallback guiCallBack = new ZipGUICallback();
-			FolderZipper.ZipCallback zipCallback = f -> {
-				guiCallBack.f = f;
-				guiCallBack.fileMax = maxFile;
-				guiCallBack.fileIndex = file;
-				setChanged();
-				notifyObservers(guiCallBack);
-				file++;
-			};
+			// Walk the source folder once, the same file list drives the progress totals and the archive
+			File source = databaseOnly ? new File(dir.getAbsoluteFile(), databasePath) : dir.getAbsoluteFile();
+			if(!source.isDirectory()) {
+				System.out.println("[BACKUP] Nothing to back up in " + source.getAbsolutePath());
+				return null;
+			}
+			long start = System.currentTimeMillis();
+			BackupPlan plan = BackupPlan.walk(source.toPath(), StarMadeRestoreTool.BACKUP_PREFIX, filter);
+			System.out.println("[BACKUP] Found " + plan.getFileCount() + " files (" + plan.getTotalBytes() / (1024 * 1024) + " MB) in " + (System.currentTimeMillis() - start) + "ms");
 
-			if(databaseOnly) {
+			file = 0;
+			maxFile = plan.getFileCount();
+			long totalBytes = plan.getTotalBytes();
+			long[] bytes = {0};
+			FolderZipper.ZipCallback zipCallback = new FolderZipper.ZipCallback() {
+				@Override
+				public void update(File f) {
+					update(f, 0);
+				}
 
-				// zip everything except backups themselves
-				File f = new File(installDir);
-				for(File fg : f.listFiles()) {
-					if(fg.isDirectory() && fg.getName().equals(databasePath)) FolderZipper.zipFolder(fg.getAbsolutePath(), backup + ".tmp", "backup-StarMade-", zipCallback, "", filter);
+				@Override
+				public void update(File f, long size) {
+					events.publish(new ProgressEvent.Backup(file, maxFile, f.getName(), bytes[0], totalBytes));
+					bytes[0] += size;
+					file++;
 				}
-			} else {
-				// zip everything except backups themselves
-				FolderZipper.zipFolder(installDir, backup + ".tmp", "backup-StarMade-", zipCallback, filter);
+			};
+
+			// The archive is written next to its final location under the backup prefix, so it is never part of the
+			// plan and finishing it is a rename instead of a copy
+			File backUpFile = new File(dir.getAbsoluteFile(), backup + ".tmp");
+			File target = new File(dir.getAbsoluteFile(), backup);
+			BackupManifest manifest;
+			try {
+				manifest = format.write(plan, backUpFile, level, zipCallback);
+				Files.move(backUpFile.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			} finally {
+				Files.deleteIfExists(backUpFile.toPath());
 			}
-			setChanged();
-			notifyObservers("resetbars");
-			System.out.println("Copying Backup mFile to install dir...");
-			File backUpFile = new File(backup + ".tmp");
-			if(backUpFile.exists()) {
-				File file = new File(new File(installDir).getAbsolutePath() + File.separator + backup);
-				System.err.println("Copy to: " + file.getAbsolutePath());
-				DataUtil.copy(backUpFile, file);
-				backUpFile.delete();
+			result = new BackupResult(target, format, manifest.getFiles().size(), manifest.getTotalBytes(), manifest.getSkipped(), System.currentTimeMillis() - start);
+			LauncherMetrics.BACKUPS.inc();
+			LauncherMetrics.BACKUP_DURATION.observe(result.duration() / 1000.0);
+			LauncherMetrics.BACKUP_SIZE.set(target.length());
+			LauncherMetrics.BACKUP_SKIPPED_FILES.add(result.skipped().size());
+			System.out.println("[BACKUP] " + result + " (" + format + ", " + target.length() / (1024 * 1024) + " MB)");
+			if(!result.isComplete()) {
+				for(BackupManifest.Skipped skipped : result.skipped()) System.err.println("[BACKUP] Skipped " + skipped.path() + ": " + skipped.reason());
+				events.publish(new ProgressEvent.Status(ProgressEvent.Stage.BACKUP, "Backup incomplete: " + result.skipped().size() + " files could not be backed up"));
 			}
+			events.publish(new ProgressEvent.Finished(ProgressEvent.Stage.BACKUP, true, result.toString()));
 
 			if(removeOldVersion) {
-				setChanged();
-				notifyObservers("Deleting old installation");
+				events.publish(new ProgressEvent.Status(ProgressEvent.Stage.UPDATE, "Deleting old installation"));
 				System.out.println("Cleaning up current installation");
 
 				//			File oldCatalog = new File(INSTALL_DIR+"/blueprints/Catalog.txt");
@@ -82,5 +135,6 @@ public class StarMadeBackupTool extends Observable {
 			}
 			System.out.println("[BACKUP] DONE");
 		}
+		return result;
 	}
 }
@@ -0,0 +1,269 @@
+package smlauncher.starmade;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Lists and restores backups made by {@link StarMadeBackupTool}.
+ * <p>Zip backup contents are read from the central directory, so listing a backup never extracts it. Zip restores are
+ * extracted in parallel and only write files whose checksum differs from the live file.</p>
+ * <p>Tar.zst backups have no index and are read as a single stream. Their restores skip files whose size and
+ * modification time match the backup.</p>
+ * <p>Files the backup manifest lists as skipped could not be read completely while the backup was made. Their entries
+ * may be truncated, so they are never restored over the live files.</p>
+ */
+public class StarMadeRestoreTool {
+
+	public static final String BACKUP_PREFIX = "backup-StarMade-";
+	private static final String DATABASE_FOLDER = "server-database";
+
+	/**
+	 * Finds all backups in the install directory, newest first.
+	 *
+	 * @param installDir the game install directory
+	 * @return the backup archives
+	 */
+	public static List<File> listBackups(String installDir) {
+		File[] files = new File(installDir).listFiles((dir, name) -> name.startsWith(BACKUP_PREFIX) && (name.endsWith(BackupFormat.ZIP.extension) || name.endsWith(BackupFormat.TAR_ZSTD.extension)));
+		if(files == null) return new ArrayList<>();
+		List<File> backups = new ArrayList<>(Arrays.asList(files));
+		backups.sort(Comparator.comparingLong(File::lastModified).reversed());
+		return backups;
+	}
+
+	/**
+	 * Reads the file list of a backup without extracting it.
+	 *
+	 * @param backup the backup archive
+	 * @return the files in the backup, with paths relative to the install directory
+	 * @throws IOException if the backup could not be read
+	 */
+	public static List<Entry> listContents(File backup) throws IOException {
+		List<Entry> contents = new ArrayList<>();
+		List<String> names = new ArrayList<>();
+		if(BackupFormat.of(backup) == BackupFormat.TAR_ZSTD) {
+			try(TarArchiveInputStream tar = TarZstdArchive.open(backup)) {
+				TarArchiveEntry entry;
+				while((entry = tar.getNextEntry()) != null) {
+					if(entry.getName().equals(BackupManifest.NAME)) continue;
+					names.add(entry.getName());
+					if(entry.isFile()) contents.add(new Entry(entry.getName(), entry.getSize(), entry.getLastModifiedTime().toMillis()));
+				}
+			}
+		} else {
+			try(ZipFile zipFile = new ZipFile(backup)) {
+				Enumeration<? extends ZipEntry> entries = zipFile.entries();
+				while(entries.hasMoreElements()) {
+					ZipEntry entry = entries.nextElement();
+					if(entry.getName().equals(BackupManifest.NAME)) continue;
+					names.add(entry.getName());
+					if(!entry.isDirectory()) contents.add(new Entry(entry.getName(), entry.getSize(), entry.getTime()));
+				}
+			}
+		}
+		String root = findRoot(names);
+		List<Entry> stripped = new ArrayList<>(contents.size());
+		for(Entry entry : contents) stripped.add(new Entry(stripRoot(entry.path(), root), entry.size(), entry.time()));
+		stripped.sort(Comparator.comparing(Entry::path));
+		return stripped;
+	}
+
+	/**
+	 * Restores a backup into the install directory.
+	 *
+	 * @param backup     the backup archive
+	 * @param installDir the game install directory
+	 * @param paths      the files or folders to restore, relative to the install directory, or null to restore
+	 *                   everything
+	 * @param callback   notified for every checked file and polled for cancellation, may be null
+	 * @return the number of files written and skipped, and the files left out because they are incomplete in the backup
+	 * @throws IOException if the backup could not be restored
+	 */
+	public static Result restore(File backup, String installDir, Collection<String> paths, FolderZipper.ZipCallback callback) throws IOException {
+		List<String> selection = new ArrayList<>();
+		if(paths != null) {
+			for(String path : paths) {
+				path = path.replace('\\', '/');
+				while(path.startsWith("/")) path = path.substring(1);
+				while(path.endsWith("/")) path = path.substring(0, path.length() - 1);
+				if(!path.isEmpty()) selection.add(path);
+			}
+		}
+		BackupManifest manifest = readManifest(backup, callback);
+		Map<String, BackupManifest.Skipped> incomplete = new HashMap<>();
+		if(manifest != null) {
+			for(BackupManifest.Skipped file : manifest.getSkipped()) incomplete.put(file.path(), file);
+		}
+		if(BackupFormat.of(backup) == BackupFormat.TAR_ZSTD) return restoreTar(backup, installDir, selection, incomplete, callback);
+
+		String root;
+		try(ZipFile zipFile = new ZipFile(backup)) {
+			List<String> names = new ArrayList<>();
+			Enumeration<? extends ZipEntry> entries = zipFile.entries();
+			while(entries.hasMoreElements()) {
+				String name = entries.nextElement().getName();
+				if(!name.equals(BackupManifest.NAME)) names.add(name);
+			}
+			root = findRoot(names);
+		}
+		ZipExtractor extractor = new ZipExtractor(backup, installDir);
+		if(root != null) extractor.setReplace("^" + Pattern.quote(root));
+		extractor.setCallback(callback);
+		extractor.setSkipUnchanged(true);
+		List<BackupManifest.Skipped> leftOut = Collections.synchronizedList(new ArrayList<>());
+		extractor.setFilter(entry -> {
+			if(entry.getName().equals(BackupManifest.NAME)) return false;
+			if(!selection.isEmpty() && !isSelected(stripRoot(entry.getName(), root), selection)) return false;
+			BackupManifest.Skipped skipped = incomplete.get(entry.getName());
+			if(skipped == null) return true;
+			leftOut.add(skipped);
+			return false;
+		});
+		long start = System.currentTimeMillis();
+		extractor.extract();
+		Result result = new Result(extractor.getWrittenCount(), extractor.getSkippedCount(), List.copyOf(leftOut), System.currentTimeMillis() - start);
+		System.out.println("[RESTORE] Restored " + backup.getName() + ": " + result);
+		return result;
+	}
+
+	private static Result restoreTar(File backup, String installDir, List<String> selection, Map<String, BackupManifest.Skipped> incomplete, FolderZipper.ZipCallback callback) throws IOException {
+		Path destination = new File(installDir).toPath().toAbsolutePath().normalize();
+		int written = 0;
+		int skipped = 0;
+		List<BackupManifest.Skipped> leftOut = new ArrayList<>();
+		long start = System.currentTimeMillis();
+		try(TarArchiveInputStream tar = TarZstdArchive.open(backup)) {
+			String root = null;
+			boolean first = true;
+			TarArchiveEntry entry;
+			while((entry = tar.getNextEntry()) != null) {
+				if(callback != null && callback.isCancelled()) throw new InterruptedIOException("Restore of " + backup.getName() + " was cancelled");
+				// The archive is read once, so the root folder is taken from the first entry
+				if(first && !entry.getName().equals(BackupManifest.NAME)) {
+					root = findRoot(List.of(entry.getName()));
+					first = false;
+				}
+				if(!entry.isFile() || entry.getName().equals(BackupManifest.NAME)) continue;
+				String path = stripRoot(entry.getName(), root);
+				if(!selection.isEmpty() && !isSelected(path, selection)) continue;
+				if(incomplete.containsKey(entry.getName())) {
+					leftOut.add(incomplete.get(entry.getName()));
+					continue;
+				}
+				Path target = destination.resolve(path).normalize();
+				if(!target.startsWith(destination)) throw new IOException("Backup entry is outside of the target directory: " + path);
+				if(callback != null) callback.update(target.toFile(), entry.getSize());
+
+				long time = entry.getLastModifiedTime().toMillis();
+				// Tar stores modification times in whole seconds
+				if(Files.isRegularFile(target) && Files.size(target) == entry.getSize() && Files.getLastModifiedTime(target).toMillis() / 1000 == time / 1000) {
+					skipped++;
+					continue;
+				}
+				if(target.getParent() != null) Files.createDirectories(target.getParent());
+				Files.copy(tar, target, StandardCopyOption.REPLACE_EXISTING);
+				Files.setLastModifiedTime(target, FileTime.fromMillis(time));
+				written++;
+			}
+		}
+		Result result = new Result(written, skipped, leftOut, System.currentTimeMillis() - start);
+		System.out.println("[RESTORE] Restored " + backup.getName() + ": " + result);
+		return result;
+	}
+
+	/**
+	 * Reads the manifest before anything is restored. The manifest is the last entry of a tar.zst backup, so the whole
+	 * archive is read once to find it.
+	 *
+	 * @return the manifest, or null for backups made before manifests existed
+	 */
+	private static BackupManifest readManifest(File backup, FolderZipper.ZipCallback callback) throws IOException {
+		if(BackupFormat.of(backup) == BackupFormat.TAR_ZSTD) {
+			try(TarArchiveInputStream tar = TarZstdArchive.open(backup)) {
+				TarArchiveEntry entry;
+				while((entry = tar.getNextEntry()) != null) {
+					if(callback != null && callback.isCancelled()) throw new InterruptedIOException("Restore of " + backup.getName() + " was cancelled");
+					if(entry.isFile() && entry.getName().equals(BackupManifest.NAME)) return BackupManifest.read(tar);
+				}
+			}
+			return null;
+		}
+		try(ZipFile zipFile = new ZipFile(backup)) {
+			ZipEntry entry = zipFile.getEntry(BackupManifest.NAME);
+			if(entry == null) return null;
+			try(InputStream in = zipFile.getInputStream(entry)) {
+				return BackupManifest.read(in);
+			}
+		}
+	}
+
+	private static boolean isSelected(String path, List<String> selection) {
+		for(String selected : selection) {
+			if(path.equals(selected) || path.startsWith(selected + "/")) return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Full backups store every file under the name of the install folder, database backups start at the database
+	 * folder. Returns the folder prefix to remove so entry paths become relative to the install directory.
+	 */
+	private static String findRoot(List<String> names) {
+		String root = null;
+		for(String name : names) {
+			int slash = name.indexOf('/');
+			if(slash <= 0) return null;
+			String first = name.substring(0, slash + 1);
+			if(root == null) root = first;
+			else if(!root.equals(first)) return null;
+		}
+		if(root == null || root.equals(DATABASE_FOLDER + "/")) return null;
+		return root;
+	}
+
+	private static String stripRoot(String name, String root) {
+		if(root != null && name.startsWith(root)) return name.substring(root.length());
+		return name;
+	}
+
+	/**
+	 * A file stored in a backup.
+	 *
+	 * @param path the path relative to the install directory
+	 * @param size the uncompressed size in bytes
+	 * @param time the last modified time
+	 */
+	public record Entry(String path, long size, long time) {
+	}
+
+	/**
+	 * The outcome of a restore.
+	 *
+	 * @param written    the number of files that were restored
+	 * @param skipped    the number of files that were already identical to the backup
+	 * @param incomplete the files that were not restored because the manifest lists them as skipped during the backup
+	 * @param duration   the time taken in milliseconds
+	 */
+	public record Result(int written, int skipped, List<BackupManifest.Skipped> incomplete, long duration) {
+
+		@Override
+		public String toString() {
+			String result = String.format("%d files restored, %d unchanged files skipped in %.1fs", written, skipped, duration / 1000.0);
+			if(!incomplete.isEmpty()) result += ", " + incomplete.size() + " files left out because they are incomplete in the backup";
+			return result;
+		}
+	}
+}
@@ -0,0 +1,123 @@
+package smlauncher.starmade;
+
+import com.github.luben.zstd.ZstdInputStream;
+import com.github.luben.zstd.ZstdOutputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import smlauncher.LogManager;
+
+import java.io.*;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+
+/**
+ * Reads and writes zstd compressed tar backups.
+ * <p>Compression runs on zstd's own worker threads, so the archive is written as one stream while every core
+ * compresses.</p>
+ */
+public class TarZstdArchive {
+
+	private static final int BUFFER_SIZE = 1024 * 64;
+	private static final int MAX_WORKERS = 8;
+
+	/**
+	 * Writes the files of a backup plan to a tar.zst archive, followed by a {@link BackupManifest} of everything that
+	 * was stored.
+	 *
+	 * @param plan  the files to archive
+	 * @param dest  the archive to create, replaced if it exists
+	 * @param level the zstd level (1-22)
+	 * @param cb    notified before every file with its size, may be null
+	 * @return the manifest written to the archive
+	 * @throws IOException if the archive could not be written
+	 */
+	public static BackupManifest write(BackupPlan plan, File dest, int level, FolderZipper.ZipCallback cb) throws IOException {
+		int workers = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), MAX_WORKERS));
+		System.out.println("[TAR] Writing " + plan.getFileCount() + " files (" + plan.getTotalBytes() / (1024 * 1024) + " MB) to " + dest.getAbsolutePath() + " (zstd level " + level + ", " + workers + " workers)");
+		BackupManifest manifest = new BackupManifest();
+		try(ZstdOutputStream zstd = new ZstdOutputStream(new BufferedOutputStream(new FileOutputStream(dest), BUFFER_SIZE), level); TarArchiveOutputStream tar = new TarArchiveOutputStream(zstd)) {
+			zstd.setWorkers(workers);
+			zstd.setChecksum(true);
+			tar.setLongFileMode(TarArchiveOutputStream.LONGFILE_POSIX);
+			tar.setBigNumberMode(TarArchiveOutputStream.BIGNUMBER_POSIX);
+			byte[] buf = new byte[BUFFER_SIZE];
+			MessageDigest digest = BackupManifest.newDigest();
+			for(BackupPlan.Entry entry : plan.getFiles()) {
+				if(cb != null) {
+					if(cb.isCancelled()) throw new InterruptedIOException("Writing " + dest.getName() + " was cancelled");
+					cb.update(entry.path().toFile(), entry.size());
+				}
+				try(InputStream in = Files.newInputStream(entry.path())) {
+					// Tar headers carry the size up front, so use the size at the time the file is opened
+					long size = Files.size(entry.path());
+					TarArchiveEntry tarEntry = new TarArchiveEntry(entry.name());
+					tarEntry.setSize(size);
+					tarEntry.setModTime(FileTime.fromMillis(entry.lastModified()));
+					tar.putArchiveEntry(tarEntry);
+					digest.reset();
+					long remaining = size;
+					String problem = null;
+					while(remaining > 0) {
+						int len;
+						try {
+							len = in.read(buf, 0, (int) Math.min(buf.length, remaining));
+						} catch(IOException exception) {
+							problem = "Read failed after " + (size - remaining) + " bytes: " + exception.getMessage();
+							break;
+						}
+						if(len < 0) {
+							problem = "File shrank by " + remaining + " bytes while it was read";
+							break;
+						}
+						tar.write(buf, 0, len);
+						digest.update(buf, 0, len);
+						remaining -= len;
+					}
+					if(problem != null) {
+						// The header promised more bytes, pad the entry so the archive stays readable
+						LogManager.logWarning("Error while adding file to backup: " + entry.path() + " (" + problem + ")");
+						manifest.addSkipped(entry.name(), problem);
+						while(remaining > 0) {
+							int padding = (int) Math.min(buf.length, remaining);
+							tar.write(new byte[padding]);
+							remaining -= padding;
+						}
+					} else manifest.addFile(entry.name(), size, digest.digest(), entry.lastModified());
+					tar.closeArchiveEntry();
+				} catch(FileSystemException exception) {
+					LogManager.logWarning("Error while adding file to backup: " + entry.path(), exception);
+					manifest.addSkipped(entry.name(), exception.getClass().getSimpleName() + ": " + exception.getMessage());
+				}
+			}
+			byte[] manifestBytes = manifest.toBytes();
+			TarArchiveEntry manifestEntry = new TarArchiveEntry(BackupManifest.NAME);
+			manifestEntry.setSize(manifestBytes.length);
+			manifestEntry.setModTime(FileTime.fromMillis(manifest.getCreated()));
+			tar.putArchiveEntry(manifestEntry);
+			tar.write(manifestBytes);
+			tar.closeArchiveEntry();
+			tar.finish();
+		}
+		return manifest;
+	}
+
+	/**
+	 * Opens a tar.zst archive for sequential reading.
+	 *
+	 * @param archive the archive
+	 * @return the tar stream, positioned before the first entry
+	 * @throws IOException if the archive could not be opened
+	 */
+	public static TarArchiveInputStream open(File archive) throws IOException {
+		InputStream in = new BufferedInputStream(new FileInputStream(archive), BUFFER_SIZE);
+		try {
+			return new TarArchiveInputStream(new BufferedInputStream(new ZstdInputStream(in), BUFFER_SIZE));
+		} catch(IOException exception) {
+			in.close();
+			throw exception;
+		}
+	}
+}
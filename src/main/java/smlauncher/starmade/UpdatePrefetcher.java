@@ -0,0 +1,177 @@
+package smlauncher.starmade;
+
+import smlauncher.LaunchSettings;
+import smlauncher.LogManager;
+import smlauncher.VersionRegistry;
+import smlauncher.metrics.Counter;
+import smlauncher.metrics.LauncherMetrics;
+import smlauncher.util.OperatingSystem;
+
+import java.io.*;
+import java.net.URISyntaxException;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Downloads the files of a newer build in the background while the game runs, so updating only has to verify and copy
+ * them.
+ * <p>The prefetcher compares the checksums of the latest build of the branch with the installed files and stages the
+ * changed ones in the {@link DownloadCache}, where the update picks them up. It downloads one file at a time on a low
+ * priority thread and is limited to the prefetch bandwidth as well as the {@link DownloadThrottle}, so it does not
+ * compete with the game for the connection. Starting an update stops it, the update downloads whatever was not staged
+ * yet.</p>
+ */
+public final class UpdatePrefetcher {
+
+	private static final int TIMEOUT_MILLIS = 50000;
+	private static final int STOP_WAIT_MILLIS = 2000;
+	private static Thread thread;
+
+	private UpdatePrefetcher() {
+	}
+
+	/**
+	 * Starts prefetching the latest build of a branch, if prefetching is enabled and no prefetch is running.
+	 */
+	public static synchronized void start(String installDir, GameBranch branch) {
+		if(!LaunchSettings.isUpdatePrefetchEnabled() || (thread != null && thread.isAlive())) return;
+		thread = new Thread(() -> {
+			try {
+				prefetch(new File(installDir), branch);
+			} catch(InterruptedIOException exception) {
+				System.out.println("[PREFETCH] Stopped");
+			} catch(Exception exception) {
+				LogManager.logWarning("Failed to prefetch the next build", exception);
+			}
+		}, "Update-Prefetch");
+		thread.setDaemon(true);
+		thread.setPriority(Thread.MIN_PRIORITY);
+		thread.start();
+	}
+
+	/**
+	 * Stops the prefetch and waits briefly for it to finish the chunk it is writing, so an update that starts next
+	 * does not download the same files at the same time.
+	 */
+	public static void stop() {
+		Thread stopping;
+		synchronized(UpdatePrefetcher.class) {
+			stopping = thread;
+			thread = null;
+		}
+		if(stopping == null) return;
+		stopping.interrupt();
+		try {
+			stopping.join(STOP_WAIT_MILLIS);
+		} catch(InterruptedException exception) {
+			Thread.currentThread().interrupt();
+		}
+		// A read that is blocked on the connection only notices the interrupt once it returns, it then stops as well
+		if(stopping.isAlive()) LogManager.logWarning("The update prefetch did not stop within " + STOP_WAIT_MILLIS + "ms, it stops after the current read");
+	}
+
+	/**
+	 * Enables the download cache in the app folder, where prefetched files are staged. A cache that is already shared
+	 * between installs stays shared.
+	 */
+	public static void enableCache() {
+		if(DownloadCache.isEnabled()) return;
+		try {
+			DownloadCache.enable(new File(OperatingSystem.getAppDir(), "download-cache"), false);
+		} catch(IOException exception) {
+			LogManager.logWarning("Failed to enable the download cache", exception);
+		}
+	}
+
+	private static void prefetch(File installDir, GameBranch branch) throws IOException {
+		IndexFileEntry latest = new VersionRegistry().getLatestVersion(branch);
+		String installed = getInstalledBuild(installDir);
+		if(latest == null || (installed != null && installed.compareTo(latest.build()) >= 0)) return;
+		enableCache();
+		if(!DownloadCache.isEnabled()) return;
+
+		String buildDir = GameUpdater.FILES_URL + latest.path() + "/";
+		ChecksumFile checksums = GameUpdater.getChecksums(buildDir);
+		List<ChecksumFileEntry> changed = new ArrayList<>();
+		long totalSize = 0;
+		for(ChecksumFileEntry entry : checksums.checksums) {
+			if(Thread.currentThread().isInterrupted()) throw new InterruptedIOException();
+			if(DownloadCache.contains(entry.checksum, entry.size)) continue;
+			File local = new File(installDir, entry.relativePath);
+			// Comparing sizes first skips hashing most changed files
+			if(local.isFile() && local.length() == entry.size && FileUtil.getSha1Checksum(local.getAbsolutePath()).equals(entry.checksum)) continue;
+			changed.add(entry);
+			totalSize += entry.size;
+		}
+		if(changed.isEmpty()) {
+			System.out.println("[PREFETCH] Build " + latest.build() + " is already staged");
+			return;
+		}
+		long bandwidth = LaunchSettings.getPrefetchBandwidth() * 1024L;
+		System.out.println("[PREFETCH] Staging " + changed.size() + " files (" + totalSize / (1024 * 1024) + " MB) of build " + latest.build() + (bandwidth > 0 ? " at up to " + bandwidth / 1024 + " KB/s" : ""));
+		BandwidthLimiter limiter = new BandwidthLimiter(bandwidth);
+		long start = System.currentTimeMillis();
+		for(ChecksumFileEntry entry : changed) {
+			if(Thread.currentThread().isInterrupted()) throw new InterruptedIOException();
+			stage(buildDir, entry, limiter);
+		}
+		System.out.println("[PREFETCH] Staged build " + latest.build() + " in " + (System.currentTimeMillis() - start) / 1000 + " s, updating only has to verify and copy it");
+	}
+
+	/**
+	 * Downloads one file into the cache, keeping it only if it matches its checksum.
+	 */
+	private static void stage(String buildDir, ChecksumFileEntry entry, BandwidthLimiter limiter) throws IOException {
+		File cache = DownloadCache.getFolder();
+		if(cache == null) throw new IOException("The download cache was disabled");
+		String source = buildDir + entry.relativePath;
+		File part = new File(cache, entry.checksum + ".prefetch.part");
+		URLConnection connection;
+		try {
+			connection = FileUtil.convertToURLEscapingIllegalCharacters(source).openConnection();
+		} catch(URISyntaxException exception) {
+			throw new IOException("Invalid download URL " + source, exception);
+		}
+		connection.setConnectTimeout(TIMEOUT_MILLIS);
+		connection.setReadTimeout(TIMEOUT_MILLIS);
+		connection.setRequestProperty("User-Agent", "StarMade-Updater");
+		Counter downloadedBytes = LauncherMetrics.getDownloadedBytes(source);
+		byte[] buffer = new byte[16 * 1024];
+		try(InputStream input = connection.getInputStream(); OutputStream output = new FileOutputStream(part)) {
+			int read;
+			while((read = input.read(buffer)) != -1) {
+				// Without a bandwidth limit nothing waits, so the interrupt of stop() would go unnoticed
+				if(Thread.currentThread().isInterrupted()) throw new InterruptedIOException();
+				limiter.acquire(read);
+				DownloadThrottle.throttle(read);
+				output.write(buffer, 0, read);
+				downloadedBytes.add(read);
+			}
+		} catch(IOException exception) {
+			part.delete();
+			throw exception;
+		}
+		String checksum = FileUtil.getSha1Checksum(part.getAbsolutePath());
+		if(part.length() != entry.size || !checksum.equals(entry.checksum)) {
+			part.delete();
+			LogManager.logWarning("Prefetched " + entry.relativePath + " does not match its checksum, the update downloads it again");
+			return;
+		}
+		Files.move(part.toPath(), new File(cache, entry.checksum).toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		LauncherMetrics.getDownloadedFiles(source).inc();
+	}
+
+	/**
+	 * @return the build in the install's version.txt, or null if the game is not installed
+	 */
+	private static String getInstalledBuild(File installDir) throws IOException {
+		File versionFile = new File(installDir, "version.txt");
+		if(!versionFile.isFile()) return null;
+		String[] version = new String(Files.readAllBytes(versionFile.toPath()), StandardCharsets.UTF_8).trim().split("#");
+		return version.length > 1 ? version[1].trim() : null;
+	}
+}
@@ -0,0 +1,257 @@
+package smlauncher.starmade;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Extracts a zip archive using multiple threads.
+ * <p>Entries are read from the central directory and partitioned across a thread pool by their uncompressed size.
+ * Each file is written sequentially through a {@link FileChannel}.</p>
+ * <p>Entries that would be written outside the target directory ("zip slip") are rejected. When
+ * {@link #setSkipUnchanged(boolean) skipping unchanged files}, existing files whose size and CRC-32 match the entry
+ * are left alone.</p>
+ */
+public class ZipExtractor {
+
+	private static final int BUFFER_SIZE = 1024 * 64;
+	private static final int MAX_THREADS = 8;
+
+	private final File zip;
+	private final Path destination;
+	private final Object callbackLock = new Object();
+	private final AtomicInteger written = new AtomicInteger();
+	private final AtomicInteger skipped = new AtomicInteger();
+	private String replace;
+	private FolderZipper.ZipCallback callback;
+	private Predicate<ZipEntry> filter;
+	private boolean skipUnchanged;
+	private int threads = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), MAX_THREADS));
+	private volatile boolean cancelled;
+
+	public ZipExtractor(File zip, String destination) {
+		this.zip = zip;
+		this.destination = new File(destination).toPath().toAbsolutePath().normalize();
+	}
+
+	/**
+	 * Sets a regex that is removed from the start of every entry name before it is extracted.
+	 *
+	 * @param replace the regex to remove, or null to keep entry names as they are
+	 */
+	public void setReplace(String replace) {
+		this.replace = replace;
+	}
+
+	/**
+	 * Sets the callback that is notified for every extracted file and polled for cancellation.
+	 *
+	 * @param callback the callback, may be null
+	 */
+	public void setCallback(FolderZipper.ZipCallback callback) {
+		this.callback = callback;
+	}
+
+	/**
+	 * Sets a filter for the entries to extract. Entries rejected by the filter are skipped.
+	 *
+	 * @param filter the entry filter, may be null to extract everything
+	 */
+	public void setFilter(Predicate<ZipEntry> filter) {
+		this.filter = filter;
+	}
+
+	/**
+	 * Sets whether files that already exist with the same size and CRC-32 as their entry should be left untouched.
+	 *
+	 * @param skipUnchanged true to only write files that differ
+	 */
+	public void setSkipUnchanged(boolean skipUnchanged) {
+		this.skipUnchanged = skipUnchanged;
+	}
+
+	public void setThreads(int threads) {
+		this.threads = Math.max(1, threads);
+	}
+
+	/**
+	 * Stops the extraction as soon as possible. Files that are being written are left incomplete.
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+
+	public boolean isCancelled() {
+		return cancelled || (callback != null && callback.isCancelled());
+	}
+
+	/**
+	 * @return the number of files written by the last extraction
+	 */
+	public int getWrittenCount() {
+		return written.get();
+	}
+
+	/**
+	 * @return the number of unchanged files skipped by the last extraction
+	 */
+	public int getSkippedCount() {
+		return skipped.get();
+	}
+
+	/**
+	 * Extracts the archive into the destination directory.
+	 *
+	 * @throws InterruptedIOException if the extraction was cancelled
+	 * @throws IOException            if the archive could not be read, an entry is outside the destination, or a file
+	 *                                could not be written
+	 */
+	public void extract() throws IOException {
+		written.set(0);
+		skipped.set(0);
+		Files.createDirectories(destination);
+		try(ZipFile zipFile = new ZipFile(zip)) {
+			List<ZipEntry> files = new ArrayList<>();
+			Map<ZipEntry, Path> targets = new HashMap<>();
+			Set<Path> directories = new HashSet<>();
+
+			Enumeration<? extends ZipEntry> entries = zipFile.entries();
+			while(entries.hasMoreElements()) {
+				ZipEntry entry = entries.nextElement();
+				if(filter != null && !filter.test(entry)) continue;
+				Path target = resolve(entry.getName());
+				if(entry.isDirectory()) {
+					directories.add(target);
+				} else {
+					files.add(entry);
+					targets.put(entry, target);
+					if(target.getParent() != null) directories.add(target.getParent());
+				}
+			}
+			// Create the folder structure up front so the workers never race on mkdirs
+			for(Path directory : directories) Files.createDirectories(directory);
+
+			List<List<ZipEntry>> partitions = partition(files, threads);
+			ExecutorService pool = Executors.newFixedThreadPool(partitions.size(), runnable -> {
+				Thread thread = new Thread(runnable, "Zip-Extractor");
+				thread.setDaemon(true);
+				return thread;
+			});
+			try {
+				List<Future<Void>> futures = new ArrayList<>();
+				for(List<ZipEntry> partition : partitions) {
+					futures.add(pool.submit(() -> {
+						ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+						for(ZipEntry entry : partition) {
+							if(isCancelled()) break;
+							writeEntry(zipFile, entry, targets.get(entry), buffer);
+						}
+						return null;
+					}));
+				}
+				for(Future<Void> future : futures) await(future);
+			} finally {
+				pool.shutdownNow();
+			}
+		}
+		if(isCancelled()) throw new InterruptedIOException("Extraction of " + zip.getName() + " was cancelled");
+	}
+
+	private Path resolve(String name) throws IOException {
+		if(replace != null) name = name.replaceFirst(replace, "");
+		Path target = destination.resolve(name).normalize();
+		if(!target.startsWith(destination)) throw new IOException("Zip entry is outside of the target directory: " + name);
+		return target;
+	}
+
+	private void writeEntry(ZipFile zipFile, ZipEntry entry, Path target, ByteBuffer buffer) throws IOException {
+		if(callback != null) {
+			synchronized(callbackLock) {
+				callback.update(target.toFile());
+			}
+		}
+		if(skipUnchanged && isUnchanged(entry, target)) {
+			skipped.incrementAndGet();
+			return;
+		}
+		long position = 0;
+		try(InputStream in = zipFile.getInputStream(entry); ReadableByteChannel source = Channels.newChannel(in); FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			buffer.clear();
+			while(source.read(buffer) != -1) {
+				if(isCancelled()) return;
+				buffer.flip();
+				while(buffer.hasRemaining()) position += out.write(buffer, position);
+				buffer.clear();
+			}
+		}
+		if(entry.getLastModifiedTime() != null) Files.setLastModifiedTime(target, FileTime.fromMillis(entry.getTime()));
+		written.incrementAndGet();
+	}
+
+	private static boolean isUnchanged(ZipEntry entry, Path target) throws IOException {
+		if(entry.getCrc() == -1 || !Files.isRegularFile(target) || Files.size(target) != entry.getSize()) return false;
+		CRC32 crc = new CRC32();
+		ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+		try(FileChannel in = FileChannel.open(target, StandardOpenOption.READ)) {
+			while(in.read(buffer) != -1) {
+				buffer.flip();
+				crc.update(buffer);
+				buffer.clear();
+			}
+		}
+		return crc.getValue() == entry.getCrc();
+	}
+
+	/**
+	 * Splits the files into buckets of roughly equal byte size, largest files first.
+	 */
+	static List<List<ZipEntry>> partition(List<ZipEntry> files, int threads) {
+		int count = Math.max(1, Math.min(threads, files.size()));
+		List<List<ZipEntry>> partitions = new ArrayList<>(count);
+		long[] sizes = new long[count];
+		for(int i = 0; i < count; i++) partitions.add(new ArrayList<>());
+
+		List<ZipEntry> sorted = new ArrayList<>(files);
+		sorted.sort(Comparator.comparingLong((ZipEntry e) -> Math.max(e.getSize(), 0)).reversed());
+		for(ZipEntry entry : sorted) {
+			int smallest = 0;
+			for(int i = 1; i < count; i++) {
+				if(sizes[i] < sizes[smallest]) smallest = i;
+			}
+			partitions.get(smallest).add(entry);
+			sizes[smallest] += Math.max(entry.getSize(), 0);
+		}
+		return partitions;
+	}
+
+	private void await(Future<Void> future) throws IOException {
+		try {
+			future.get();
+		} catch(InterruptedException exception) {
+			cancel();
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while extracting " + zip.getName());
+		} catch(ExecutionException exception) {
+			cancel();
+			Throwable cause = exception.getCause();
+			if(cause instanceof IOException) throw (IOException) cause;
+			throw new IOException("Failed to extract " + zip.getName(), cause);
+		}
+	}
+}
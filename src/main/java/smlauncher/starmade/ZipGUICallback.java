@@ -1,9 +0,0 @@
-package smlauncher.starmade;
-
-import java.io.File;
-
-public class ZipGUICallback {
-	public int fileIndex;
-	public int fileMax;
-	public File f;
-}
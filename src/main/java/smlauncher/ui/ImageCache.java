@@ -0,0 +1,142 @@
+package smlauncher.ui;
+
+import smlauncher.LogManager;
+
+import javax.imageio.ImageIO;
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Decodes and scales the launcher's sprites once and hands out the same icons afterwards.
+ * <p>Icons are cached by resource path and size, so swapping icons in hover handlers costs a map lookup instead of
+ * decoding a PNG on the event dispatch thread. The sprites of the main window are decoded in the background at startup,
+ * a request for a sprite that is still being decoded waits for it instead of decoding it twice.</p>
+ * <p>Scaling halves the image with bilinear filtering until it is less than twice the target size and draws the last
+ * step with bicubic filtering. That looks like {@link Image#SCALE_SMOOTH} at a fraction of its cost.</p>
+ */
+public final class ImageCache {
+
+	/**
+	 * The sprites the main window shows right away, and the sizes it shows them at.
+	 */
+	private static final List<Key> PRELOAD = List.of(
+			new Key("sprites/header_top.png", -1, -1), new Key("sprites/launcher_schine_logo.png", -1, -1),
+			new Key("sprites/close_icon.png", -1, -1), new Key("sprites/minimize_icon.png", -1, -1),
+			new Key("sprites/logo.png", -1, -1), new Key("sprites/left_panel.png", 150, 500),
+			new Key("sprites/left_panel.png", 800, 500), new Key("sprites/footer_normalplay_bg.jpg", -1, -1),
+			new Key("sprites/footer_dedicated_bg.jpg", -1, -1), new Key("sprites/launch_btn.png", -1, -1),
+			new Key("sprites/launch_roll.png", -1, -1), new Key("sprites/update_btn.png", -1, -1),
+			new Key("sprites/update_roll.png", -1, -1), new Key("sprites/update_load_empty.png", -1, -1),
+			new Key("sprites/update_load_full.png", -1, -1), new Key("sprites/memory_options_gear.png", -1, -1),
+			new Key("sprites/launch_options_gear.png", -1, -1), new Key("sprites/icon.png", 32, 32),
+			new Key("sprites/starloader.png", 32, 32));
+	private static final Map<String, BufferedImage> images = new ConcurrentHashMap<>();
+	private static final Map<Key, ImageIcon> icons = new ConcurrentHashMap<>();
+	/**
+	 * Cached for resources that could not be read, so they are not read again.
+	 */
+	private static final BufferedImage MISSING = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+
+	private ImageCache() {
+	}
+
+	/**
+	 * Starts decoding the sprites of the main window on a background thread.
+	 */
+	public static void preload() {
+		Thread thread = new Thread(() -> {
+			long start = System.currentTimeMillis();
+			for(Key key : PRELOAD) getIcon(key.path(), key.width(), key.height());
+			LogManager.logInfo("Preloaded " + PRELOAD.size() + " sprites in " + (System.currentTimeMillis() - start) + "ms");
+		}, "Sprite-Preload");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * @param path the resource path, for example "sprites/logo.png"
+	 * @return the icon at its original size, or an empty icon if it could not be read
+	 */
+	public static ImageIcon getIcon(String path) {
+		return getIcon(path, -1, -1);
+	}
+
+	/**
+	 * @param path the resource path, for example "sprites/logo.png"
+	 * @return the icon scaled to the size, or an empty icon if it could not be read
+	 */
+	public static ImageIcon getIcon(String path, int width, int height) {
+		return icons.computeIfAbsent(new Key(path, width, height), key -> {
+			BufferedImage image = getImage(key.path(), key.width(), key.height());
+			return image == null ? new ImageIcon() : new ImageIcon(image);
+		});
+	}
+
+	/**
+	 * @return the image scaled to the size, or null if it could not be read
+	 */
+	public static BufferedImage getImage(String path, int width, int height) {
+		BufferedImage image = images.computeIfAbsent(path, ImageCache::read);
+		if(image == MISSING) return null;
+		if(width <= 0 || height <= 0 || (image.getWidth() == width && image.getHeight() == height)) return image;
+		return scale(image, width, height);
+	}
+
+	private static BufferedImage read(String path) {
+		try(InputStream input = ImageCache.class.getResourceAsStream("/" + path)) {
+			if(input == null) throw new IOException("Resource not found");
+			BufferedImage image = ImageIO.read(input);
+			if(image == null) throw new IOException("Unsupported image format");
+			return toCompatible(image);
+		} catch(IOException exception) {
+			LogManager.logWarning("Failed to load image " + path, exception);
+			return MISSING;
+		}
+	}
+
+	/**
+	 * Converts an image to the format of the screen, so drawing it does not convert it on every paint.
+	 */
+	private static BufferedImage toCompatible(BufferedImage image) {
+		if(GraphicsEnvironment.isHeadless()) return image;
+		GraphicsConfiguration configuration = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDefaultConfiguration();
+		BufferedImage compatible = configuration.createCompatibleImage(image.getWidth(), image.getHeight(), image.getTransparency());
+		if(compatible.getColorModel().equals(image.getColorModel())) return image;
+		Graphics2D g = compatible.createGraphics();
+		g.drawImage(image, 0, 0, null);
+		g.dispose();
+		return compatible;
+	}
+
+	private static BufferedImage scale(BufferedImage image, int width, int height) {
+		BufferedImage current = image;
+		int currentWidth = image.getWidth();
+		int currentHeight = image.getHeight();
+		// Halving with bilinear filtering keeps every source pixel in the result, one big bilinear step would skip most
+		while(currentWidth / 2 >= width && currentHeight / 2 >= height) {
+			currentWidth /= 2;
+			currentHeight /= 2;
+			current = draw(current, currentWidth, currentHeight, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+		}
+		return draw(current, width, height, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+	}
+
+	private static BufferedImage draw(BufferedImage image, int width, int height, Object interpolation) {
+		BufferedImage scaled = new BufferedImage(width, height, image.getTransparency() == Transparency.OPAQUE ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g = scaled.createGraphics();
+		g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, interpolation);
+		g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+		g.drawImage(image, 0, 0, width, height, null);
+		g.dispose();
+		return scaled;
+	}
+
+	private record Key(String path, int width, int height) {
+	}
+}
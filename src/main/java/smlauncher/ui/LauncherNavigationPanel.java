@@ -4,14 +4,11 @@ import smlauncher.StarMadeLauncher;
 import smlauncher.starmade.StackLayout;
 import smlauncher.util.Palette;
 
-import javax.imageio.ImageIO;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseMotionAdapter;
-import java.io.IOException;
-import java.util.Objects;
 
 /**
  * Panel for the left navigation of the launcher.
@@ -33,15 +30,8 @@ public class LauncherNavigationPanel extends JPanel {
 		// Create the background image label
 		JLabel leftLabel = new JLabel();
 		leftLabel.setDoubleBuffered(true);
-		try {
-			Image image = ImageIO.read(Objects.requireNonNull(StarMadeLauncher.class.getResource("/sprites/left_panel.png")));
-			// Resize the image to the left panel
-			image = image.getScaledInstance(150, 500, Image.SCALE_SMOOTH);
-			leftLabel.setIcon(new ImageIcon(image));
-		} catch(IOException exception) {
-			// Log the exception
-			System.err.println("Failed to load left panel image: " + exception.getMessage());
-		}
+		// Resize the image to the left panel
+		leftLabel.setIcon(ImageCache.getIcon("sprites/left_panel.png", 150, 500));
 		add(leftLabel, StackLayout.BOTTOM);
 
 		// Create the top panel for navigation
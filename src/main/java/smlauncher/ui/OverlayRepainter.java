@@ -0,0 +1,84 @@
+package smlauncher.ui;
+
+import smlauncher.LogManager;
+
+import javax.swing.*;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * Repaints the launcher window while the Steam overlay is drawn into it.
+ * <p>The overlay leaves artifacts that Swing does not know about, so they only go away when the window is repainted.
+ * Everything else repaints on its own when it changes, so the periodic refresh only runs when the launcher was started
+ * through Steam, and pauses while the window is minimized. Without the overlay the window does not wake up while
+ * idle.</p>
+ */
+public final class OverlayRepainter {
+
+	private static final int INITIAL_DELAY_MILLIS = 1200;
+	private static final int INTERVAL_MILLIS = 500;
+	private static final int MAX_PARENTS = 8;
+
+	private OverlayRepainter() {
+	}
+
+	/**
+	 * Starts refreshing the window if the Steam overlay is present.
+	 */
+	public static void install(JFrame frame) {
+		String reason = detectOverlay();
+		if(reason == null) return;
+		LogManager.logInfo("Steam overlay detected (" + reason + "), repainting the launcher every " + INTERVAL_MILLIS + "ms");
+		Timer timer = new Timer(INTERVAL_MILLIS, e -> frame.repaint());
+		timer.setInitialDelay(INITIAL_DELAY_MILLIS);
+		timer.setCoalesce(true);
+		frame.addWindowListener(new WindowAdapter() {
+			@Override
+			public void windowIconified(WindowEvent e) {
+				timer.stop();
+			}
+
+			@Override
+			public void windowDeiconified(WindowEvent e) {
+				frame.repaint();
+				timer.restart();
+			}
+
+			@Override
+			public void windowActivated(WindowEvent e) {
+				// The overlay is usually closed by switching back to the window
+				frame.repaint();
+			}
+
+			@Override
+			public void windowClosed(WindowEvent e) {
+				timer.stop();
+			}
+		});
+		timer.start();
+	}
+
+	/**
+	 * @return what shows that the overlay is present, or null if it is not
+	 */
+	static String detectOverlay() {
+		// Steam sets these for everything it launches, the overlay is hooked into the same processes
+		for(String variable : new String[] {"SteamOverlayGameId", "SteamGameId", "SteamAppId"}) {
+			String value = System.getenv(variable);
+			if(value != null && !value.isBlank() && !"0".equals(value.trim())) return variable + "=" + value.trim();
+		}
+		String preload = System.getenv("LD_PRELOAD");
+		if(preload != null && preload.contains("gameoverlayrenderer")) return "LD_PRELOAD";
+		// Started from the Steam client without its environment, for example through a shortcut
+		Optional<ProcessHandle> parent = ProcessHandle.current().parent();
+		for(int i = 0; i < MAX_PARENTS && parent.isPresent(); i++) {
+			String command = parent.get().info().command().orElse("");
+			String name = command.substring(Math.max(command.lastIndexOf('/'), command.lastIndexOf('\\')) + 1).toLowerCase(Locale.ENGLISH);
+			if("steam".equals(name) || "steam.exe".equals(name)) return "started by " + command;
+			parent = parent.get().parent();
+		}
+		return null;
+	}
+}
@@ -0,0 +1,93 @@
+package smlauncher.ui;
+
+import smlauncher.process.ResourceMonitor;
+import smlauncher.util.Palette;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.List;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * A small live graph of a monitored process's memory and CPU use.
+ * <p>Memory is drawn against the process's -Xmx, CPU against all cores. The graph repaints once a second while the
+ * monitor runs and stops on its own when the process exits.</p>
+ */
+public class ResourceGraph extends JComponent {
+	private static final Color memoryColor = Palette.selectedColor;
+	private static final Color cpuColor = Color.decode("#C8A040");
+	private final ResourceMonitor monitor;
+	private final Timer timer;
+
+	public ResourceGraph(ResourceMonitor monitor) {
+		this.monitor = monitor;
+		setDoubleBuffered(true);
+		setOpaque(false);
+		setPreferredSize(new Dimension(220, 48));
+		setFont(new Font("Roboto", Font.PLAIN, 10));
+		timer = new Timer((int) ResourceMonitor.DEFAULT_INTERVAL_MILLIS, e -> {
+			repaint();
+			if(!monitor.isRunning()) ((Timer) e.getSource()).stop();
+		});
+	}
+
+	@Override
+	public void addNotify() {
+		super.addNotify();
+		timer.start();
+	}
+
+	@Override
+	public void removeNotify() {
+		timer.stop();
+		super.removeNotify();
+	}
+
+	@Override
+	protected void paintComponent(Graphics g) {
+		Graphics2D g2 = (Graphics2D) g.create();
+		try {
+			g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+			int width = getWidth();
+			int height = getHeight();
+			g2.setColor(Palette.paneColor);
+			g2.fillRoundRect(0, 0, width - 1, height - 1, 8, 8);
+
+			List<ResourceMonitor.Sample> samples = monitor.getSamples();
+			ResourceMonitor.Sample latest = samples.isEmpty() ? null : samples.get(samples.size() - 1);
+			long maxMemory = monitor.getMaxHeapBytes();
+			for(ResourceMonitor.Sample sample : samples) maxMemory = Math.max(maxMemory, sample.residentBytes());
+			int graphTop = 14;
+			int graphHeight = height - graphTop - 2;
+			drawLine(g2, samples, width, graphTop, graphHeight, cpuColor, ResourceMonitor.Sample::cpu);
+			long memoryScale = Math.max(1, maxMemory);
+			drawLine(g2, samples, width, graphTop, graphHeight, memoryColor, sample -> (double) sample.residentBytes() / memoryScale);
+
+			g2.setFont(getFont());
+			g2.setColor(Palette.textColor);
+			String text;
+			if(latest == null) text = monitor.getName() + ": waiting for data";
+			else text = String.format("%s: %d MB / %d MB, CPU %d%%", monitor.getName(), latest.residentBytes() / (1024 * 1024), monitor.getMaxHeapBytes() / (1024 * 1024), Math.round(latest.cpu() * 100));
+			if(!monitor.isRunning() && latest != null) text = monitor.getName() + " stopped";
+			g2.drawString(text, 6, 11);
+		} finally {
+			g2.dispose();
+		}
+	}
+
+	private static void drawLine(Graphics2D g2, List<ResourceMonitor.Sample> samples, int width, int top, int height, Color color, ToDoubleFunction<ResourceMonitor.Sample> value) {
+		if(samples.size() < 2) return;
+		int count = samples.size();
+		int[] xs = new int[count];
+		int[] ys = new int[count];
+		// A full buffer spans the whole width, the newest sample is on the right edge
+		double step = (width - 4) / (double) (ResourceMonitor.DEFAULT_CAPACITY - 1);
+		for(int i = 0; i < count; i++) {
+			xs[i] = (int) Math.round(width - 2 - (count - 1 - i) * step);
+			double ratio = Math.max(0, Math.min(1, value.applyAsDouble(samples.get(i))));
+			ys[i] = top + (int) Math.round((1 - ratio) * height);
+		}
+		g2.setColor(color);
+		g2.drawPolyline(xs, ys, count);
+	}
+}
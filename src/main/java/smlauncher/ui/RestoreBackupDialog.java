@@ -0,0 +1,302 @@
+package smlauncher.ui;
+
+import smlauncher.LogManager;
+import smlauncher.starmade.BackupManifest;
+import smlauncher.starmade.BackupVerifier;
+import smlauncher.starmade.FolderZipper;
+import smlauncher.starmade.StarMadeRestoreTool;
+
+import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import java.awt.*;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Dialog for browsing backups and restoring all or some of their files.
+ */
+public class RestoreBackupDialog extends JDialog {
+	private final String installDir;
+	private final DefaultListModel<String> contentsModel = new DefaultListModel<>();
+	private final JComboBox<File> backupDropdown = new JComboBox<>();
+	private final JList<String> contentsList = new JList<>(contentsModel);
+	private final JTextField filterField = new JTextField();
+	private final JProgressBar progressBar = new JProgressBar();
+	private final JButton restoreSelectedButton = new JButton("Restore Selected");
+	private final JButton restoreAllButton = new JButton("Restore All");
+	private final JButton verifyButton = new JButton("Verify");
+	private List<StarMadeRestoreTool.Entry> contents = new ArrayList<>();
+	private volatile boolean cancelled;
+
+	public RestoreBackupDialog(Window owner, String installDir) {
+		super(owner, "Restore Backup", ModalityType.APPLICATION_MODAL);
+		this.installDir = installDir;
+		setDefaultCloseOperation(DISPOSE_ON_CLOSE);
+		setSize(600, 450);
+		setLocationRelativeTo(owner);
+		setLayout(new BorderLayout());
+		initialize();
+	}
+
+	private void initialize() {
+		JPanel northPanel = new JPanel(new BorderLayout(5, 5));
+		northPanel.setBorder(BorderFactory.createEmptyBorder(5, 5, 5, 5));
+		add(northPanel, BorderLayout.NORTH);
+
+		backupDropdown.setFont(new Font("Roboto", Font.PLAIN, 12));
+		backupDropdown.setRenderer(new DefaultListCellRenderer() {
+			@Override
+			public Component getListCellRendererComponent(JList<?> list, Object value, int index, boolean isSelected, boolean cellHasFocus) {
+				super.getListCellRendererComponent(list, value, index, isSelected, cellHasFocus);
+				if(value instanceof File file) setText(file.getName() + " (" + file.length() / (1024 * 1024) + " MB)");
+				return this;
+			}
+		});
+		for(File backup : StarMadeRestoreTool.listBackups(installDir)) backupDropdown.addItem(backup);
+		backupDropdown.addActionListener(e -> loadContents());
+		northPanel.add(backupDropdown, BorderLayout.NORTH);
+
+		JLabel filterLabel = new JLabel("Filter:");
+		filterLabel.setFont(new Font("Roboto", Font.BOLD, 12));
+		northPanel.add(filterLabel, BorderLayout.WEST);
+		filterField.getDocument().addDocumentListener(new DocumentListener() {
+			@Override
+			public void insertUpdate(DocumentEvent e) {
+				updateContentsList();
+			}
+
+			@Override
+			public void removeUpdate(DocumentEvent e) {
+				updateContentsList();
+			}
+
+			@Override
+			public void changedUpdate(DocumentEvent e) {
+				updateContentsList();
+			}
+		});
+		northPanel.add(filterField, BorderLayout.CENTER);
+
+		contentsList.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
+		contentsList.setFont(new Font("Roboto", Font.PLAIN, 12));
+		add(new JScrollPane(contentsList), BorderLayout.CENTER);
+
+		JPanel southPanel = new JPanel(new BorderLayout());
+		add(southPanel, BorderLayout.SOUTH);
+		progressBar.setStringPainted(true);
+		progressBar.setString("");
+		southPanel.add(progressBar, BorderLayout.NORTH);
+
+		JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+		southPanel.add(buttonPanel, BorderLayout.SOUTH);
+		restoreSelectedButton.setFont(new Font("Roboto", Font.BOLD, 12));
+		restoreSelectedButton.addActionListener(e -> {
+			List<String> selected = contentsList.getSelectedValuesList();
+			if(selected.isEmpty()) JOptionPane.showMessageDialog(this, "Select the files to restore first.", "Restore Backup", JOptionPane.WARNING_MESSAGE);
+			else restore(selected);
+		});
+		buttonPanel.add(restoreSelectedButton);
+		restoreAllButton.setFont(new Font("Roboto", Font.BOLD, 12));
+		restoreAllButton.addActionListener(e -> restore(null));
+		buttonPanel.add(restoreAllButton);
+		verifyButton.setFont(new Font("Roboto", Font.BOLD, 12));
+		verifyButton.addActionListener(e -> verify());
+		buttonPanel.add(verifyButton);
+		JButton closeButton = new JButton("Close");
+		closeButton.setFont(new Font("Roboto", Font.BOLD, 12));
+		closeButton.addActionListener(e -> dispose());
+		buttonPanel.add(closeButton);
+
+		if(backupDropdown.getItemCount() == 0) {
+			progressBar.setString("No backups found in " + installDir);
+			restoreSelectedButton.setEnabled(false);
+			restoreAllButton.setEnabled(false);
+			verifyButton.setEnabled(false);
+		} else loadContents();
+	}
+
+	@Override
+	public void dispose() {
+		cancelled = true;
+		super.dispose();
+	}
+
+	private void loadContents() {
+		File backup = (File) backupDropdown.getSelectedItem();
+		if(backup == null) return;
+		progressBar.setString("Reading " + backup.getName() + "...");
+		new SwingWorker<List<StarMadeRestoreTool.Entry>, Void>() {
+			@Override
+			protected List<StarMadeRestoreTool.Entry> doInBackground() throws Exception {
+				return StarMadeRestoreTool.listContents(backup);
+			}
+
+			@Override
+			protected void done() {
+				try {
+					contents = get();
+					progressBar.setString(contents.size() + " files in backup");
+				} catch(Exception exception) {
+					LogManager.logWarning("Failed to read backup " + backup.getName(), exception);
+					contents = new ArrayList<>();
+					progressBar.setString("Failed to read backup");
+				}
+				updateContentsList();
+			}
+		}.execute();
+	}
+
+	private void updateContentsList() {
+		String filter = filterField.getText().trim().toLowerCase(Locale.ENGLISH);
+		contentsModel.clear();
+		List<String> matches = new ArrayList<>();
+		for(StarMadeRestoreTool.Entry entry : contents) {
+			if(filter.isEmpty() || entry.path().toLowerCase(Locale.ENGLISH).contains(filter)) matches.add(entry.path());
+		}
+		contentsModel.addAll(matches);
+	}
+
+	private void restore(List<String> paths) {
+		File backup = (File) backupDropdown.getSelectedItem();
+		if(backup == null) return;
+		int choice = JOptionPane.showConfirmDialog(this, "Files in " + installDir + " will be overwritten with the versions from the backup.\nMake sure the game and server are not running. Continue?", "Restore Backup", JOptionPane.YES_NO_OPTION, JOptionPane.WARNING_MESSAGE);
+		if(choice != JOptionPane.YES_OPTION) return;
+
+		int total = paths == null ? contents.size() : countSelected(paths);
+		restoreSelectedButton.setEnabled(false);
+		restoreAllButton.setEnabled(false);
+		verifyButton.setEnabled(false);
+		progressBar.setMaximum(Math.max(total, 1));
+		progressBar.setValue(0);
+		new SwingWorker<StarMadeRestoreTool.Result, Integer>() {
+			private int checked;
+
+			@Override
+			protected StarMadeRestoreTool.Result doInBackground() throws Exception {
+				return StarMadeRestoreTool.restore(backup, installDir, paths, new FolderZipper.ZipCallback() {
+					@Override
+					public void update(File f) {
+						publish(++checked);
+					}
+
+					@Override
+					public boolean isCancelled() {
+						return cancelled;
+					}
+				});
+			}
+
+			@Override
+			protected void process(List<Integer> chunks) {
+				int value = chunks.getLast();
+				progressBar.setValue(value);
+				progressBar.setString("Checked " + value + " / " + total + " files");
+			}
+
+			@Override
+			protected void done() {
+				restoreSelectedButton.setEnabled(true);
+				restoreAllButton.setEnabled(true);
+				verifyButton.setEnabled(true);
+				if(cancelled) return;
+				try {
+					StarMadeRestoreTool.Result result = get();
+					progressBar.setValue(progressBar.getMaximum());
+					progressBar.setString(result.toString());
+					StringBuilder message = new StringBuilder("Restore finished:\n").append(result);
+					List<String> incomplete = new ArrayList<>();
+					for(BackupManifest.Skipped file : result.incomplete()) incomplete.add(file.path() + " (" + file.reason() + ")");
+					appendPaths(message, "Not restored, incomplete in the backup", incomplete);
+					JOptionPane.showMessageDialog(RestoreBackupDialog.this, message.toString(), "Restore Backup", incomplete.isEmpty() ? JOptionPane.INFORMATION_MESSAGE : JOptionPane.WARNING_MESSAGE);
+				} catch(Exception exception) {
+					LogManager.logException("Failed to restore backup " + backup.getName(), exception);
+					progressBar.setString("Restore failed");
+					JOptionPane.showMessageDialog(RestoreBackupDialog.this, "Failed to restore backup: " + exception.getMessage(), "Restore Backup", JOptionPane.ERROR_MESSAGE);
+				}
+			}
+		}.execute();
+	}
+
+	private void verify() {
+		File backup = (File) backupDropdown.getSelectedItem();
+		if(backup == null) return;
+		restoreSelectedButton.setEnabled(false);
+		restoreAllButton.setEnabled(false);
+		verifyButton.setEnabled(false);
+		progressBar.setMaximum(Math.max(contents.size(), 1));
+		progressBar.setValue(0);
+		new SwingWorker<BackupVerifier.Result, Integer>() {
+			private int checked;
+
+			@Override
+			protected BackupVerifier.Result doInBackground() throws Exception {
+				return BackupVerifier.verify(backup, new FolderZipper.ZipCallback() {
+					@Override
+					public void update(File f) {
+						publish(++checked);
+					}
+
+					@Override
+					public boolean isCancelled() {
+						return cancelled;
+					}
+				});
+			}
+
+			@Override
+			protected void process(List<Integer> chunks) {
+				int value = chunks.getLast();
+				progressBar.setValue(value);
+				progressBar.setString("Verified " + value + " / " + contents.size() + " files");
+			}
+
+			@Override
+			protected void done() {
+				restoreSelectedButton.setEnabled(true);
+				restoreAllButton.setEnabled(true);
+				verifyButton.setEnabled(true);
+				if(cancelled) return;
+				try {
+					BackupVerifier.Result result = get();
+					progressBar.setValue(progressBar.getMaximum());
+					progressBar.setString(result.toString());
+					StringBuilder message = new StringBuilder(result.toString());
+					appendPaths(message, "Corrupt", result.corrupt());
+					appendPaths(message, "Missing", result.missing());
+					appendPaths(message, "Not in manifest", result.unexpected());
+					List<String> skipped = new ArrayList<>();
+					for(BackupManifest.Skipped file : result.skipped()) skipped.add(file.path() + " (" + file.reason() + ")");
+					appendPaths(message, "Skipped during backup", skipped);
+					JOptionPane.showMessageDialog(RestoreBackupDialog.this, message.toString(), "Verify Backup", result.isValid() ? JOptionPane.INFORMATION_MESSAGE : JOptionPane.WARNING_MESSAGE);
+				} catch(Exception exception) {
+					LogManager.logException("Failed to verify backup " + backup.getName(), exception);
+					progressBar.setString("Verify failed");
+					JOptionPane.showMessageDialog(RestoreBackupDialog.this, "Failed to verify backup: " + exception.getMessage(), "Verify Backup", JOptionPane.ERROR_MESSAGE);
+				}
+			}
+		}.execute();
+	}
+
+	private static void appendPaths(StringBuilder message, String label, List<String> paths) {
+		if(paths.isEmpty()) return;
+		message.append("\n\n").append(label).append(":");
+		for(int i = 0; i < Math.min(paths.size(), 10); i++) message.append("\n").append(paths.get(i));
+		if(paths.size() > 10) message.append("\n... and ").append(paths.size() - 10).append(" more");
+	}
+
+	private int countSelected(List<String> paths) {
+		int count = 0;
+		for(StarMadeRestoreTool.Entry entry : contents) {
+			for(String path : paths) {
+				if(entry.path().equals(path) || entry.path().startsWith(path + "/")) {
+					count++;
+					break;
+				}
+			}
+		}
+		return count;
+	}
+}
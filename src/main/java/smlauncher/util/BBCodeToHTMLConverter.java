@@ -1,69 +1,174 @@
 package smlauncher.util;
 
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
-import java.util.regex.Pattern;
+import java.util.Locale;
 
-public class BBCodeToHTMLConverter {
-	public static ArrayList<String> convert(String bbcode) {
-		ArrayList<String> output = new ArrayList<>();
-		for(String line : getLines(bbcode)) {
-			// Regular stuff
-			line = line.replace("[", "<").replace("]", ">");
-			// Lists
-			line = line.replace("<list>", "<ul>");
-			line = line.replace("</list>", "</ul>");
-			line = line.replace("<*>", "<li>");
+/**
+ * Converts the BBCode of Steam news posts to HTML that a {@link javax.swing.JEditorPane} can show.
+ * <p>The text is read once from start to end. Known tags are replaced with their HTML, text is escaped and line breaks
+ * become {@code <br>}. Brackets that are not a known tag are kept as text, Steam posts use them for headings like
+ * "[Fixed]". Images are left out, the editor pane would load them on the event dispatch thread.</p>
+ */
+public final class BBCodeToHTMLConverter {
 
-			output.add(line);
-		}
-		return output;
-	}
+	/**
+	 * Tags longer than this are not tags, but text that happens to contain brackets.
+	 */
+	private static final int MAX_TAG_LENGTH = 2048;
 
-	public static ArrayList<String> getLines(String str) {
-		return new ArrayList<>(Arrays.asList(str.split(Pattern.quote("\n"))));
+	private BBCodeToHTMLConverter() {
 	}
 
-	public static ArrayList<String> insertColors(List<String> lines, String color) {
-		ArrayList<String> nLines = new ArrayList<>();
-		for(String line : lines) {
-			int index = line.indexOf('>');
-			String s;
-			if(index == -1) {
-				// No line found
-				s = "<font face=\"Verdana\" color=\"" + color + "\">" + line;
-				if(line.length() >= 3) {
-					if(line.startsWith("[b]") || !line.startsWith("<")) {
-						s = "<br>" + s + "<br>";
+	public static String toHtml(String bbcode) {
+		StringBuilder html = new StringBuilder(bbcode.length() + bbcode.length() / 4);
+		int length = bbcode.length();
+		int i = 0;
+		while(i < length) {
+			char c = bbcode.charAt(i);
+			if(c == '[') {
+				int end = indexOfTagEnd(bbcode, i + 1);
+				if(end != -1) {
+					int next = appendTag(bbcode, i + 1, end, html);
+					if(next != -1) {
+						i = next;
+						continue;
 					}
 				}
-			} else s = insertString(line, "<font color=\"" + color + "\">", index);
-			nLines.add(s);
+			}
+			if(c == '\n') html.append("<br>");
+			else if(c != '\r') appendEscaped(html, c);
+			i++;
 		}
-		return nLines;
+		return html.toString();
 	}
 
-	public static String insertString(String originalString, String stringToBeInserted, int index) {
-
-		// Create a new string
-		String newString = "";
+	/**
+	 * Appends the HTML of the tag between start and end.
+	 *
+	 * @return the index to continue reading at, or -1 if it is not a known tag
+	 */
+	private static int appendTag(String bbcode, int start, int end, StringBuilder html) {
+		boolean closing = bbcode.charAt(start) == '/';
+		String tag = bbcode.substring(closing ? start + 1 : start, end);
+		String value = null;
+		int equals = tag.indexOf('=');
+		if(equals != -1) {
+			value = tag.substring(equals + 1).trim();
+			if(value.length() > 1 && (value.startsWith("\"") && value.endsWith("\"") || value.startsWith("'") && value.endsWith("'"))) value = value.substring(1, value.length() - 1);
+			tag = tag.substring(0, equals);
+		}
+		String name = tag.trim().toLowerCase(Locale.ENGLISH);
+		String element = switch(name) {
+			case "b", "i", "u", "h1", "h2", "h3", "p", "table", "tr", "td", "th" -> name;
+			case "strike", "s" -> "strike";
+			case "list" -> "ul";
+			case "olist" -> "ol";
+			case "quote" -> "blockquote";
+			case "code" -> "pre";
+			default -> null;
+		};
+		if(element != null) {
+			html.append(closing ? "</" : "<").append(element).append('>');
+			return end + 1;
+		}
+		switch(name) {
+			case "*" -> {
+				if(!closing) html.append("<li>");
+				return end + 1;
+			}
+			case "hr" -> {
+				if(!closing) html.append("<hr>");
+				return end + 1;
+			}
+			case "spoiler" -> {
+				// The editor pane cannot hide text, spoilers are shown
+				return end + 1;
+			}
+			case "url" -> {
+				if(closing) {
+					html.append("</a>");
+					return end + 1;
+				}
+				if(value != null) {
+					html.append("<a href=\"");
+					appendEscaped(html, value);
+					html.append("\">");
+					return end + 1;
+				}
+				// [url]address[/url] links the address itself
+				int close = indexOfClosing(bbcode, end + 1, "url");
+				if(close == -1) return -1;
+				String address = bbcode.substring(end + 1, close).trim();
+				html.append("<a href=\"");
+				appendEscaped(html, address);
+				html.append("\">");
+				appendEscaped(html, address);
+				html.append("</a>");
+				return close + "[/url]".length();
+			}
+			case "img" -> {
+				if(closing) return end + 1;
+				int close = indexOfClosing(bbcode, end + 1, "img");
+				return close == -1 ? end + 1 : close + "[/img]".length();
+			}
+			case "previewyoutube" -> {
+				if(closing) return end + 1;
+				if(value != null) {
+					// The value is "id;full" or "id;leftthumb"
+					String id = value.split(";")[0];
+					html.append("<p><a href=\"https://www.youtube.com/watch?v=");
+					appendEscaped(html, id);
+					html.append("\">Watch on YouTube</a></p>");
+				}
+				int close = indexOfClosing(bbcode, end + 1, "previewyoutube");
+				return close == -1 ? end + 1 : close + "[/previewyoutube]".length();
+			}
+			case "noparse" -> {
+				if(closing) return end + 1;
+				int close = indexOfClosing(bbcode, end + 1, "noparse");
+				if(close == -1) return -1;
+				for(int i = end + 1; i < close; i++) appendEscaped(html, bbcode.charAt(i));
+				return close + "[/noparse]".length();
+			}
+			default -> {
+				return -1;
+			}
+		}
+	}
 
-		for(int i = 0; i < originalString.length(); i++) {
+	/**
+	 * @return the index of the bracket that ends the tag, or -1 if there is none within the maximum tag length
+	 */
+	private static int indexOfTagEnd(String bbcode, int from) {
+		int limit = Math.min(bbcode.length(), from + MAX_TAG_LENGTH);
+		for(int i = from; i < limit; i++) {
+			char c = bbcode.charAt(i);
+			if(c == ']') return i;
+			// A line break or another bracket means this one was text
+			if(c == '[' || c == '\n') return -1;
+		}
+		return -1;
+	}
 
-			// Insert the original string character
-			// into the new string
-			newString += originalString.charAt(i);
+	private static int indexOfClosing(String bbcode, int from, String name) {
+		String closing = "[/" + name + "]";
+		int length = bbcode.length() - closing.length();
+		for(int i = from; i <= length; i++) {
+			if(bbcode.regionMatches(true, i, closing, 0, closing.length())) return i;
+		}
+		return -1;
+	}
 
-			if(i == index) {
+	public static void appendEscaped(StringBuilder html, String text) {
+		for(int i = 0; i < text.length(); i++) appendEscaped(html, text.charAt(i));
+	}
 
-				// Insert the string to be inserted
-				// into the new string
-				newString += stringToBeInserted;
-			}
+	private static void appendEscaped(StringBuilder html, char c) {
+		switch(c) {
+			case '&' -> html.append("&amp;");
+			case '<' -> html.append("&lt;");
+			case '>' -> html.append("&gt;");
+			case '"' -> html.append("&quot;");
+			default -> html.append(c);
 		}
-
-		// return the modified String
-		return newString;
 	}
 }
@@ -2,10 +2,9 @@ package smlauncher.util;
 
 import org.json.JSONArray;
 import org.json.JSONObject;
-import smlauncher.LogManager;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
@@ -13,10 +12,14 @@ import java.util.ArrayList;
 
 public class SteamNewsAPI {
 	public static final String REQ_URL = "http://api.steampowered.com/ISteamNews/GetNewsForApp/v0002/?appid=244770&count=10&format=json";
+	private static final int TIMEOUT_MILLIS = 10000;
 
-	public static ArrayList<NewsPost> getPosts() {
+	/**
+	 * @param json the response of the news API
+	 */
+	public static ArrayList<NewsPost> parse(String json) {
 		ArrayList<NewsPost> objs = new ArrayList<>();
-		JSONObject obj = new JSONObject(GET());
+		JSONObject obj = new JSONObject(json);
 		JSONArray arr = obj.getJSONObject("appnews").getJSONArray("newsitems");
 		for(int i = 0; i < arr.length(); i++) {
 			JSONObject post = arr.getJSONObject(i);
@@ -26,22 +29,35 @@ public class SteamNewsAPI {
 		return objs;
 	}
 
-	public static String GET() {
+	/**
+	 * Gets the news, unless they did not change since the response with the given ETag.
+	 *
+	 * @param etag the ETag of the cached response, or null to always get the news
+	 * @return the response, with a null body if the news did not change
+	 */
+	public static Response fetch(String etag) throws IOException {
+		HttpURLConnection conn = (HttpURLConnection) new URL(REQ_URL).openConnection();
+		conn.setConnectTimeout(TIMEOUT_MILLIS);
+		conn.setReadTimeout(TIMEOUT_MILLIS);
+		conn.setRequestProperty("User-Agent", "StarMade-Launcher");
+		if(etag != null) conn.setRequestProperty("If-None-Match", etag);
 		try {
-			StringBuilder result = new StringBuilder();
-			URL url = new URL(REQ_URL);
-			HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-			conn.setRequestMethod("GET");
-			try(BufferedReader reader = new BufferedReader(new InputStreamReader(conn.getInputStream(), StandardCharsets.UTF_8))) {
-				for(String line; (line = reader.readLine()) != null; ) {
-					result.append(line);
-				}
+			int status = conn.getResponseCode();
+			if(status == HttpURLConnection.HTTP_NOT_MODIFIED) return new Response(null, etag);
+			if(status != HttpURLConnection.HTTP_OK) throw new IOException("Steam news API answered with HTTP " + status);
+			try(InputStream input = conn.getInputStream()) {
+				return new Response(new String(input.readAllBytes(), StandardCharsets.UTF_8), conn.getHeaderField("ETag"));
 			}
-			return result.toString();
-		} catch(Exception e) {
-			LogManager.logWarning("Failed to get news from Steam API" + e.getMessage());
+		} finally {
+			conn.disconnect();
 		}
-		return "";
+	}
+
+	/**
+	 * @param body the JSON, or null if the news did not change
+	 * @param etag the ETag of the news, or null if the server sent none
+	 */
+	public record Response(String body, String etag) {
 	}
 
 	public static class NewsPost {
@@ -50,6 +66,7 @@ public class SteamNewsAPI {
 		String url;
 		String contents;
 		int date;
+		int feedType;
 
 		public static NewsPost fromJson(JSONObject obj) {
 			NewsPost np = new NewsPost();
@@ -57,8 +74,9 @@ public class SteamNewsAPI {
 			np.title = obj.getString("title");
 			np.url = obj.getString("url");
 			np.contents = obj.getString("contents");
-			np.contents = np.contents.replaceAll("(.{1,80})(\\s+|$)", "$1\n");
 			np.date = obj.getInt("date");
+			// 1 is a Steam community announcement in BBCode, other feeds are HTML
+			np.feedType = obj.optInt("feed_type", 1);
 			return np;
 		}
 
@@ -82,6 +100,13 @@ public class SteamNewsAPI {
 			return date;
 		}
 
+		/**
+		 * @return whether the contents are BBCode rather than HTML
+		 */
+		public boolean isBBCode() {
+			return feedType == 1;
+		}
+
 		@Override
 		public String toString() {
 			return "NewsPost{" + "author='" + author + '\'' + ", title='" + title + '\'' + ", url='" + url + '\'' + ", contents='" + contents + '\'' + ", date=" + date + '}';